@@ -0,0 +1,266 @@
+package ru.hogwarts.school.bulkhead;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Isolated share of server for one kind of work<br>
+ * no more than {@code maxConcurrent} calls run together, others wait in queue of {@code queueCapacity}
+ * no longer than {@code maxWaitMillis}, interactive calls are taken from queue before bulk ones.
+ * Calls of bulkhead hold no more than {@code connections} connections of database together,
+ * see {@link BulkheadDataSource}, the limit is taken again at every connection, so it can follow size of pool.
+ * Saturation is shown by gauges {@code bulkhead.active}, {@code bulkhead.queued}, {@code bulkhead.connections.active},
+ * timer {@code bulkhead.wait} and counter {@code bulkhead.rejected}
+ */
+public class Bulkhead {
+
+    private static final ThreadLocal<Bulkhead> CURRENT = new ThreadLocal<>();
+
+    public enum Priority {
+        INTERACTIVE, BULK
+    }
+
+    private final String name;
+    private final int maxConcurrent;
+    private final int queueCapacity;
+    private final long maxWaitNanos;
+    private final IntSupplier connectionLimit;
+    private final ResizableSemaphore connections;
+    private final long connectionWaitMillis;
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(
+            Comparator.comparing((Waiter w) -> w.priority).thenComparingLong(w -> w.sequence));
+    private final Counter rejected;
+    private final MeterRegistry meterRegistry;
+    private volatile int connectionPermits;
+    private int active;
+    private long sequence;
+
+    public Bulkhead(String name, int maxConcurrent, int queueCapacity, long maxWaitMillis, int connections,
+                    long connectionWaitMillis, MeterRegistry meterRegistry) {
+        this(name, maxConcurrent, queueCapacity, maxWaitMillis, connectionLimit(name, connections),
+                connectionWaitMillis, meterRegistry);
+    }
+
+    /**
+     * @param connectionLimit limit of connections, taken at every connection, values less than 1 are taken as 1
+     */
+    public Bulkhead(String name, int maxConcurrent, int queueCapacity, long maxWaitMillis, IntSupplier connectionLimit,
+                    long connectionWaitMillis, MeterRegistry meterRegistry) {
+        if (maxConcurrent < 1 || queueCapacity < 0) {
+            throw new IllegalArgumentException("Bulkhead " + name + " must have concurrent calls");
+        }
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.queueCapacity = queueCapacity;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.connectionLimit = connectionLimit;
+        // permits are added at first connection, so limit is not taken before data source is created
+        this.connections = new ResizableSemaphore(0);
+        this.connectionWaitMillis = connectionWaitMillis;
+        this.meterRegistry = meterRegistry;
+        this.rejected = Counter.builder("bulkhead.rejected")
+                .description("Calls rejected because bulkhead is full")
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+        Gauge.builder("bulkhead.active", this, Bulkhead::getActive)
+                .description("Calls running in bulkhead")
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+        Gauge.builder("bulkhead.queued", this, Bulkhead::getQueued)
+                .description("Calls waiting for bulkhead")
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+        Gauge.builder("bulkhead.connections.active", this, b -> b.connectionPermits - b.connections.availablePermits())
+                .description("Connections of database held by calls of bulkhead")
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return bulkhead of call running in current thread, or {@code null}
+     */
+    public static Bulkhead current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Enter bulkhead, waiting for turn if bulkhead is busy<br>
+     * until returned permit is closed, this bulkhead is {@link #current()} of this thread
+     *
+     * @param priority priority of call in queue
+     * @return permit which must be closed by the same thread
+     * @throws RejectedExecutionException if queue is full or call waited longer than max wait
+     */
+    public Permit enter(Priority priority) {
+        long start = System.nanoTime();
+        acquire(priority);
+        Timer.builder("bulkhead.wait")
+                .description("Time of waiting for bulkhead")
+                .tag("bulkhead", name)
+                .tag("priority", priority.name().toLowerCase())
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        Permit permit = new Permit(CURRENT.get());
+        CURRENT.set(this);
+        return permit;
+    }
+
+    /**
+     * Take connection from share of bulkhead, must be followed by {@link #releaseConnection()}
+     *
+     * @return {@code false} if all connections of bulkhead are held longer than connection wait
+     */
+    public boolean acquireConnection() throws InterruptedException {
+        resizeConnections();
+        return connections.tryAcquire(connectionWaitMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void releaseConnection() {
+        connections.release();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized int getActive() {
+        return active;
+    }
+
+    public synchronized int getQueued() {
+        return waiters.size();
+    }
+
+    private synchronized void acquire(Priority priority) {
+        if (active < maxConcurrent && waiters.isEmpty()) {
+            active++;
+            return;
+        }
+        if (waiters.size() >= queueCapacity) {
+            rejected.increment();
+            throw new RejectedExecutionException("Bulkhead " + name + " is full");
+        }
+        Waiter waiter = new Waiter(priority, sequence++);
+        waiters.add(waiter);
+        long deadline = System.nanoTime() + maxWaitNanos;
+        try {
+            while (!waiter.granted) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    waiters.remove(waiter);
+                    rejected.increment();
+                    throw new RejectedExecutionException("Bulkhead " + name + " is busy longer than "
+                            + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + " ms");
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (waiter.granted) {
+                release();
+            } else {
+                waiters.remove(waiter);
+            }
+            throw new RejectedExecutionException("Waiting for bulkhead " + name + " is interrupted", e);
+        }
+    }
+
+    private static IntSupplier connectionLimit(String name, int connections) {
+        if (connections < 1) {
+            throw new IllegalArgumentException("Bulkhead " + name + " must have connections");
+        }
+        return () -> connections;
+    }
+
+    /**
+     * Permits are added or taken by difference with the last limit, held connections are returned
+     * to smaller limit when they are closed
+     */
+    private void resizeConnections() {
+        int limit = Math.max(1, connectionLimit.getAsInt());
+        if (limit == connectionPermits) {
+            return;
+        }
+        synchronized (connections) {
+            int difference = limit - connectionPermits;
+            if (difference > 0) {
+                connections.release(difference);
+            } else if (difference < 0) {
+                connections.reducePermits(-difference);
+            }
+            connectionPermits = limit;
+        }
+    }
+
+    /**
+     * Place of finished call is given to the first waiter, so new calls can not overtake queue
+     */
+    private synchronized void release() {
+        Waiter next = waiters.poll();
+        if (next == null) {
+            active--;
+            return;
+        }
+        next.granted = true;
+        notifyAll();
+    }
+
+    public class Permit implements AutoCloseable {
+
+        private final Bulkhead previous;
+        private boolean closed;
+
+        private Permit(Bulkhead previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+            release();
+        }
+    }
+
+    private static class ResizableSemaphore extends Semaphore {
+
+        private static final long serialVersionUID = 1L;
+
+        private ResizableSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+
+    private static class Waiter {
+
+        private final Priority priority;
+        private final long sequence;
+        private boolean granted;
+
+        private Waiter(Priority priority, long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+    }
+}
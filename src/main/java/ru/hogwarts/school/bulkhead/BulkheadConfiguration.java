@@ -0,0 +1,110 @@
+package ru.hogwarts.school.bulkhead;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import ru.hogwarts.school.datasource.PrimaryDataSource;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntSupplier;
+
+/**
+ * Bulkheads of endpoints, enabled by {@code bulkhead.enabled}<br>
+ * {@code avatar}: uploads and downloads of avatars; {@code write}: changes of students and faculties,
+ * batches and imports; {@code read}: reads of students and faculties, exports and sync.
+ * Every bulkhead {@code bulkhead.<name>.*} has {@code max-concurrent} calls, {@code queue-capacity},
+ * {@code max-wait-ms}, and {@code db-share} of connections of primary pool. Share is taken of current maximum size
+ * of pool, which follows adaptive sizing, or of {@code spring.datasource.hikari.maximum-pool-size} if pool is not Hikari.
+ * Lookups of one student or faculty and their avatars are interactive and are taken from queues first
+ */
+@Configuration
+@ConditionalOnProperty(name = "bulkhead.enabled", havingValue = "true", matchIfMissing = true)
+public class BulkheadConfiguration {
+
+    private static final List<String> AVATAR = List.of("/student/*/avatar", "/student/*/avatar/**",
+            "/student/avatars/**", "/student/avatar/uploads/**");
+    private static final List<String> WRITE = List.of("/student", "/student/**", "/faculty", "/faculty/**",
+            "/batch", "/csv/**");
+    private static final List<String> READ = List.of("/student", "/student/**", "/faculty", "/faculty/**",
+            "/csv/**", "/sync");
+    private static final List<String> INTERACTIVE = List.of("/student/{id:\\d+}", "/faculty/{id:\\d+}",
+            "/student/find-faculty-of-student/*", "/student/{id:\\d+}/avatar", "/student/{id:\\d+}/avatar/dataBase");
+
+    @Bean
+    public FilterRegistrationBean<BulkheadFilter> bulkheadFilter(MeterRegistry meterRegistry, Environment environment,
+                                                                 ObjectProvider<DataSource> dataSource) {
+        IntSupplier poolSize = poolSize(dataSource, environment);
+        BulkheadFilter filter = new BulkheadFilter(INTERACTIVE)
+                .addBulkhead(Set.of(), AVATAR,
+                        bulkhead("avatar", 8, 16, 2000, 0.2, poolSize, meterRegistry, environment))
+                .addBulkhead(Set.of("POST", "PUT", "PATCH", "DELETE"), WRITE,
+                        bulkhead("write", 20, 50, 1000, 0.3, poolSize, meterRegistry, environment))
+                .addBulkhead(Set.of("GET", "HEAD"), READ,
+                        bulkhead("read", 40, 100, 500, 0.5, poolSize, meterRegistry, environment));
+        FilterRegistrationBean<BulkheadFilter> registration = new FilterRegistrationBean<>(filter);
+        // after concurrency limit, so only admitted requests wait in queues of bulkheads
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+        return registration;
+    }
+
+    @Bean
+    public static BeanPostProcessor bulkheadDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && PrimaryDataSource.BEAN_NAME.equals(beanName)) {
+                    return PrimaryDataSource.wrap((DataSource) bean, BulkheadDataSource::new);
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * Current maximum size of primary pool, pool is found at first connection, after data source is created
+     */
+    private static IntSupplier poolSize(ObjectProvider<DataSource> dataSource, Environment environment) {
+        int configured = environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10);
+        AtomicReference<HikariDataSource> pool = new AtomicReference<>();
+        return () -> {
+            HikariDataSource primary = pool.get();
+            if (primary == null) {
+                try {
+                    primary = PrimaryDataSource.poolOf(dataSource.getObject());
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Pool of primary is not found", e);
+                }
+                if (primary == null) {
+                    return configured;
+                }
+                pool.set(primary);
+            }
+            return primary.getHikariConfigMXBean().getMaximumPoolSize();
+        };
+    }
+
+    private static Bulkhead bulkhead(String name, int maxConcurrent, int queueCapacity, long maxWaitMillis,
+                                     double dbShare, IntSupplier poolSize, MeterRegistry meterRegistry,
+                                     Environment environment) {
+        String prefix = "bulkhead." + name + ".";
+        double share = environment.getProperty(prefix + "db-share", Double.class, dbShare);
+        return new Bulkhead(name,
+                environment.getProperty(prefix + "max-concurrent", Integer.class, maxConcurrent),
+                environment.getProperty(prefix + "queue-capacity", Integer.class, queueCapacity),
+                environment.getProperty(prefix + "max-wait-ms", Long.class, maxWaitMillis),
+                () -> (int) Math.max(1, Math.round(poolSize.getAsInt() * share)),
+                environment.getProperty("bulkhead.connection-wait-ms", Long.class, 1000L),
+                meterRegistry);
+    }
+}
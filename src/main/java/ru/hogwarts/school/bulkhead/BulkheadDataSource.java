@@ -0,0 +1,101 @@
+package ru.hogwarts.school.bulkhead;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * Data source which keeps connections taken in {@link Bulkhead} within its share<br>
+ * connection is counted from getting it until closing, connections taken outside of bulkheads are not limited
+ */
+public class BulkheadDataSource extends DelegatingDataSource {
+
+    public BulkheadDataSource(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Bulkhead bulkhead = acquire();
+        return bulkhead == null ? super.getConnection() : counted(bulkhead, super::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        Bulkhead bulkhead = acquire();
+        return bulkhead == null
+                ? super.getConnection(username, password)
+                : counted(bulkhead, () -> super.getConnection(username, password));
+    }
+
+    private static Bulkhead acquire() throws SQLException {
+        Bulkhead bulkhead = Bulkhead.current();
+        if (bulkhead == null) {
+            return null;
+        }
+        try {
+            if (!bulkhead.acquireConnection()) {
+                throw new SQLTransientConnectionException("All connections of bulkhead " + bulkhead.getName()
+                        + " are in use");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Waiting for connection is interrupted", e);
+        }
+        return bulkhead;
+    }
+
+    private static Connection counted(Bulkhead bulkhead, ConnectionSupplier supplier) throws SQLException {
+        Connection connection;
+        try {
+            connection = supplier.get();
+        } catch (SQLException | RuntimeException e) {
+            bulkhead.releaseConnection();
+            throw e;
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                new ReleasingHandler(connection, bulkhead));
+    }
+
+    private interface ConnectionSupplier {
+        Connection get() throws SQLException;
+    }
+
+    private static class ReleasingHandler implements InvocationHandler {
+
+        private final Connection connection;
+        private final Bulkhead bulkhead;
+        private boolean closed;
+
+        private ReleasingHandler(Connection connection, Bulkhead bulkhead) {
+            this.connection = connection;
+            this.bulkhead = bulkhead;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("close".equals(method.getName()) && !closed) {
+                closed = true;
+                try {
+                    return method.invoke(connection, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                } finally {
+                    bulkhead.releaseConnection();
+                }
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package ru.hogwarts.school.bulkhead;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.hogwarts.school.limiter.ConcurrencyLimitFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs every request in {@link Bulkhead} of its endpoints, requests of full bulkhead get 503 and {@code Retry-After}<br>
+ * request belongs to the first bulkhead which has its method and a pattern matching its path,
+ * requests of no bulkhead are not isolated. GET requests matching interactive patterns are
+ * {@link Bulkhead.Priority#INTERACTIVE}, all other requests are {@link Bulkhead.Priority#BULK}
+ */
+public class BulkheadFilter extends OncePerRequestFilter {
+
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private final List<EndpointGroup> groups = new ArrayList<>();
+    private final List<String> interactivePatterns;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    Logger logger = LoggerFactory.getLogger(BulkheadFilter.class);
+
+    public BulkheadFilter(List<String> interactivePatterns) {
+        this.interactivePatterns = interactivePatterns;
+    }
+
+    /**
+     * Add bulkhead of endpoints, bulkheads are checked in order of adding
+     *
+     * @param methods HTTP methods of endpoints, empty for any method
+     * @param patterns ant patterns of paths of endpoints
+     * @param bulkhead bulkhead of endpoints
+     * @return this filter
+     */
+    public BulkheadFilter addBulkhead(Set<String> methods, List<String> patterns, Bulkhead bulkhead) {
+        groups.add(new EndpointGroup(methods, patterns, bulkhead));
+        return this;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        Bulkhead bulkhead = bulkheadOf(request.getMethod(), path);
+        if (bulkhead == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        Bulkhead.Permit permit;
+        try {
+            permit = bulkhead.enter(priorityOf(request.getMethod(), path));
+        } catch (RejectedExecutionException e) {
+            logger.debug("Request {} {} is rejected: {}", request.getMethod(), request.getRequestURI(), e.getMessage());
+            // outer concurrency limit does not count this 503 as overload of its group
+            request.setAttribute(ConcurrencyLimitFilter.SHED_ATTRIBUTE, Boolean.TRUE);
+            response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Server is busy, retry later");
+            return;
+        }
+        try (permit) {
+            chain.doFilter(request, response);
+        }
+    }
+
+    private Bulkhead bulkheadOf(String method, String path) {
+        for (EndpointGroup group : groups) {
+            if (!group.methods.isEmpty() && !group.methods.contains(method)) {
+                continue;
+            }
+            for (String pattern : group.patterns) {
+                if (pathMatcher.match(pattern, path)) {
+                    return group.bulkhead;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Bulkhead.Priority priorityOf(String method, String path) {
+        if ("GET".equals(method)) {
+            for (String pattern : interactivePatterns) {
+                if (pathMatcher.match(pattern, path)) {
+                    return Bulkhead.Priority.INTERACTIVE;
+                }
+            }
+        }
+        return Bulkhead.Priority.BULK;
+    }
+
+    private static class EndpointGroup {
+
+        private final Set<String> methods;
+        private final List<String> patterns;
+        private final Bulkhead bulkhead;
+
+        private EndpointGroup(Set<String> methods, List<String> patterns, Bulkhead bulkhead) {
+            this.methods = methods;
+            this.patterns = patterns;
+            this.bulkhead = bulkhead;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package ru.hogwarts.school.coalescing;
+
+import java.lang.annotation.*;
+
+/**
+ * Concurrent calls of annotated method with equal arguments share one execution and its result,
+ * see {@link CoalescingAspect}. Method must only read, and its result must not be changed by callers
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Coalesced {
+}
@@ -0,0 +1,93 @@
+package ru.hogwarts.school.coalescing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.hogwarts.school.datasource.ReplicaRoutingDataSource;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Coalesces concurrent calls of methods annotated by {@link Coalesced} with equal arguments, enabled by
+ * {@code services.coalescing.enabled}<br>
+ * aspect runs before transaction of method is started, so one execution takes one connection for all callers.
+ * Calls inside transaction are not coalesced, they must see changes of their transaction,
+ * and calls of client which reads its own writes from primary are not coalesced too.
+ * Caller which joins execution gets result read after execution started, not after its own call.
+ * For every method, {@code service.coalescing.calls} counts executed and shared calls,
+ * {@code service.coalescing.callers} is distribution of callers of one key per execution,
+ * its max is the highest concurrency on one key. Keys are not tags, so amount of metrics does not depend on ids
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = "services.coalescing.enabled", havingValue = "true", matchIfMissing = true)
+public class CoalescingAspect {
+
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final MeterRegistry meterRegistry;
+
+    public CoalescingAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gauge("service.coalescing.in-flight", singleFlight, SingleFlight::size);
+    }
+
+    @Around("@annotation(ru.hogwarts.school.coalescing.Coalesced)")
+    public Object coalesce(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive() || ReplicaRoutingDataSource.isPrimaryForced()) {
+            return joinPoint.proceed();
+        }
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        String method = signature.getDeclaringType().getSimpleName() + "." + signature.getName();
+        Key key = new Key(signature.toLongString(), Arrays.asList(joinPoint.getArgs()));
+        boolean[] executed = new boolean[1];
+        Object result = singleFlight.execute(key, () -> {
+            executed[0] = true;
+            return joinPoint.proceed();
+        }, callers -> DistributionSummary.builder("service.coalescing.callers")
+                .description("Callers of one key which shared one execution")
+                .tag("method", method)
+                .register(meterRegistry)
+                .record(callers));
+        Counter.builder("service.coalescing.calls")
+                .tag("method", method)
+                .tag("result", executed[0] ? "executed" : "shared")
+                .register(meterRegistry)
+                .increment();
+        return result;
+    }
+
+    private static class Key {
+
+        private final String method;
+        private final List<Object> args;
+
+        private Key(String method, List<Object> args) {
+            this.method = method;
+            this.args = args;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return method.equals(key.method) && args.equals(key.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * method.hashCode() + args.hashCode();
+        }
+    }
+}
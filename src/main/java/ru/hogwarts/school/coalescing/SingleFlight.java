@@ -0,0 +1,73 @@
+package ru.hogwarts.school.coalescing;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executions in flight by their keys<br>
+ * the first caller of key executes, callers which come while it runs wait for its result or exception.
+ * Key is removed when execution is finished, so the next caller executes again, nothing is cached
+ */
+public class SingleFlight {
+
+    private final ConcurrentMap<Object, Flight> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Execute, or join execution of the same key which is in flight
+     *
+     * @param key key of execution, must have {@code equals} and {@code hashCode}
+     * @param execution execution, it runs in thread of the first caller
+     * @param listener gets amount of callers which shared execution, after it is finished
+     * @return result of execution
+     * @throws Throwable exception of execution, the same for all callers
+     */
+    public Object execute(Object key, Execution execution, FlightListener listener) throws Throwable {
+        Flight flight = new Flight();
+        Flight existing = flights.putIfAbsent(key, flight);
+        if (existing != null) {
+            existing.callers.incrementAndGet();
+            try {
+                return existing.result.join();
+            } catch (CompletionException e) {
+                throw e.getCause();
+            }
+        }
+        try {
+            Object result = execution.run();
+            flight.result.complete(result);
+            return result;
+        } catch (Throwable e) {
+            flight.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+            listener.finished(flight.callers.get());
+        }
+    }
+
+    /**
+     * Amount of keys in flight
+     */
+    public int size() {
+        return flights.size();
+    }
+
+    @FunctionalInterface
+    public interface Execution {
+        Object run() throws Throwable;
+    }
+
+    @FunctionalInterface
+    public interface FlightListener {
+        void finished(int callers);
+    }
+
+    private static class Flight {
+
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private final AtomicInteger callers = new AtomicInteger(1);
+    }
+}
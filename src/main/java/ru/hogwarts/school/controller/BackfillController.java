@@ -0,0 +1,113 @@
+package ru.hogwarts.school.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.hogwarts.school.model.PreviewBackfill;
+import ru.hogwarts.school.service.impl.PreviewBackfillServiceImpl;
+
+@RestController
+@RequestMapping("/backfill")
+public class BackfillController {
+
+    private final String TAG_BACKFILL = "Backfill";
+    private final PreviewBackfillServiceImpl previewBackfillService;
+
+    Logger logger = LoggerFactory.getLogger(BackfillController.class);
+
+    public BackfillController(PreviewBackfillServiceImpl previewBackfillService) {
+        this.previewBackfillService = previewBackfillService;
+    }
+
+    @Operation(
+            summary = "Start regeneration of previews of all avatars",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "State of started job",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = PreviewBackfill.class)
+                            )
+                    )
+            },
+            tags = TAG_BACKFILL
+    )
+    @PostMapping("/previews")
+    public ResponseEntity<?> startPreviewBackfill(@RequestParam(defaultValue = "false") boolean fromBeginning) {
+        logger.info("Call method startPreviewBackfill fromBeginning = {}", fromBeginning);
+        return ResponseEntity.ok(previewBackfillService.start(fromBeginning));
+    }
+
+    @Operation(
+            summary = "Get state of regeneration of previews",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "State of job",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = PreviewBackfill.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "If job was never started",
+                            content = @Content(
+                                    mediaType = MediaType.TEXT_PLAIN_VALUE,
+                                    schema = @Schema(implementation = ResponseEntity.class)
+                            )
+                    )
+            },
+            tags = TAG_BACKFILL
+    )
+    @GetMapping("/previews")
+    public ResponseEntity<?> getPreviewBackfill() {
+        logger.info("Call method getPreviewBackfill");
+        PreviewBackfill backfill = previewBackfillService.getStatus();
+        if (backfill == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        return ResponseEntity.ok(backfill);
+    }
+
+    @Operation(
+            summary = "Stop regeneration of previews after current batch",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "State of job",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = PreviewBackfill.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "If job was never started",
+                            content = @Content(
+                                    mediaType = MediaType.TEXT_PLAIN_VALUE,
+                                    schema = @Schema(implementation = ResponseEntity.class)
+                            )
+                    )
+            },
+            tags = TAG_BACKFILL
+    )
+    @DeleteMapping("/previews")
+    public ResponseEntity<?> stopPreviewBackfill() {
+        logger.info("Call method stopPreviewBackfill");
+        PreviewBackfill backfill = previewBackfillService.stop();
+        if (backfill == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        return ResponseEntity.ok(backfill);
+    }
+
+}
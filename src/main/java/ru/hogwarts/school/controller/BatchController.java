@@ -0,0 +1,85 @@
+package ru.hogwarts.school.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.hogwarts.school.dto.BatchOperation;
+import ru.hogwarts.school.dto.BatchResult;
+import ru.hogwarts.school.service.impl.BatchServiceImpl;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/batch")
+public class BatchController {
+
+    private final String TAG_BATCH = "Batch";
+    private final BatchServiceImpl batchService;
+
+    Logger logger = LoggerFactory.getLogger(BatchController.class);
+
+    public BatchController(BatchServiceImpl batchService) {
+        this.batchService = batchService;
+    }
+
+    @Operation(
+            summary = "Create, edit and delete students and faculties in one transaction",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Operations in order of execution",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            array = @ArraySchema(schema = @Schema(implementation = BatchOperation.class))
+                    )
+            ),
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "All operations are committed, result of every operation",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = BatchResult.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad request, if there are no operations or too many operations",
+                            content = @Content(
+                                    mediaType = MediaType.TEXT_PLAIN_VALUE,
+                                    schema = @Schema(implementation = ResponseEntity.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "409",
+                            description = "Batch is rolled back, failed operations have their status",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = BatchResult.class)
+                            )
+                    )
+            },
+            tags = TAG_BATCH
+    )
+    @PostMapping
+    public ResponseEntity<?> executeBatch(@RequestBody List<BatchOperation> operations) {
+        logger.info("Call method executeBatch");
+        BatchResult result;
+        try {
+            result = batchService.execute(operations);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Warning: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        if (!result.isCommitted()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(result);
+        }
+        return ResponseEntity.ok(result);
+    }
+}
@@ -0,0 +1,65 @@
+package ru.hogwarts.school.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.hogwarts.school.dto.ChangeEvent;
+import ru.hogwarts.school.service.impl.ChangeFeedServiceImpl;
+
+@RestController
+@RequestMapping("/changes")
+public class ChangeFeedController {
+
+    private final String TAG_CHANGES = "Changes";
+    private final ChangeFeedServiceImpl changeFeedService;
+
+    Logger logger = LoggerFactory.getLogger(ChangeFeedController.class);
+
+    public ChangeFeedController(ChangeFeedServiceImpl changeFeedService) {
+        this.changeFeedService = changeFeedService;
+    }
+
+    @Operation(
+            summary = "Subscribe to created, edited and deleted students and faculties by Server-Sent Events",
+            description = "Name of event is student.created, student.updated, student.deleted, faculty.created, "
+                    + "faculty.updated or faculty.deleted. Event reset means that events after Last-Event-ID "
+                    + "are lost, and lists of students and faculties must be reloaded",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Stream of events",
+                            content = @Content(
+                                    mediaType = MediaType.TEXT_EVENT_STREAM_VALUE,
+                                    schema = @Schema(implementation = ChangeEvent.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "503",
+                            description = "If there are too many subscribers",
+                            content = @Content
+                    )
+            },
+            tags = TAG_CHANGES
+    )
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribe(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        logger.info("Call method subscribe");
+        try {
+            return ResponseEntity.ok(changeFeedService.subscribe(lastEventId));
+        } catch (IllegalStateException e) {
+            logger.warn("Warning: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package ru.hogwarts.school.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.hogwarts.school.service.impl.CsvServiceImpl;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/csv")
+public class CsvController {
+
+    private final static String TEXT_CSV_VALUE = "text/csv";
+    private final String TAG_CSV = "CSV";
+    private final CsvServiceImpl csvService;
+
+    Logger logger = LoggerFactory.getLogger(CsvController.class);
+
+    public CsvController(CsvServiceImpl csvService) {
+        this.csvService = csvService;
+    }
+
+    @Operation(
+            summary = "Import students from CSV with header name,age,faculty_id",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Amount of imported students",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = Long.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad request, if CSV is malformed, or age of student is not positive, "
+                                    + "or faculty not found. Nothing is imported",
+                            content = @Content(
+                                    mediaType = MediaType.TEXT_PLAIN_VALUE,
+                                    schema = @Schema(implementation = ResponseEntity.class)
+                            )
+                    )
+            },
+            tags = TAG_CSV
+    )
+    @PostMapping(value = "/student", consumes = TEXT_CSV_VALUE)
+    public ResponseEntity<?> importStudents(HttpServletRequest request) throws IOException {
+        logger.info("Call method importStudents");
+        try {
+            return ResponseEntity.ok(csvService.importStudents(request.getInputStream()));
+        } catch (IllegalArgumentException | DataIntegrityViolationException e) {
+            logger.warn("Warning: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @Operation(
+            summary = "Export all students to CSV with header id,name,age,faculty_id",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "CSV with students",
+                            content = @Content(mediaType = TEXT_CSV_VALUE)
+                    )
+            },
+            tags = TAG_CSV
+    )
+    @GetMapping(value = "/student")
+    public void exportStudents(HttpServletResponse response) throws IOException {
+        logger.info("Call method exportStudents");
+        response.setContentType(TEXT_CSV_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"students.csv\"");
+        response.setStatus(200);
+        csvService.exportStudents(response.getOutputStream());
+    }
+
+    @Operation(
+            summary = "Import faculties from CSV with header name,color",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Amount of imported faculties",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = Long.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad request, if CSV is malformed, or name or color is empty or not unique. "
+                                    + "Nothing is imported",
+                            content = @Content(
+                                    mediaType = MediaType.TEXT_PLAIN_VALUE,
+                                    schema = @Schema(implementation = ResponseEntity.class)
+                            )
+                    )
+            },
+            tags = TAG_CSV
+    )
+    @PostMapping(value = "/faculty", consumes = TEXT_CSV_VALUE)
+    public ResponseEntity<?> importFaculties(HttpServletRequest request) throws IOException {
+        logger.info("Call method importFaculties");
+        try {
+            return ResponseEntity.ok(csvService.importFaculties(request.getInputStream()));
+        } catch (IllegalArgumentException | DataIntegrityViolationException e) {
+            logger.warn("Warning: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @Operation(
+            summary = "Export all faculties to CSV with header id,name,color",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "CSV with faculties",
+                            content = @Content(mediaType = TEXT_CSV_VALUE)
+                    )
+            },
+            tags = TAG_CSV
+    )
+    @GetMapping(value = "/faculty")
+    public void exportFaculties(HttpServletResponse response) throws IOException {
+        logger.info("Call method exportFaculties");
+        response.setContentType(TEXT_CSV_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"faculties.csv\"");
+        response.setStatus(200);
+        csvService.exportFaculties(response.getOutputStream());
+    }
+}
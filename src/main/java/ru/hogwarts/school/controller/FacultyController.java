@@ -6,12 +6,14 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseEntity;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.service.impl.FacultyServiceImpl;
+import ru.hogwarts.school.service.impl.FuzzySearchServiceImpl;
 
 import java.util.Collection;
 
@@ -21,10 +23,12 @@ public class FacultyController {
 
     private final String TAG_FACULTY = "Faculty";
     private final FacultyServiceImpl facultyService;
+    private final FuzzySearchServiceImpl fuzzySearchService;
     Logger logger = LoggerFactory.getLogger(FacultyController.class);
 
-    public FacultyController(FacultyServiceImpl facultyService) {
+    public FacultyController(FacultyServiceImpl facultyService, FuzzySearchServiceImpl fuzzySearchService) {
         this.facultyService = facultyService;
+        this.fuzzySearchService = fuzzySearchService;
     }
 
     @Operation(
@@ -120,6 +124,40 @@ public class FacultyController {
         return ResponseEntity.ok(facultyService.filterFacultiesByColorOrName(color, name));
     }
 
+    @Operation(
+            summary = "Search faculties by partial or misspelled name",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Found faculties with similarity of name, from the most similar:",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = Collection.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad request, if query is empty or limit is out of range",
+                            content = @Content(
+                                    mediaType = MediaType.TEXT_PLAIN_VALUE,
+                                    schema = @Schema(implementation = String.class)
+                            )
+                    )
+            },
+            tags = TAG_FACULTY
+    )
+    @GetMapping("/search/fuzzy")
+    public ResponseEntity<?> searchFacultiesFuzzy(@RequestParam String query,
+                                                  @RequestParam(defaultValue = "10") int limit) {
+        logger.info("Call method searchFacultiesFuzzy query = {}, limit = {}", query, limit);
+        try {
+            return ResponseEntity.ok(fuzzySearchService.searchFaculties(query, limit));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Warning: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @Operation(
             summary = "Find students of faculty",
             responses = {
@@ -212,6 +250,14 @@ public class FacultyController {
                                     mediaType = MediaType.TEXT_PLAIN_VALUE,
                                     schema = @Schema(implementation = ResponseEntity.class)
                             )
+                    ),
+                    @ApiResponse(
+                            responseCode = "409",
+                            description = "If faculty was changed by other request, version of faculty is not equal",
+                            content = @Content(
+                                    mediaType = MediaType.TEXT_PLAIN_VALUE,
+                                    schema = @Schema(implementation = ResponseEntity.class)
+                            )
                     )
             },
             tags = TAG_FACULTY
@@ -219,11 +265,17 @@ public class FacultyController {
     @PutMapping
     public ResponseEntity<?> editFaculty(@RequestBody Faculty faculty) {
         logger.info("Call method editFaculty faculty = {}", faculty );
-        Faculty editFaculty = facultyService.editFaculty(faculty);
+        Faculty editFaculty;
+        try {
+            editFaculty = facultyService.editFaculty(faculty);
+        } catch (OptimisticLockingFailureException e) {
+            logger.warn("Warning: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
         if (editFaculty == null) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         }
-        return ResponseEntity.ok(faculty);
+        return ResponseEntity.ok(editFaculty);
     }
 
     @Operation(
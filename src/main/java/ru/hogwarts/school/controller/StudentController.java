@@ -6,37 +6,54 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.TransientDataAccessResourceException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import ru.hogwarts.school.dto.AvatarExportContent;
+import ru.hogwarts.school.dto.AvatarUploadStatus;
 import ru.hogwarts.school.model.Avatar;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.service.impl.AvatarServiceImpl;
+import ru.hogwarts.school.service.impl.AvatarUploadServiceImpl;
+import ru.hogwarts.school.service.impl.FuzzySearchServiceImpl;
 import ru.hogwarts.school.service.impl.StudentServiceImpl;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.*;
-import java.nio.file.Files;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.Collection;
+import java.util.List;
 
 @RestController
 @RequestMapping("/student")
 public class StudentController {
 
     private final String TAG_STUDENT = "Students";
+    private final int MAX_PREVIEWS_IN_RESPONSE = 500;
     private final StudentServiceImpl studentService;
     private final AvatarServiceImpl avatarService;
+    private final AvatarUploadServiceImpl avatarUploadService;
+    private final FuzzySearchServiceImpl fuzzySearchService;
 
     Logger logger = LoggerFactory.getLogger(StudentController.class);
 
-    public StudentController(StudentServiceImpl studentService, AvatarServiceImpl avatarService) {
+    public StudentController(StudentServiceImpl studentService, AvatarServiceImpl avatarService,
+                             AvatarUploadServiceImpl avatarUploadService, FuzzySearchServiceImpl fuzzySearchService) {
         this.studentService = studentService;
         this.avatarService = avatarService;
+        this.avatarUploadService = avatarUploadService;
+        this.fuzzySearchService = fuzzySearchService;
     }
 
     @Operation(
@@ -154,6 +171,40 @@ public class StudentController {
         return ResponseEntity.ok(studentService.filterAgeStudents(minAge, maxAge));
     }
 
+    @Operation(
+            summary = "Search students by partial or misspelled name",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Found students with similarity of name, from the most similar:",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = Collection.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad request, if query is empty or limit is out of range",
+                            content = @Content(
+                                    mediaType = MediaType.TEXT_PLAIN_VALUE,
+                                    schema = @Schema(implementation = String.class)
+                            )
+                    )
+            },
+            tags = TAG_STUDENT
+    )
+    @GetMapping("/search/fuzzy")
+    public ResponseEntity<?> searchStudentsFuzzy(@RequestParam String query,
+                                                 @RequestParam(defaultValue = "10") int limit) {
+        logger.info("Call method searchStudentsFuzzy query = {}, limit = {}", query, limit);
+        try {
+            return ResponseEntity.ok(fuzzySearchService.searchStudents(query, limit));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Warning: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @Operation(
             summary = "Find faculty of Student",
             responses = {
@@ -187,7 +238,7 @@ public class StudentController {
     }
 
     @Operation(
-            summary = "Find avatar in Database by id",
+            summary = "Find avatar in Database by id of student",
             responses = {
                     @ApiResponse(
                             responseCode = "200",
@@ -211,7 +262,10 @@ public class StudentController {
     @GetMapping(value = "/{id}/avatar/dataBase")
     public ResponseEntity<?> downloadAvatar(@PathVariable Long id) {
         logger.info("Call method downloadAvatar");
-        Avatar avatar = avatarService.findAvatar(id);
+        Avatar avatar = avatarService.findAvatarOfStudent(id);
+        if (avatar == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
 
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.parseMediaType(avatar.getMediaType()));
@@ -220,6 +274,54 @@ public class StudentController {
         return ResponseEntity.status(HttpStatus.OK).headers(headers).body(avatar.getData());
     }
 
+    @Operation(
+            summary = "Get previews of avatars of many students in one response",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Previews of avatars, one part for every found avatar, "
+                                    + "part has header Content-ID with id of student",
+                            content = @Content(mediaType = "multipart/mixed")
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad request, if ids are empty or there are more than 500 ids",
+                            content = @Content(
+                                    mediaType = MediaType.TEXT_PLAIN_VALUE,
+                                    schema = @Schema(implementation = ResponseEntity.class)
+                            )
+                    )
+            },
+            tags = TAG_STUDENT
+    )
+    @GetMapping(value = "/avatars/previews")
+    public void downloadPreviews(@RequestParam List<Long> ids, HttpServletResponse response) throws IOException {
+        logger.info("Call method downloadPreviews");
+        if (ids.isEmpty() || ids.size() > MAX_PREVIEWS_IN_RESPONSE) {
+            response.sendError(HttpStatus.BAD_REQUEST.value());
+            return;
+        }
+        Collection<Avatar> avatars = avatarService.findAvatarsOfStudents(ids);
+
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        response.setContentType("multipart/mixed; boundary=" + boundary);
+        response.setStatus(200);
+        try (OutputStream os = response.getOutputStream();
+             BufferedOutputStream bos = new BufferedOutputStream(os, 8192)
+        ) {
+            for (Avatar avatar : avatars) {
+                String partHeaders = "--" + boundary + "\r\n"
+                        + HttpHeaders.CONTENT_TYPE + ": " + avatar.getMediaType() + "\r\n"
+                        + HttpHeaders.CONTENT_LENGTH + ": " + avatar.getData().length + "\r\n"
+                        + "Content-ID: " + avatar.getStudent().getId() + "\r\n\r\n";
+                bos.write(partHeaders.getBytes(StandardCharsets.US_ASCII));
+                bos.write(avatar.getData());
+                bos.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+            }
+            bos.write(("--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
     @Operation(
             summary = "Get all avatars of students",
             responses = {
@@ -242,7 +344,43 @@ public class StudentController {
     }
 
     @Operation(
-            summary = "Find avatar by id",
+            summary = "Export avatars of faculty or range of students to ZIP archive",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "ZIP archive with avatars",
+                            content = @Content(mediaType = "application/zip")
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad request, if faculty and range of students are not set, or fromId > toId",
+                            content = @Content(
+                                    mediaType = MediaType.TEXT_PLAIN_VALUE,
+                                    schema = @Schema(implementation = ResponseEntity.class)
+                            )
+                    )
+            },
+            tags = TAG_STUDENT
+    )
+    @GetMapping(value = "/avatars/export")
+    public void exportAvatars(@RequestParam(defaultValue = "BOTH") AvatarExportContent content,
+                              @RequestParam(required = false) Long facultyId,
+                              @RequestParam(required = false) Long fromId,
+                              @RequestParam(required = false) Long toId,
+                              HttpServletResponse response) throws IOException {
+        logger.info("Call method exportAvatars");
+        if (facultyId == null && (fromId == null || toId == null || fromId > toId)) {
+            response.sendError(HttpStatus.BAD_REQUEST.value());
+            return;
+        }
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"avatars.zip\"");
+        response.setStatus(200);
+        avatarService.exportAvatars(content, facultyId, fromId, toId, response.getOutputStream());
+    }
+
+    @Operation(
+            summary = "Find avatar by id of student",
             responses = {
                     @ApiResponse(
                             responseCode = "200",
@@ -266,16 +404,22 @@ public class StudentController {
     @GetMapping(value = "/{id}/avatar")
     public void downloadAvatar(@PathVariable Long id, HttpServletResponse response) throws IOException {
         logger.info("Call method downloadAvatar");
-        Avatar avatar = avatarService.findAvatar(id);
+        Avatar avatar = avatarService.findAvatarOfStudent(id);
+        if (avatar == null) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
 
         Path path = Path.of(avatar.getFilePath());
-        try (InputStream is = Files.newInputStream(path);
+        // length is taken from opened file, because file can be replaced by new upload after metadata is read
+        try (FileChannel channel = FileChannel.open(path);
+             InputStream is = Channels.newInputStream(channel);
              OutputStream os = response.getOutputStream();
              BufferedInputStream bis = new BufferedInputStream(is, 1024);
              BufferedOutputStream bos = new BufferedOutputStream(os, 1024)
         ) {
             response.setContentType(avatar.getMediaType());
-            response.setContentLength((int) avatar.getFileSize());
+            response.setContentLengthLong(channel.size());
             response.setStatus(200);
             bis.transferTo(bos);
         }
@@ -397,7 +541,7 @@ public class StudentController {
                     ),
                     @ApiResponse(
                             responseCode = "400",
-                            description = "If added photo is to big",
+                            description = "If added photo is to big, or has too many pixels",
                             content = @Content(
                                     mediaType = MediaType.TEXT_PLAIN_VALUE,
                                     schema = @Schema(implementation = ResponseEntity.class)
@@ -421,10 +565,252 @@ public class StudentController {
             logger.warn("Warning: avatar is to big");
             return ResponseEntity.badRequest().body("File is to big");
         }
-        avatarService.upLoad(id, avatar);
+        try {
+            avatarService.upLoad(id, avatar);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Warning: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
         return ResponseEntity.ok().build();
     }
 
+    @Operation(
+            summary = "Start resumable upload of avatar of student",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Upload is started, chunks are sent to /student/avatar/uploads/{uploadId}",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = AvatarUploadStatus.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "If size of avatar is not allowed, or name of file has no extension",
+                            content = @Content(
+                                    mediaType = MediaType.TEXT_PLAIN_VALUE,
+                                    schema = @Schema(implementation = ResponseEntity.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "If not found student",
+                            content = @Content(
+                                    mediaType = MediaType.TEXT_PLAIN_VALUE,
+                                    schema = @Schema(implementation = ResponseEntity.class)
+                            )
+                    )
+            },
+            tags = TAG_STUDENT
+    )
+    @PostMapping(value = "/{id}/avatar/uploads")
+    public ResponseEntity<?> createAvatarUpload(@PathVariable Long id,
+                                                @RequestParam String fileName,
+                                                @RequestParam String contentType,
+                                                @RequestParam long size) throws IOException {
+        logger.info("Call method createAvatarUpload");
+        try {
+            AvatarUploadStatus status = avatarUploadService.createUpload(id, fileName, contentType, size);
+            if (status == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            }
+            return ResponseEntity.ok(status);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @Operation(
+            summary = "Send chunk of resumable upload of avatar",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Bytes of chunk",
+                    content = @Content(mediaType = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+            ),
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Chunk is written",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = AvatarUploadStatus.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "If offset or length of chunk is wrong",
+                            content = @Content(
+                                    mediaType = MediaType.TEXT_PLAIN_VALUE,
+                                    schema = @Schema(implementation = ResponseEntity.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "If upload not found",
+                            content = @Content(
+                                    mediaType = MediaType.TEXT_PLAIN_VALUE,
+                                    schema = @Schema(implementation = ResponseEntity.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "409",
+                            description = "If upload is being completed",
+                            content = @Content(
+                                    mediaType = MediaType.TEXT_PLAIN_VALUE,
+                                    schema = @Schema(implementation = ResponseEntity.class)
+                            )
+                    )
+            },
+            tags = TAG_STUDENT
+    )
+    @PutMapping(value = "/avatar/uploads/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> writeAvatarChunk(@PathVariable String uploadId,
+                                              @RequestParam long offset,
+                                              HttpServletRequest request) throws IOException {
+        logger.info("Call method writeAvatarChunk");
+        try {
+            AvatarUploadStatus status = avatarUploadService.writeChunk(uploadId, offset,
+                    request.getContentLengthLong(), request.getInputStream());
+            if (status == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            }
+            return ResponseEntity.ok(status);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @Operation(
+            summary = "Get status of resumable upload of avatar",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Status of upload, nextOffset is offset of first not received chunk",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = AvatarUploadStatus.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "If upload not found",
+                            content = @Content(
+                                    mediaType = MediaType.TEXT_PLAIN_VALUE,
+                                    schema = @Schema(implementation = ResponseEntity.class)
+                            )
+                    )
+            },
+            tags = TAG_STUDENT
+    )
+    @GetMapping(value = "/avatar/uploads/{uploadId}")
+    public ResponseEntity<?> getAvatarUpload(@PathVariable String uploadId) {
+        logger.info("Call method getAvatarUpload");
+        AvatarUploadStatus status = avatarUploadService.getStatus(uploadId);
+        if (status == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        return ResponseEntity.ok(status);
+    }
+
+    @Operation(
+            summary = "Complete resumable upload and save avatar of student",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Avatar is saved",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = AvatarUploadStatus.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "If upload not found",
+                            content = @Content(
+                                    mediaType = MediaType.TEXT_PLAIN_VALUE,
+                                    schema = @Schema(implementation = ResponseEntity.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "409",
+                            description = "If not all chunks are received",
+                            content = @Content(
+                                    mediaType = MediaType.TEXT_PLAIN_VALUE,
+                                    schema = @Schema(implementation = ResponseEntity.class)
+                            )
+                    )
+            },
+            tags = TAG_STUDENT
+    )
+    @PostMapping(value = "/avatar/uploads/{uploadId}/complete")
+    public ResponseEntity<?> completeAvatarUpload(@PathVariable String uploadId) throws IOException {
+        logger.info("Call method completeAvatarUpload");
+        try {
+            AvatarUploadStatus status = avatarUploadService.completeUpload(uploadId);
+            if (status == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            }
+            return ResponseEntity.ok(status);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @Operation(
+            summary = "Cancel resumable upload of avatar",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Upload is canceled"
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "If upload not found",
+                            content = @Content(
+                                    mediaType = MediaType.TEXT_PLAIN_VALUE,
+                                    schema = @Schema(implementation = ResponseEntity.class)
+                            )
+                    )
+            },
+            tags = TAG_STUDENT
+    )
+    @DeleteMapping(value = "/avatar/uploads/{uploadId}")
+    public ResponseEntity<?> cancelAvatarUpload(@PathVariable String uploadId) throws IOException {
+        logger.info("Call method cancelAvatarUpload");
+        if (!avatarUploadService.cancelUpload(uploadId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        return ResponseEntity.ok().build();
+    }
+
+    @Operation(
+            summary = "Import avatars of students from ZIP archive",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "ZIP archive with avatars, name of every entry is {studentId}.{ext}",
+                    content = @Content(mediaType = "application/zip")
+            ),
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Result of import for every entry of archive",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = Collection.class)
+                            )
+                    )
+            },
+            tags = TAG_STUDENT
+    )
+    @PostMapping(value = "/avatars/import", consumes = {"application/zip", MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<?> importAvatars(HttpServletRequest request) throws IOException {
+        logger.info("Call method importAvatars");
+        return ResponseEntity.ok(avatarService.importAvatars(request.getInputStream()));
+    }
+
     @Operation(
             summary = "Create new Student",
             requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
@@ -442,6 +828,14 @@ public class StudentController {
                                     mediaType = MediaType.APPLICATION_JSON_VALUE,
                                     schema = @Schema(implementation = Faculty.class)
                             )
+                    ),
+                    @ApiResponse(
+                            responseCode = "503",
+                            description = "If group commit of new students is overloaded, request can be repeated",
+                            content = @Content(
+                                    mediaType = MediaType.TEXT_PLAIN_VALUE,
+                                    schema = @Schema(implementation = ResponseEntity.class)
+                            )
                     )
             },
             tags = TAG_STUDENT
@@ -449,7 +843,12 @@ public class StudentController {
     @PostMapping
     public ResponseEntity<?> createStudent(@RequestBody Student student) {
         logger.info("Call method createStudent");
-        return ResponseEntity.ok(studentService.createStudent(student));
+        try {
+            return ResponseEntity.ok(studentService.createStudent(student));
+        } catch (TransientDataAccessResourceException e) {
+            logger.warn("Warning: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        }
     }
 
     @Operation(
@@ -477,6 +876,14 @@ public class StudentController {
                                     mediaType = MediaType.TEXT_PLAIN_VALUE,
                                     schema = @Schema(implementation = ResponseEntity.class)
                             )
+                    ),
+                    @ApiResponse(
+                            responseCode = "409",
+                            description = "If student was changed by other request, version of student is not equal",
+                            content = @Content(
+                                    mediaType = MediaType.TEXT_PLAIN_VALUE,
+                                    schema = @Schema(implementation = ResponseEntity.class)
+                            )
                     )
             },
             tags = TAG_STUDENT
@@ -484,11 +891,17 @@ public class StudentController {
     @PutMapping
     public ResponseEntity<?> editStudent(@RequestBody Student student) {
         logger.info("Call method editStudent");
-        Student editStudent = studentService.editStudent(student);
+        Student editStudent;
+        try {
+            editStudent = studentService.editStudent(student);
+        } catch (OptimisticLockingFailureException e) {
+            logger.warn("Warning: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
         if (editStudent == null) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         }
-        return ResponseEntity.ok(student);
+        return ResponseEntity.ok(editStudent);
     }
 
     @Operation(
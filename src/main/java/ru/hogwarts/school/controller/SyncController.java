@@ -0,0 +1,65 @@
+package ru.hogwarts.school.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.hogwarts.school.dto.SyncResult;
+import ru.hogwarts.school.service.impl.SyncServiceImpl;
+
+@RestController
+@RequestMapping("/sync")
+public class SyncController {
+
+    private final String TAG_SYNC = "Sync";
+    private final SyncServiceImpl syncService;
+
+    Logger logger = LoggerFactory.getLogger(SyncController.class);
+
+    public SyncController(SyncServiceImpl syncService) {
+        this.syncService = syncService;
+    }
+
+    @Operation(
+            summary = "Get students and faculties changed since version of previous sync",
+            description = "Without since all students and faculties are returned. "
+                    + "Version of result is passed as since to next sync",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Changed and deleted students and faculties",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = SyncResult.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad request, if since < 0",
+                            content = @Content(
+                                    mediaType = MediaType.TEXT_PLAIN_VALUE,
+                                    schema = @Schema(implementation = ResponseEntity.class)
+                            )
+                    )
+            },
+            tags = TAG_SYNC
+    )
+    @GetMapping
+    public ResponseEntity<?> sync(@RequestParam(defaultValue = "0") long since) {
+        logger.info("Call method sync since = {}", since);
+        try {
+            return ResponseEntity.ok(syncService.sync(since));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Warning: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package ru.hogwarts.school.datasource;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resizes one Hikari pool between {@code minSize} and {@code maxSize} by feedback from the pool<br>
+ * on every {@link #adjust()} it takes threads waiting for connection and active connections from
+ * {@link HikariPoolMXBean}, and mean wait for connection and mean time of using connection since previous call
+ * from timers {@code hikaricp.connections.acquire} and {@code hikaricp.connections.usage}.
+ * Pool grows while threads wait for connections and usage time stays near its baseline.
+ * If usage time grows over {@code latencyTolerance} times of baseline, database is saturated, and more connections
+ * only make queries slower, so pool shrinks instead. Pool also shrinks after {@code shrinkAfterIntervals} calls
+ * with less than half of connections active. Baseline is the lowest usage time, slowly following current one,
+ * so it adapts to changed queries
+ */
+public class AdaptivePoolSizer {
+
+    static final String SIZE = "db.pool.adaptive.size";
+    static final String RESIZES = "db.pool.adaptive.resizes";
+
+    private static final double BASELINE_DRIFT = 0.05;
+    private static final int MAX_STEP = 4;
+
+    private final HikariDataSource pool;
+    private final MeterRegistry meterRegistry;
+    private final int minSize;
+    private final int maxSize;
+    private final double targetWaitMillis;
+    private final double latencyTolerance;
+    private final int shrinkAfterIntervals;
+
+    private final TimerDelta acquire = new TimerDelta();
+    private final TimerDelta usage = new TimerDelta();
+    private double baselineUsageMillis;
+    private int idleIntervals;
+
+    Logger logger = LoggerFactory.getLogger(AdaptivePoolSizer.class);
+
+    public AdaptivePoolSizer(HikariDataSource pool, MeterRegistry meterRegistry, int minSize, int maxSize,
+                             double targetWaitMillis, double latencyTolerance, int shrinkAfterIntervals) {
+        if (minSize < 1 || maxSize < minSize) {
+            throw new IllegalArgumentException("Pool size must be 1 <= min <= max");
+        }
+        this.pool = pool;
+        this.meterRegistry = meterRegistry;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.targetWaitMillis = targetWaitMillis;
+        this.latencyTolerance = latencyTolerance;
+        this.shrinkAfterIntervals = shrinkAfterIntervals;
+
+        HikariConfigMXBean config = pool.getHikariConfigMXBean();
+        // idle connections over min size are closed by Hikari after idle timeout
+        config.setMinimumIdle(minSize);
+        config.setMaximumPoolSize(Math.max(minSize, Math.min(maxSize, config.getMaximumPoolSize())));
+        Gauge.builder(SIZE, config, HikariConfigMXBean::getMaximumPoolSize)
+                .description("Maximum size of pool set by adaptive sizing")
+                .tag("pool", pool.getPoolName())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Take feedback of pool since previous call and resize pool
+     *
+     * @return new maximum size of pool
+     */
+    public int adjust() {
+        HikariConfigMXBean config = pool.getHikariConfigMXBean();
+        HikariPoolMXBean poolBean = pool.getHikariPoolMXBean();
+        int size = config.getMaximumPoolSize();
+        if (poolBean == null) {
+            return size;
+        }
+        double waitMillis = acquire.meanMillis(timer("hikaricp.connections.acquire"));
+        double usageMillis = usage.meanMillis(timer("hikaricp.connections.usage"));
+        int waiting = poolBean.getThreadsAwaitingConnection();
+        int active = poolBean.getActiveConnections();
+
+        boolean saturated = false;
+        if (usageMillis > 0) {
+            if (baselineUsageMillis == 0 || usageMillis < baselineUsageMillis) {
+                baselineUsageMillis = usageMillis;
+            } else {
+                saturated = usageMillis > baselineUsageMillis * latencyTolerance;
+                baselineUsageMillis += (usageMillis - baselineUsageMillis) * BASELINE_DRIFT;
+            }
+        }
+
+        int newSize = size;
+        String reason = null;
+        if (saturated && size > minSize) {
+            newSize = size - 1;
+            reason = "latency";
+        } else if (!saturated && (waiting > 0 || waitMillis > targetWaitMillis) && size < maxSize) {
+            newSize = Math.min(maxSize, size + Math.max(1, Math.min(MAX_STEP, waiting)));
+            reason = "wait";
+        } else if (active * 2 < size && size > minSize) {
+            if (++idleIntervals >= shrinkAfterIntervals) {
+                newSize = size - 1;
+                reason = "idle";
+            }
+        }
+        if (active * 2 >= size || newSize != size) {
+            idleIntervals = 0;
+        }
+
+        if (newSize != size) {
+            config.setMaximumPoolSize(newSize);
+            Counter.builder(RESIZES)
+                    .description("Resizes of pool by adaptive sizing")
+                    .tag("pool", pool.getPoolName())
+                    .tag("direction", newSize > size ? "grow" : "shrink")
+                    .tag("reason", reason)
+                    .register(meterRegistry)
+                    .increment();
+            logger.debug("Pool {} is resized {} -> {} by {}: waiting {}, active {}, wait {} ms, usage {} ms, baseline {} ms",
+                    pool.getPoolName(), size, newSize, reason, waiting, active,
+                    String.format("%.2f", waitMillis), String.format("%.2f", usageMillis),
+                    String.format("%.2f", baselineUsageMillis));
+        }
+        return newSize;
+    }
+
+    private Timer timer(String name) {
+        return meterRegistry.find(name).tag("pool", pool.getPoolName()).timer();
+    }
+
+    /**
+     * Mean of timer between calls
+     */
+    private static class TimerDelta {
+
+        private long count;
+        private double totalMillis;
+
+        private double meanMillis(Timer timer) {
+            if (timer == null) {
+                return 0;
+            }
+            long newCount = timer.count();
+            double newTotalMillis = timer.totalTime(TimeUnit.MILLISECONDS);
+            double mean = newCount > count ? (newTotalMillis - totalMillis) / (newCount - count) : 0;
+            count = newCount;
+            totalMillis = newTotalMillis;
+            return mean;
+        }
+    }
+}
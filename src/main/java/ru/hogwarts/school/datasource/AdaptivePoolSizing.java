@@ -0,0 +1,85 @@
+package ru.hogwarts.school.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive sizing of Hikari pools of application, enabled by {@code datasource.pool.adaptive.enabled}<br>
+ * every pool, primary and replicas if they are configured, is resized by its own {@link AdaptivePoolSizer}
+ * every {@code datasource.pool.adaptive.interval-ms}
+ */
+@Component
+@ConditionalOnProperty(name = "datasource.pool.adaptive.enabled", havingValue = "true")
+public class AdaptivePoolSizing {
+
+    private final List<AdaptivePoolSizer> sizers = new ArrayList<>();
+    private final ScheduledExecutorService executor;
+
+    Logger logger = LoggerFactory.getLogger(AdaptivePoolSizing.class);
+
+    public AdaptivePoolSizing(DataSource dataSource,
+                              MeterRegistry meterRegistry,
+                              @Value("${datasource.pool.adaptive.min-size:2}") int minSize,
+                              @Value("${datasource.pool.adaptive.max-size:40}") int maxSize,
+                              @Value("${datasource.pool.adaptive.interval-ms:1000}") long intervalMillis,
+                              @Value("${datasource.pool.adaptive.target-wait-ms:5}") double targetWaitMillis,
+                              @Value("${datasource.pool.adaptive.latency-tolerance:1.5}") double latencyTolerance,
+                              @Value("${datasource.pool.adaptive.shrink-after-intervals:10}") int shrinkAfterIntervals)
+            throws SQLException {
+        for (HikariDataSource pool : poolsOf(dataSource)) {
+            sizers.add(new AdaptivePoolSizer(pool, meterRegistry, minSize, maxSize, targetWaitMillis,
+                    latencyTolerance, shrinkAfterIntervals));
+            logger.info("Pool {} is sized from {} to {} connections", pool.getPoolName(), minSize, maxSize);
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "adaptive-pool-sizing");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::adjust, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void adjust() {
+        for (AdaptivePoolSizer sizer : sizers) {
+            try {
+                sizer.adjust();
+            } catch (RuntimeException e) {
+                logger.error("Pool is not resized", e);
+            }
+        }
+    }
+
+    private static List<HikariDataSource> poolsOf(DataSource dataSource) throws SQLException {
+        List<HikariDataSource> pools = new ArrayList<>();
+        if (dataSource.isWrapperFor(ReplicaRoutingDataSource.class)) {
+            for (DataSource target : dataSource.unwrap(ReplicaRoutingDataSource.class).getResolvedDataSources().values()) {
+                // primary may be wrapped by limits and metrics of connections
+                if (target.isWrapperFor(HikariDataSource.class)) {
+                    pools.add(target.unwrap(HikariDataSource.class));
+                }
+            }
+        } else if (dataSource.isWrapperFor(HikariDataSource.class)) {
+            pools.add(dataSource.unwrap(HikariDataSource.class));
+        }
+        return pools;
+    }
+}
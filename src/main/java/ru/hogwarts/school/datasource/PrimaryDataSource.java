@@ -0,0 +1,53 @@
+package ru.hogwarts.school.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.function.UnaryOperator;
+
+/**
+ * Primary of data source of application, which is data source itself or primary of {@link ReplicaRoutingDataSource}<br>
+ * limits and metrics of connections are applied to primary only, reads from replicas do not use its pool
+ */
+public final class PrimaryDataSource {
+
+    /**
+     * Name of bean of data source of application
+     */
+    public static final String BEAN_NAME = "dataSource";
+
+    private PrimaryDataSource() {
+    }
+
+    /**
+     * Wrap primary of data source
+     *
+     * @param dataSource data source of application
+     * @param wrapper wrapper of primary
+     * @return data source which must be used instead of given one
+     */
+    public static DataSource wrap(DataSource dataSource, UnaryOperator<DataSource> wrapper) {
+        try {
+            if (dataSource.isWrapperFor(ReplicaRoutingDataSource.class)) {
+                dataSource.unwrap(ReplicaRoutingDataSource.class).wrapPrimary(wrapper);
+                return dataSource;
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Data source is not unwrapped", e);
+        }
+        return wrapper.apply(dataSource);
+    }
+
+    /**
+     * @return Hikari pool of primary, or {@code null} if primary is not Hikari pool
+     */
+    public static HikariDataSource poolOf(DataSource dataSource) throws SQLException {
+        DataSource primary = dataSource.isWrapperFor(ReplicaRoutingDataSource.class)
+                ? dataSource.unwrap(ReplicaRoutingDataSource.class).getResolvedDefaultDataSource()
+                : dataSource;
+        return primary != null && primary.isWrapperFor(HikariDataSource.class)
+                ? primary.unwrap(HikariDataSource.class)
+                : null;
+    }
+}
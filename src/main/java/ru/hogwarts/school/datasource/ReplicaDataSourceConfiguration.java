@@ -0,0 +1,116 @@
+package ru.hogwarts.school.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Data source with read replicas, enabled by {@code datasource.replica.urls}<br>
+ * primary is configured by {@code spring.datasource.*}, replicas are given by comma separated urls,
+ * and use the same user, password and settings of pool {@code spring.datasource.hikari.*}.
+ * Read-only transactions go to replica with lag no more than {@code datasource.replica.max-lag-ms},
+ * if there is no such replica, {@code datasource.replica.stale-policy} decides between primary
+ * and the least lagging replica. After write client reads from primary for {@code datasource.replica.sticky-ms}.
+ * Pools and check of lag are closed with context, after beans which use data source
+ */
+@Configuration
+@ConditionalOnProperty(name = "datasource.replica.urls")
+public class ReplicaDataSourceConfiguration {
+
+    // replay timestamp is the time of last replayed transaction, so idle primary looks like lag without this check
+    private static final String LAG = "SELECT CASE WHEN NOT pg_is_in_recovery() "
+            + "OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE CAST(COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) AS bigint) END";
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+    private final ScheduledExecutorService lagChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "replica-lag-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties,
+                                 Environment environment,
+                                 @Value("${datasource.replica.urls}") List<String> urls,
+                                 @Value("${datasource.replica.max-lag-ms:1000}") long maxLagMillis,
+                                 @Value("${datasource.replica.stale-policy:PRIMARY}") ReplicaRoutingDataSource.StalePolicy stalePolicy,
+                                 @Value("${datasource.replica.lag-check-interval-ms:500}") long lagCheckIntervalMillis) {
+        HikariDataSource primary = pool(properties, environment, properties.determineUrl(), "primary");
+        pools.add(primary);
+        List<DataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource replica = pool(properties, environment, urls.get(i).trim(), "replica-" + i);
+            replica.setReadOnly(true);
+            pools.add(replica);
+            replicas.add(replica);
+        }
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replicas, maxLagMillis, stalePolicy,
+                replica -> new JdbcTemplate(replica).queryForObject(LAG, Long.class));
+
+        lagChecker.scheduleWithFixedDelay(routing::checkLag, 0, lagCheckIntervalMillis, TimeUnit.MILLISECONDS);
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    /**
+     * Configuration is destroyed after data source made by it, so pools are closed
+     * when nothing uses them anymore
+     */
+    @PreDestroy
+    public void shutdown() {
+        lagChecker.shutdownNow();
+        pools.forEach(HikariDataSource::close);
+    }
+
+    @Bean
+    public MeterBinder replicaLagMetrics(DataSource dataSource) throws SQLException {
+        ReplicaRoutingDataSource routing = dataSource.unwrap(ReplicaRoutingDataSource.class);
+        return registry -> routing.getLags().keySet().forEach(key ->
+                Gauge.builder("datasource.replica.lag", routing, r -> r.getLags().get(key))
+                        .description("Lag of replica, -1 if replica is not available")
+                        .tag("replica", key)
+                        .baseUnit("milliseconds")
+                        .register(registry));
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(
+            @Value("${datasource.replica.sticky-ms:5000}") long stickyMillis) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration =
+                new FilterRegistrationBean<>(new ReadYourWritesFilter(stickyMillis));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+
+    private static HikariDataSource pool(DataSourceProperties properties, Environment environment, String url,
+                                         String name) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+        dataSource.setPoolName(name);
+        return dataSource;
+    }
+}
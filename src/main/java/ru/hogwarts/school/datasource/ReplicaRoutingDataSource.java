@@ -0,0 +1,170 @@
+package ru.hogwarts.school.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Data source which sends read-only transactions to replicas and everything else to primary<br>
+ * lag of every replica is checked by {@link #checkLag()}, replica which lags more than {@code maxLagMillis}
+ * or is not available is skipped. If all replicas are skipped, read goes to primary,
+ * or with {@link StalePolicy#LEAST_LAGGING} to available replica with the least lag.
+ * Thread can be sent to primary by {@link #setPrimaryForced(boolean)}, to read its own writes.
+ * Connection is chosen when it is got, so this data source must be wrapped by
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, which gets connection
+ * at first statement, after transaction is marked as read-only
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum StalePolicy {
+        PRIMARY,
+        LEAST_LAGGING
+    }
+
+    static final String PRIMARY = "primary";
+    static final long UNAVAILABLE = -1;
+
+    private static final ThreadLocal<Boolean> PRIMARY_FORCED = new ThreadLocal<>();
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final Map<Object, Object> targets = new HashMap<>();
+    private final long maxLagMillis;
+    private final StalePolicy stalePolicy;
+    private final ToLongFunction<DataSource> lagProbe;
+    private final AtomicInteger next = new AtomicInteger();
+
+    Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    /**
+     * @param primary data source of primary
+     * @param replicas data sources of replicas
+     * @param maxLagMillis max lag of replica which is used for reads
+     * @param stalePolicy where reads go if all replicas lag too much
+     * @param lagProbe returns lag of replica in milliseconds, may throw exception if replica is not available
+     */
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, long maxLagMillis,
+                                    StalePolicy stalePolicy, ToLongFunction<DataSource> lagProbe) {
+        this.maxLagMillis = maxLagMillis;
+        this.stalePolicy = stalePolicy;
+        this.lagProbe = lagProbe;
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = new Replica("replica-" + i, replicas.get(i));
+            this.replicas.add(replica);
+            targets.put(replica.key, replica.dataSource);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    /**
+     * Send all transactions of current thread to primary, or stop it
+     */
+    public static void setPrimaryForced(boolean forced) {
+        if (forced) {
+            PRIMARY_FORCED.set(Boolean.TRUE);
+        } else {
+            PRIMARY_FORCED.remove();
+        }
+    }
+
+    /**
+     * Check if transactions of current thread are sent to primary by {@link #setPrimaryForced(boolean)}
+     */
+    public static boolean isPrimaryForced() {
+        return PRIMARY_FORCED.get() != null;
+    }
+
+    /**
+     * Replace data source of primary by its wrapper, connections of replicas are not wrapped
+     */
+    public void wrapPrimary(UnaryOperator<DataSource> wrapper) {
+        DataSource primary = wrapper.apply((DataSource) targets.get(PRIMARY));
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    /**
+     * Update lag of every replica
+     */
+    public void checkLag() {
+        for (Replica replica : replicas) {
+            long lag;
+            try {
+                lag = Math.max(0, lagProbe.applyAsLong(replica.dataSource));
+            } catch (RuntimeException e) {
+                logger.warn("Replica {} is not available: {}", replica.key, e.getMessage());
+                lag = UNAVAILABLE;
+            }
+            if (isFresh(replica.lagMillis) != isFresh(lag)) {
+                logger.info("Replica {} is {}, lag is {} ms", replica.key, isFresh(lag) ? "used" : "skipped", lag);
+            }
+            replica.lagMillis = lag;
+        }
+    }
+
+    /**
+     * Lags of replicas by their keys, {@code -1} if replica is not available
+     */
+    public Map<String, Long> getLags() {
+        Map<String, Long> lags = new LinkedHashMap<>();
+        replicas.forEach(r -> lags.put(r.key, r.lagMillis));
+        return lags;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || isPrimaryForced()) {
+            return PRIMARY;
+        }
+        Replica replica = chooseReplica();
+        return replica == null ? PRIMARY : replica.key;
+    }
+
+    private Replica chooseReplica() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        Replica leastLagging = null;
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            long lag = replica.lagMillis;
+            if (lag == UNAVAILABLE) {
+                continue;
+            }
+            if (isFresh(lag)) {
+                return replica;
+            }
+            if (leastLagging == null || lag < leastLagging.lagMillis) {
+                leastLagging = replica;
+            }
+        }
+        return stalePolicy == StalePolicy.LEAST_LAGGING ? leastLagging : null;
+    }
+
+    private boolean isFresh(long lag) {
+        return lag != UNAVAILABLE && lag <= maxLagMillis;
+    }
+
+    private static class Replica {
+
+        private final String key;
+        private final DataSource dataSource;
+        // replica is not used until its lag is checked
+        private volatile long lagMillis = UNAVAILABLE;
+
+        private Replica(String key, DataSource dataSource) {
+            this.key = key;
+            this.dataSource = dataSource;
+        }
+    }
+}
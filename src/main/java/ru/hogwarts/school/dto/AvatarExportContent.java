@@ -0,0 +1,10 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * What files of avatars are written to export archive
+ */
+public enum AvatarExportContent {
+    ORIGINALS,
+    PREVIEWS,
+    BOTH
+}
@@ -0,0 +1,67 @@
+package ru.hogwarts.school.dto;
+
+import java.util.Objects;
+
+/**
+ * Result of import one entry of ZIP archive with avatars
+ */
+public class AvatarImportResult {
+
+    public enum Status {
+        IMPORTED,
+        SKIPPED,
+        NOT_FOUND,
+        FAILED
+    }
+
+    private final String entryName;
+    private final Long studentId;
+    private final Status status;
+    private final String message;
+
+    public AvatarImportResult(String entryName, Long studentId, Status status, String message) {
+        this.entryName = entryName;
+        this.studentId = studentId;
+        this.status = status;
+        this.message = message;
+    }
+
+    public String getEntryName() {
+        return entryName;
+    }
+
+    public Long getStudentId() {
+        return studentId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AvatarImportResult that = (AvatarImportResult) o;
+        return Objects.equals(entryName, that.entryName) && Objects.equals(studentId, that.studentId) && status == that.status && Objects.equals(message, that.message);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(entryName, studentId, status, message);
+    }
+
+    @Override
+    public String toString() {
+        return "AvatarImportResult{" +
+                "entryName='" + entryName + '\'' +
+                ", studentId=" + studentId +
+                ", status=" + status +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,81 @@
+package ru.hogwarts.school.dto;
+
+import java.util.Objects;
+
+/**
+ * State of resumable upload of avatar, which is returned to client
+ */
+public class AvatarUploadStatus {
+
+    private final String uploadId;
+    private final Long studentId;
+    private final long size;
+    private final int chunkSize;
+    private final long receivedBytes;
+    private final Long nextOffset;
+
+    public AvatarUploadStatus(String uploadId, Long studentId, long size, int chunkSize, long receivedBytes, Long nextOffset) {
+        this.uploadId = uploadId;
+        this.studentId = studentId;
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.receivedBytes = receivedBytes;
+        this.nextOffset = nextOffset;
+    }
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public Long getStudentId() {
+        return studentId;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public long getReceivedBytes() {
+        return receivedBytes;
+    }
+
+    /**
+     * @return offset of first chunk which is not received, or {@code null} if all chunks are received
+     */
+    public Long getNextOffset() {
+        return nextOffset;
+    }
+
+    public boolean isComplete() {
+        return nextOffset == null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AvatarUploadStatus that = (AvatarUploadStatus) o;
+        return size == that.size && chunkSize == that.chunkSize && receivedBytes == that.receivedBytes && Objects.equals(uploadId, that.uploadId) && Objects.equals(studentId, that.studentId) && Objects.equals(nextOffset, that.nextOffset);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(uploadId, studentId, size, chunkSize, receivedBytes, nextOffset);
+    }
+
+    @Override
+    public String toString() {
+        return "AvatarUploadStatus{" +
+                "uploadId='" + uploadId + '\'' +
+                ", studentId=" + studentId +
+                ", size=" + size +
+                ", chunkSize=" + chunkSize +
+                ", receivedBytes=" + receivedBytes +
+                ", nextOffset=" + nextOffset +
+                '}';
+    }
+}
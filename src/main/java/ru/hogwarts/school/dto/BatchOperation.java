@@ -0,0 +1,94 @@
+package ru.hogwarts.school.dto;
+
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+
+import java.util.Objects;
+
+/**
+ * One operation of batch, for create and edit {@code student} or {@code faculty} is set by entity,
+ * for delete {@code id} is set
+ */
+public class BatchOperation {
+
+    public enum Type {
+        CREATE,
+        EDIT,
+        DELETE
+    }
+
+    public enum Entity {
+        STUDENT,
+        FACULTY
+    }
+
+    private Type type;
+    private Entity entity;
+    private Long id;
+    private Student student;
+    private Faculty faculty;
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public Entity getEntity() {
+        return entity;
+    }
+
+    public void setEntity(Entity entity) {
+        this.entity = entity;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Student getStudent() {
+        return student;
+    }
+
+    public void setStudent(Student student) {
+        this.student = student;
+    }
+
+    public Faculty getFaculty() {
+        return faculty;
+    }
+
+    public void setFaculty(Faculty faculty) {
+        this.faculty = faculty;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BatchOperation that = (BatchOperation) o;
+        return type == that.type && entity == that.entity && Objects.equals(id, that.id) && Objects.equals(student, that.student) && Objects.equals(faculty, that.faculty);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, entity, id, student, faculty);
+    }
+
+    @Override
+    public String toString() {
+        return "BatchOperation{" +
+                "type=" + type +
+                ", entity=" + entity +
+                ", id=" + id +
+                ", student=" + student +
+                ", faculty=" + faculty +
+                '}';
+    }
+}
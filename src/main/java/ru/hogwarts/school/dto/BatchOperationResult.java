@@ -0,0 +1,75 @@
+package ru.hogwarts.school.dto;
+
+import java.util.Objects;
+
+/**
+ * Result of one operation of batch, {@code id} and {@code version} are values of entity after operation
+ */
+public class BatchOperationResult {
+
+    public enum Status {
+        OK,
+        NOT_FOUND,
+        CONFLICT,
+        INVALID,
+        ROLLED_BACK
+    }
+
+    private final int index;
+    private final Status status;
+    private final Long id;
+    private final Long version;
+    private final String message;
+
+    public BatchOperationResult(int index, Status status, Long id, Long version, String message) {
+        this.index = index;
+        this.status = status;
+        this.id = id;
+        this.version = version;
+        this.message = message;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BatchOperationResult that = (BatchOperationResult) o;
+        return index == that.index && status == that.status && Objects.equals(id, that.id) && Objects.equals(version, that.version) && Objects.equals(message, that.message);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(index, status, id, version, message);
+    }
+
+    @Override
+    public String toString() {
+        return "BatchOperationResult{" +
+                "index=" + index +
+                ", status=" + status +
+                ", id=" + id +
+                ", version=" + version +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,47 @@
+package ru.hogwarts.school.dto;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Result of batch, operations are committed all together, or none of them
+ */
+public class BatchResult {
+
+    private final boolean committed;
+    private final List<BatchOperationResult> results;
+
+    public BatchResult(boolean committed, List<BatchOperationResult> results) {
+        this.committed = committed;
+        this.results = results;
+    }
+
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    public List<BatchOperationResult> getResults() {
+        return results;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BatchResult that = (BatchResult) o;
+        return committed == that.committed && Objects.equals(results, that.results);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(committed, results);
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{" +
+                "committed=" + committed +
+                ", results=" + results +
+                '}';
+    }
+}
@@ -0,0 +1,98 @@
+package ru.hogwarts.school.dto;
+
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Change of student or faculty, published by services and sent to subscribers of change feed after commit<br>
+ * {@code data} is a copy of columns of entity taken when it was changed, faculty of student is only its id,
+ * so event is not bound to persistence context
+ */
+public class ChangeEvent {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    public enum Entity {
+        STUDENT,
+        FACULTY
+    }
+
+    private final Type type;
+    private final Entity entity;
+    private final long id;
+    private final Map<String, Object> data;
+
+    public ChangeEvent(Type type, Entity entity, long id, Map<String, Object> data) {
+        this.type = type;
+        this.entity = entity;
+        this.id = id;
+        this.data = Collections.unmodifiableMap(data);
+    }
+
+    public static ChangeEvent of(Type type, Student student) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("id", student.getId());
+        data.put("name", student.getName());
+        data.put("age", student.getAge());
+        data.put("facultyId", student.getFaculty() == null ? null : student.getFaculty().getId());
+        data.put("version", student.getVersion());
+        return new ChangeEvent(type, Entity.STUDENT, student.getId(), data);
+    }
+
+    public static ChangeEvent of(Type type, Faculty faculty) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("id", faculty.getId());
+        data.put("name", faculty.getName());
+        data.put("color", faculty.getColor());
+        data.put("version", faculty.getVersion());
+        return new ChangeEvent(type, Entity.FACULTY, faculty.getId(), data);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Entity getEntity() {
+        return entity;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Map<String, Object> getData() {
+        return data;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ChangeEvent that = (ChangeEvent) o;
+        return id == that.id && type == that.type && entity == that.entity && Objects.equals(data, that.data);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, entity, id, data);
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeEvent{" +
+                "type=" + type +
+                ", entity=" + entity +
+                ", id=" + id +
+                ", data=" + data +
+                '}';
+    }
+}
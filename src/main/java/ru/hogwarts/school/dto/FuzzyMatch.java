@@ -0,0 +1,46 @@
+package ru.hogwarts.school.dto;
+
+import java.util.Objects;
+
+/**
+ * Student or faculty found by fuzzy search, and similarity of its name to query from 0 to 1
+ */
+public class FuzzyMatch<T> {
+
+    private final T item;
+    private final double similarity;
+
+    public FuzzyMatch(T item, double similarity) {
+        this.item = item;
+        this.similarity = similarity;
+    }
+
+    public T getItem() {
+        return item;
+    }
+
+    public double getSimilarity() {
+        return similarity;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        FuzzyMatch<?> that = (FuzzyMatch<?>) o;
+        return Double.compare(that.similarity, similarity) == 0 && Objects.equals(item, that.item);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(item, similarity);
+    }
+
+    @Override
+    public String toString() {
+        return "FuzzyMatch{" +
+                "item=" + item +
+                ", similarity=" + similarity +
+                '}';
+    }
+}
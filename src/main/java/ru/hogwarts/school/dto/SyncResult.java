@@ -0,0 +1,81 @@
+package ru.hogwarts.school.dto;
+
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * Students and faculties changed since version of previous sync<br>
+ * {@code version} is passed as {@code since} to next sync, {@code full} is {@code true} if all students
+ * and faculties are returned, then client must replace its lists instead of merging them
+ */
+public class SyncResult {
+
+    private final long version;
+    private final boolean full;
+    private final Collection<Student> students;
+    private final Collection<Faculty> faculties;
+    private final Collection<Long> deletedStudentIds;
+    private final Collection<Long> deletedFacultyIds;
+
+    public SyncResult(long version, boolean full, Collection<Student> students, Collection<Faculty> faculties,
+                      Collection<Long> deletedStudentIds, Collection<Long> deletedFacultyIds) {
+        this.version = version;
+        this.full = full;
+        this.students = students;
+        this.faculties = faculties;
+        this.deletedStudentIds = deletedStudentIds;
+        this.deletedFacultyIds = deletedFacultyIds;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public Collection<Student> getStudents() {
+        return students;
+    }
+
+    public Collection<Faculty> getFaculties() {
+        return faculties;
+    }
+
+    public Collection<Long> getDeletedStudentIds() {
+        return deletedStudentIds;
+    }
+
+    public Collection<Long> getDeletedFacultyIds() {
+        return deletedFacultyIds;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SyncResult that = (SyncResult) o;
+        return version == that.version && full == that.full && Objects.equals(students, that.students) && Objects.equals(faculties, that.faculties) && Objects.equals(deletedStudentIds, that.deletedStudentIds) && Objects.equals(deletedFacultyIds, that.deletedFacultyIds);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(version, full, students, faculties, deletedStudentIds, deletedFacultyIds);
+    }
+
+    @Override
+    public String toString() {
+        return "SyncResult{" +
+                "version=" + version +
+                ", full=" + full +
+                ", students=" + students +
+                ", faculties=" + faculties +
+                ", deletedStudentIds=" + deletedStudentIds +
+                ", deletedFacultyIds=" + deletedFacultyIds +
+                '}';
+    }
+}
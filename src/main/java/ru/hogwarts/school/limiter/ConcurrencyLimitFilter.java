@@ -0,0 +1,184 @@
+package ru.hogwarts.school.limiter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rejects requests over adaptive limit of their endpoint group with 503 and {@code Retry-After}<br>
+ * request belongs to the first group which has its method and a pattern matching its path,
+ * requests of no group are not limited. Every group has its own {@link GradientLimiter},
+ * so slow heavy requests lower only their own limit. Responses with status 5xx and exceptions
+ * are counted as dropped requests, except requests which inner throttle rejected and marked by
+ * {@link #SHED_ATTRIBUTE}, they release their place without changing limit. For every group {@code http.limiter.limit} and {@code http.limiter.in-flight}
+ * are gauges, and {@code http.limiter.rejected} counts rejected requests
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    /**
+     * Attribute of request rejected by inner throttle, such 503 is not overload of the group
+     */
+    public static final String SHED_ATTRIBUTE = ConcurrencyLimitFilter.class.getName() + ".SHED";
+
+    private final List<EndpointGroup> groups = new ArrayList<>();
+    private final MeterRegistry meterRegistry;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    Logger logger = LoggerFactory.getLogger(ConcurrencyLimitFilter.class);
+
+    public ConcurrencyLimitFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Add group of endpoints, groups are checked in order of adding.
+     * Group may be added again with other methods and patterns and the same limiter
+     *
+     * @param name name of group, tag of metrics
+     * @param methods HTTP methods of group, empty for any method
+     * @param patterns ant patterns of paths of group
+     * @param limiter limiter of group
+     * @return this filter
+     */
+    public ConcurrencyLimitFilter addGroup(String name, Set<String> methods, List<String> patterns,
+                                           GradientLimiter limiter) {
+        for (EndpointGroup group : groups) {
+            if (group.name.equals(name)) {
+                if (group.limiter != limiter) {
+                    throw new IllegalArgumentException("Group " + name + " is already added with other limiter");
+                }
+                groups.add(new EndpointGroup(name, methods, patterns, limiter, group.rejected));
+                return this;
+            }
+        }
+        Counter rejected = Counter.builder("http.limiter.rejected")
+                .description("Requests rejected by concurrency limit")
+                .tag("group", name)
+                .register(meterRegistry);
+        Gauge.builder("http.limiter.limit", limiter, GradientLimiter::getLimit)
+                .description("Adaptive limit of concurrent requests")
+                .tag("group", name)
+                .register(meterRegistry);
+        Gauge.builder("http.limiter.in-flight", limiter, GradientLimiter::getInFlight)
+                .description("Requests being served")
+                .tag("group", name)
+                .register(meterRegistry);
+        groups.add(new EndpointGroup(name, methods, patterns, limiter, rejected));
+        return this;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        EndpointGroup group = groupOf(request);
+        if (group == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        GradientLimiter limiter = group.limiter;
+        if (!limiter.tryAcquire()) {
+            group.rejected.increment();
+            logger.debug("Request {} {} is rejected, limit of group {} is {}",
+                    request.getMethod(), request.getRequestURI(), group.name, limiter.getLimit());
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(limiter.getRetryAfterSeconds()));
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Server is overloaded, retry later");
+            return;
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = false;
+        } finally {
+            if (!failed && request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleasingListener(limiter, start));
+            } else if (request.getAttribute(SHED_ATTRIBUTE) != null) {
+                limiter.cancel();
+            } else {
+                limiter.release(System.nanoTime() - start, failed || response.getStatus() >= 500);
+            }
+        }
+    }
+
+    private EndpointGroup groupOf(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (EndpointGroup group : groups) {
+            if (!group.methods.isEmpty() && !group.methods.contains(request.getMethod())) {
+                continue;
+            }
+            for (String pattern : group.patterns) {
+                if (pathMatcher.match(pattern, path)) {
+                    return group;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static class EndpointGroup {
+
+        private final String name;
+        private final Set<String> methods;
+        private final List<String> patterns;
+        private final GradientLimiter limiter;
+        private final Counter rejected;
+
+        private EndpointGroup(String name, Set<String> methods, List<String> patterns, GradientLimiter limiter,
+                              Counter rejected) {
+            this.name = name;
+            this.methods = methods;
+            this.patterns = patterns;
+            this.limiter = limiter;
+            this.rejected = rejected;
+        }
+    }
+
+    /**
+     * Releases place of asynchronous request when it is finished instead of when its first dispatch returns
+     */
+    private static class ReleasingListener implements AsyncListener {
+
+        private final GradientLimiter limiter;
+        private final long start;
+
+        private ReleasingListener(GradientLimiter limiter, long start) {
+            this.limiter = limiter;
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            HttpServletResponse response = (HttpServletResponse) event.getSuppliedResponse();
+            limiter.release(System.nanoTime() - start, response.getStatus() >= 500);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package ru.hogwarts.school.limiter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limit of concurrent requests adapted by their latency<br>
+ * short latency is the average of last requests, long latency is the average of many requests and stands for
+ * latency without queueing. Gradient {@code tolerance * long / short}, bounded to [0.5, 1], shrinks limit when
+ * requests queue somewhere and become slower, and limit grows by its square root while latency stays within
+ * tolerance and at least half of limit is used. Failed requests decrease limit multiplicatively,
+ * so limit also backs off when overload shows up as errors instead of latency
+ */
+public class GradientLimiter {
+
+    private static final double SHORT_WEIGHT = 0.1;
+    private static final double LONG_WEIGHT = 0.002;
+    private static final double SMOOTHING = 0.2;
+    private static final double DROP_BACKOFF = 0.9;
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile double limit;
+    private double shortRttNanos;
+    private double longRttNanos;
+
+    public GradientLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limit must be 1 <= min <= initial <= max");
+        }
+        if (tolerance < 1) {
+            throw new IllegalArgumentException("Tolerance must be at least 1");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Take a place for request
+     *
+     * @return {@code false} if limit is reached, request must be rejected
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Release place of finished request and adapt limit by its latency
+     *
+     * @param rttNanos duration of request
+     * @param dropped {@code true} if request failed by overload, its latency is not taken into account
+     */
+    public void release(long rttNanos, boolean dropped) {
+        int current = inFlight.getAndDecrement();
+        synchronized (this) {
+            if (dropped) {
+                limit = Math.max(minLimit, limit * DROP_BACKOFF);
+                return;
+            }
+            if (longRttNanos == 0) {
+                shortRttNanos = rttNanos;
+                longRttNanos = rttNanos;
+                return;
+            }
+            shortRttNanos += (rttNanos - shortRttNanos) * SHORT_WEIGHT;
+            longRttNanos += (rttNanos - longRttNanos) * LONG_WEIGHT;
+            // after latency dropped for good, long latency catches up faster
+            if (longRttNanos > shortRttNanos * 2) {
+                longRttNanos *= 0.95;
+            }
+            double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, tolerance * longRttNanos / shortRttNanos));
+            double newLimit = limit * gradient + Math.sqrt(limit);
+            // limit which is not used can not be checked by latency, so it does not grow
+            if (newLimit > limit && current < limit / 2) {
+                return;
+            }
+            newLimit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+            limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        }
+    }
+
+    /**
+     * Release place of request which was not served, because other throttle rejected it, limit is not adapted
+     */
+    public void cancel() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return seconds after which rejected client may retry, latency of requests rounded up, at least one second
+     */
+    public synchronized long getRetryAfterSeconds() {
+        return Math.max(1, (long) Math.ceil(shortRttNanos / TimeUnit.SECONDS.toNanos(1)));
+    }
+}
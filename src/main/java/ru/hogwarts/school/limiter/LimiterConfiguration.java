@@ -0,0 +1,55 @@
+package ru.hogwarts.school.limiter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Adaptive concurrency limits of endpoints, enabled by {@code limiter.enabled}<br>
+ * groups are {@code heavy}: uploads, imports and exports of avatars, CSV, batches, sync and backfill;
+ * {@code write}: other changes of students and faculties; {@code read}: other reads of students and faculties.
+ * Every group starts from {@code limiter.<group>.initial-limit} and adapts up to {@code limiter.<group>.max-limit}
+ */
+@Configuration
+@ConditionalOnProperty(name = "limiter.enabled", havingValue = "true", matchIfMissing = true)
+public class LimiterConfiguration {
+
+    private static final List<String> HEAVY = List.of("/csv/**", "/batch", "/sync", "/backfill/**",
+            "/student/avatars/import", "/student/avatars/export", "/student/avatar/uploads/**");
+    // downloads of one avatar and its preview are cheap, they are limited as reads
+    private static final List<String> HEAVY_POSTS = List.of("/student/*/avatar", "/student/*/avatar/uploads");
+    private static final List<String> STUDENTS_AND_FACULTIES = List.of("/student", "/student/**",
+            "/faculty", "/faculty/**");
+
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+            MeterRegistry meterRegistry,
+            @Value("${limiter.min-limit:1}") int minLimit,
+            @Value("${limiter.tolerance:2.0}") double tolerance,
+            @Value("${limiter.heavy.initial-limit:4}") int heavyInitialLimit,
+            @Value("${limiter.heavy.max-limit:16}") int heavyMaxLimit,
+            @Value("${limiter.write.initial-limit:20}") int writeInitialLimit,
+            @Value("${limiter.write.max-limit:100}") int writeMaxLimit,
+            @Value("${limiter.read.initial-limit:40}") int readInitialLimit,
+            @Value("${limiter.read.max-limit:400}") int readMaxLimit) {
+        GradientLimiter heavy = new GradientLimiter(heavyInitialLimit, minLimit, heavyMaxLimit, tolerance);
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(meterRegistry)
+                .addGroup("heavy", Set.of(), HEAVY, heavy)
+                .addGroup("heavy", Set.of("POST"), HEAVY_POSTS, heavy)
+                .addGroup("write", Set.of("POST", "PUT", "PATCH", "DELETE"), STUDENTS_AND_FACULTIES,
+                        new GradientLimiter(writeInitialLimit, minLimit, writeMaxLimit, tolerance))
+                .addGroup("read", Set.of("GET", "HEAD"), STUDENTS_AND_FACULTIES,
+                        new GradientLimiter(readInitialLimit, minLimit, readMaxLimit, tolerance));
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        // rejected requests do not reach other filters
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
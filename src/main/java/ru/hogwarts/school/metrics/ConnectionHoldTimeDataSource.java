@@ -0,0 +1,77 @@
+package ru.hogwarts.school.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Data source which measures how long every connection is held, from getting it from pool until closing<br>
+ * time is recorded to timer {@code db.connection.hold} with tag {@code method}
+ * of service which got the connection, see {@link ServiceMethodAspect}
+ */
+public class ConnectionHoldTimeDataSource extends DelegatingDataSource {
+
+    public static final String TIMER = "db.connection.hold";
+
+    private final Supplier<MeterRegistry> meterRegistry;
+
+    public ConnectionHoldTimeDataSource(DataSource dataSource, Supplier<MeterRegistry> meterRegistry) {
+        super(dataSource);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return measured(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return measured(super.getConnection(username, password));
+    }
+
+    private Connection measured(Connection connection) {
+        Timer timer = Timer.builder(TIMER)
+                .description("Time of holding connection from pool")
+                .tag("method", ServiceMethodAspect.currentMethod())
+                .register(meterRegistry.get());
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                new HoldTimeHandler(connection, timer));
+    }
+
+    private static class HoldTimeHandler implements InvocationHandler {
+
+        private final Connection connection;
+        private final Timer timer;
+        private final long start = System.nanoTime();
+        private boolean closed;
+
+        private HoldTimeHandler(Connection connection, Timer timer) {
+            this.connection = connection;
+            this.timer = timer;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("close".equals(method.getName()) && !closed) {
+                closed = true;
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package ru.hogwarts.school.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school.datasource.PrimaryDataSource;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps primary of data source of application by {@link ConnectionHoldTimeDataSource},
+ * registry of metrics is taken at first connection, after data source is created
+ */
+@Component
+public class ConnectionHoldTimePostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public ConnectionHoldTimePostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource && PrimaryDataSource.BEAN_NAME.equals(beanName)) {
+            return PrimaryDataSource.wrap((DataSource) bean,
+                    primary -> new ConnectionHoldTimeDataSource(primary, meterRegistry::getObject));
+        }
+        return bean;
+    }
+}
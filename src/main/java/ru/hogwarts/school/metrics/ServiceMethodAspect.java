@@ -0,0 +1,45 @@
+package ru.hogwarts.school.metrics;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Remembers which method of services is running in current thread,
+ * so metrics of resources taken by the thread can be tagged by method of service
+ */
+@Aspect
+@Component
+public class ServiceMethodAspect {
+
+    public static final String NONE = "none";
+
+    private static final ThreadLocal<Deque<String>> METHODS = ThreadLocal.withInitial(ArrayDeque::new);
+
+    /**
+     * Get method of service running in current thread
+     *
+     * @return innermost running method as {@code Service.method}, {@link #NONE} outside of services
+     */
+    public static String currentMethod() {
+        String method = METHODS.get().peek();
+        return method == null ? NONE : method;
+    }
+
+    @Around("execution(public * ru.hogwarts.school.service.impl.*ServiceImpl.*(..))")
+    public Object trackMethod(ProceedingJoinPoint joinPoint) throws Throwable {
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        Deque<String> methods = METHODS.get();
+        methods.push(signature.getDeclaringType().getSimpleName() + "." + signature.getName());
+        try {
+            return joinPoint.proceed();
+        } finally {
+            methods.pop();
+        }
+    }
+}
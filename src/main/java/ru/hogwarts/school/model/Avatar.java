@@ -18,6 +18,10 @@ public class Avatar {
     @Lob
     private byte[] data;
 
+    // backfill of previews writes preview only if avatar is not changed after its file was read
+    @Version
+    private Long version;
+
     @OneToOne
     private Student student;
 
@@ -61,6 +65,14 @@ public class Avatar {
         this.data = data;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public Student getStudent() {
         return student;
     }
@@ -92,6 +104,7 @@ public class Avatar {
                 ", fileSize=" + fileSize +
                 ", mediaType='" + mediaType + '\'' +
                 ", data=" + Arrays.toString(data) +
+                ", version=" + version +
                 ", student=" + student +
                 '}';
     }
@@ -6,6 +6,7 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
+import javax.persistence.Version;
 import java.util.Collection;
 import java.util.Objects;
 
@@ -19,6 +20,9 @@ public class Faculty {
     private String name;
     private String color;
 
+    @Version
+    private Long version;
+
     @OneToMany(mappedBy = "faculty")
     @JsonIgnore
     private Collection<Student> students;
@@ -55,6 +59,14 @@ public class Faculty {
         this.students = students;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,140 @@
+package ru.hogwarts.school.model;
+
+import javax.persistence.*;
+import java.time.Instant;
+import java.util.Objects;
+
+@Entity
+@Table(name = "preview_backfill")
+public class PreviewBackfill {
+
+    public enum Status {
+        RUNNING,
+        STOPPED,
+        FINISHED
+    }
+
+    @Id
+    private String name;
+
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    private long lastAvatarId;
+    private long processed;
+    private long failed;
+    private long skipped;
+    private Instant startedAt;
+    private Instant updatedAt;
+    private String owner;
+    private Instant leaseUntil;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public long getLastAvatarId() {
+        return lastAvatarId;
+    }
+
+    public void setLastAvatarId(long lastAvatarId) {
+        this.lastAvatarId = lastAvatarId;
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    public void setProcessed(long processed) {
+        this.processed = processed;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public void setSkipped(long skipped) {
+        this.skipped = skipped;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(Instant startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public Instant getLeaseUntil() {
+        return leaseUntil;
+    }
+
+    public void setLeaseUntil(Instant leaseUntil) {
+        this.leaseUntil = leaseUntil;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PreviewBackfill that = (PreviewBackfill) o;
+        return lastAvatarId == that.lastAvatarId && processed == that.processed && failed == that.failed && skipped == that.skipped && Objects.equals(name, that.name) && status == that.status && Objects.equals(startedAt, that.startedAt) && Objects.equals(updatedAt, that.updatedAt) && Objects.equals(owner, that.owner) && Objects.equals(leaseUntil, that.leaseUntil);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, status, lastAvatarId, processed, failed, skipped, startedAt, updatedAt, owner, leaseUntil);
+    }
+
+    @Override
+    public String toString() {
+        return "PreviewBackfill{" +
+                "name='" + name + '\'' +
+                ", status=" + status +
+                ", lastAvatarId=" + lastAvatarId +
+                ", processed=" + processed +
+                ", failed=" + failed +
+                ", skipped=" + skipped +
+                ", startedAt=" + startedAt +
+                ", updatedAt=" + updatedAt +
+                ", owner='" + owner + '\'' +
+                ", leaseUntil=" + leaseUntil +
+                '}';
+    }
+}
@@ -13,6 +13,9 @@ public class Student {
     private String name;
     private int age;
 
+    @Version
+    private Long version;
+
     @ManyToOne
     @JoinColumn(name = "faculty_id")
     private Faculty faculty;
@@ -49,6 +52,14 @@ public class Student {
         this.faculty = faculty;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
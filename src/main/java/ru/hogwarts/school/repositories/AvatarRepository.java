@@ -1,11 +1,62 @@
 package ru.hogwarts.school.repositories;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import ru.hogwarts.school.model.Avatar;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface AvatarRepository extends JpaRepository<Avatar, Long> {
 
-    Optional<Avatar> findAvatarById(Long avatarId);
+    interface AvatarFile {
+
+        Long getId();
+
+        String getFilePath();
+
+        Long getVersion();
+    }
+
+    interface AvatarExportFile {
+
+        Long getId();
+
+        String getFilePath();
+
+        String getMediaType();
+    }
+
+    interface AvatarPreview {
+
+        Long getId();
+
+        byte[] getData();
+    }
+
+    @Query("SELECT a FROM Avatar a JOIN FETCH a.student s LEFT JOIN FETCH s.faculty WHERE s.id = :studentId")
+    Optional<Avatar> findByStudentId(@Param("studentId") Long studentId);
+
+    @Query("SELECT a FROM Avatar a JOIN FETCH a.student s LEFT JOIN FETCH s.faculty WHERE s.id IN :studentIds")
+    Collection<Avatar> findByStudentIdIn(@Param("studentIds") Collection<Long> studentIds);
+
+    @Query("SELECT a.id AS id, a.filePath AS filePath, a.mediaType AS mediaType FROM Avatar a "
+            + "WHERE a.student.faculty.id = :facultyId AND a.id > :afterId ORDER BY a.id")
+    List<AvatarExportFile> findExportFilesOfFaculty(@Param("facultyId") Long facultyId,
+                                                    @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT a.id AS id, a.filePath AS filePath, a.mediaType AS mediaType FROM Avatar a "
+            + "WHERE a.student.id BETWEEN :fromStudentId AND :toStudentId AND a.id > :afterId ORDER BY a.id")
+    List<AvatarExportFile> findExportFilesOfStudents(@Param("fromStudentId") Long fromStudentId,
+                                                     @Param("toStudentId") Long toStudentId,
+                                                     @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT a.id AS id, a.data AS data FROM Avatar a WHERE a.id IN :ids")
+    List<AvatarPreview> findPreviewsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT a.id AS id, a.filePath AS filePath, a.version AS version FROM Avatar a WHERE a.id > :afterId ORDER BY a.id")
+    List<AvatarFile> findAvatarFilesAfter(@Param("afterId") Long afterId, Pageable pageable);
 }
@@ -0,0 +1,15 @@
+package ru.hogwarts.school.repositories;
+
+import ru.hogwarts.school.model.Faculty;
+
+import java.util.Optional;
+
+/**
+ * Mutations of faculties by one statement, without reading faculty before
+ */
+public interface FacultyMutationRepository {
+
+    Optional<Faculty> updateFaculty(Faculty faculty);
+
+    Optional<Faculty> deleteFacultyById(long id);
+}
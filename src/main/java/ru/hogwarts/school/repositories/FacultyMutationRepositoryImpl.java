@@ -0,0 +1,64 @@
+package ru.hogwarts.school.repositories;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.hogwarts.school.model.Faculty;
+
+import java.util.Optional;
+
+/**
+ * Mutations of faculties by {@code UPDATE ... RETURNING} and {@code DELETE ... RETURNING},
+ * so every mutation is one round trip to database
+ */
+public class FacultyMutationRepositoryImpl implements FacultyMutationRepository {
+
+    private static final String UPDATE = "UPDATE faculty SET name = :name, color = :color, version = version + 1 "
+            + "WHERE id = :id AND (CAST(:version AS bigint) IS NULL OR version = CAST(:version AS bigint)) "
+            + "RETURNING id, name, color, version";
+
+    private static final String DELETE = "DELETE FROM faculty WHERE id = :id RETURNING id, name, color, version";
+
+    private static final RowMapper<Faculty> FACULTY_MAPPER = (rs, rowNum) -> {
+        Faculty faculty = new Faculty();
+        faculty.setId(rs.getLong("id"));
+        faculty.setName(rs.getString("name"));
+        faculty.setColor(rs.getString("color"));
+        faculty.setVersion(rs.getLong("version"));
+        return faculty;
+    };
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public FacultyMutationRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Update faculty if it exists, and its version is equal to version of faculty,
+     * if version of faculty is {@code null} it is not checked
+     *
+     * @param faculty new state of faculty, must not be {@code null}
+     * @return updated faculty with new version, or empty if faculty not found or version is changed
+     */
+    @Override
+    public Optional<Faculty> updateFaculty(Faculty faculty) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("id", faculty.getId())
+                .addValue("name", faculty.getName())
+                .addValue("color", faculty.getColor())
+                .addValue("version", faculty.getVersion());
+        return jdbcTemplate.query(UPDATE, params, FACULTY_MAPPER).stream().findFirst();
+    }
+
+    /**
+     * Delete faculty by id
+     *
+     * @param id id of faculty
+     * @return deleted faculty, or empty if faculty not found
+     */
+    @Override
+    public Optional<Faculty> deleteFacultyById(long id) {
+        return jdbcTemplate.query(DELETE, new MapSqlParameterSource("id", id), FACULTY_MAPPER).stream().findFirst();
+    }
+}
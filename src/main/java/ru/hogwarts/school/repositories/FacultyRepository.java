@@ -1,11 +1,17 @@
 package ru.hogwarts.school.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import ru.hogwarts.school.model.Faculty;
 
 import java.util.Collection;
 
-public interface FacultyRepository extends JpaRepository<Faculty, Long> {
+public interface FacultyRepository extends JpaRepository<Faculty, Long>, FacultyMutationRepository {
 
     Collection<Faculty> findFacultiesByColorOrNameIgnoreCase(String color, String name);
+
+    @Query(value = "SELECT * FROM faculty WHERE id IN "
+            + "(SELECT entity_id FROM change_log WHERE entity = 'faculty' AND txid >= :txid)", nativeQuery = true)
+    Collection<Faculty> findChangedSince(@Param("txid") long txid);
 }
@@ -0,0 +1,7 @@
+package ru.hogwarts.school.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import ru.hogwarts.school.model.PreviewBackfill;
+
+public interface PreviewBackfillRepository extends JpaRepository<PreviewBackfill, String> {
+}
@@ -0,0 +1,15 @@
+package ru.hogwarts.school.repositories;
+
+import ru.hogwarts.school.model.Student;
+
+import java.util.Optional;
+
+/**
+ * Mutations of students by one statement, without reading student before
+ */
+public interface StudentMutationRepository {
+
+    Optional<Student> updateStudent(Student student);
+
+    Optional<Student> deleteStudentById(long id);
+}
@@ -0,0 +1,82 @@
+package ru.hogwarts.school.repositories;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+
+import java.util.Optional;
+
+/**
+ * Mutations of students by {@code UPDATE ... RETURNING} and {@code DELETE ... RETURNING},
+ * faculty of student is joined in the same statement, so every mutation is one round trip to database
+ */
+public class StudentMutationRepositoryImpl implements StudentMutationRepository {
+
+    private static final String SELECT_WITH_FACULTY = "SELECT s.id, s.name, s.age, s.version, "
+            + "f.id AS faculty_id, f.name AS faculty_name, f.color AS faculty_color, f.version AS faculty_version "
+            + "FROM s LEFT JOIN faculty f ON f.id = s.faculty_id";
+
+    private static final String UPDATE = "WITH s AS ("
+            + "UPDATE student SET name = :name, age = :age, faculty_id = :facultyId, version = version + 1 "
+            + "WHERE id = :id AND (CAST(:version AS bigint) IS NULL OR version = CAST(:version AS bigint)) "
+            + "RETURNING id, name, age, faculty_id, version) " + SELECT_WITH_FACULTY;
+
+    private static final String DELETE = "WITH s AS ("
+            + "DELETE FROM student WHERE id = :id "
+            + "RETURNING id, name, age, faculty_id, version) " + SELECT_WITH_FACULTY;
+
+    private static final RowMapper<Student> STUDENT_MAPPER = (rs, rowNum) -> {
+        Student student = new Student();
+        student.setId(rs.getLong("id"));
+        student.setName(rs.getString("name"));
+        student.setAge(rs.getInt("age"));
+        student.setVersion(rs.getLong("version"));
+        long facultyId = rs.getLong("faculty_id");
+        if (!rs.wasNull()) {
+            Faculty faculty = new Faculty();
+            faculty.setId(facultyId);
+            faculty.setName(rs.getString("faculty_name"));
+            faculty.setColor(rs.getString("faculty_color"));
+            faculty.setVersion(rs.getLong("faculty_version"));
+            student.setFaculty(faculty);
+        }
+        return student;
+    };
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public StudentMutationRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Update student if it exists, and its version is equal to version of student,
+     * if version of student is {@code null} it is not checked
+     *
+     * @param student new state of student, must not be {@code null}
+     * @return updated student with new version, or empty if student not found or version is changed
+     */
+    @Override
+    public Optional<Student> updateStudent(Student student) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("id", student.getId())
+                .addValue("name", student.getName())
+                .addValue("age", student.getAge())
+                .addValue("facultyId", student.getFaculty() == null ? null : student.getFaculty().getId())
+                .addValue("version", student.getVersion());
+        return jdbcTemplate.query(UPDATE, params, STUDENT_MAPPER).stream().findFirst();
+    }
+
+    /**
+     * Delete student by id
+     *
+     * @param id id of student
+     * @return deleted student, or empty if student not found
+     */
+    @Override
+    public Optional<Student> deleteStudentById(long id) {
+        return jdbcTemplate.query(DELETE, new MapSqlParameterSource("id", id), STUDENT_MAPPER).stream().findFirst();
+    }
+}
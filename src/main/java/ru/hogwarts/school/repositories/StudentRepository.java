@@ -2,11 +2,12 @@ package ru.hogwarts.school.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import ru.hogwarts.school.model.Student;
 
 import java.util.Collection;
 
-public interface StudentRepository extends JpaRepository<Student, Long> {
+public interface StudentRepository extends JpaRepository<Student, Long>, StudentMutationRepository {
 
     Collection<Student> findByAgeBetween(int min, int max);
 
@@ -18,4 +19,8 @@ public interface StudentRepository extends JpaRepository<Student, Long> {
 
     @Query(value = "SELECT * FROM student ORDER BY id DESC LIMIT 5;", nativeQuery = true)
     Collection<Student> getFiveLastStudents();
+
+    @Query(value = "SELECT * FROM student WHERE id IN "
+            + "(SELECT entity_id FROM change_log WHERE entity = 'student' AND txid >= :txid)", nativeQuery = true)
+    Collection<Student> findChangedSince(@Param("txid") long txid);
 }
@@ -0,0 +1,23 @@
+package ru.hogwarts.school.search;
+
+/**
+ * Id of entity whose name matches query, and similarity of name to query from 0 to 1
+ */
+public class NameMatch {
+
+    private final long id;
+    private final double similarity;
+
+    public NameMatch(long id, double similarity) {
+        this.id = id;
+        this.similarity = similarity;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public double getSimilarity() {
+        return similarity;
+    }
+}
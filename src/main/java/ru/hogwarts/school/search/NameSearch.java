@@ -0,0 +1,20 @@
+package ru.hogwarts.school.search;
+
+import java.util.List;
+
+/**
+ * Fuzzy search by names of one table
+ */
+public interface NameSearch {
+
+    /**
+     * Find names similar to query or containing words similar to it
+     *
+     * @param query part of name, possibly misspelled
+     * @param limit max number of matches, {@code limit > 0}
+     * @param minSimilarity min similarity of match, from 0 to 1
+     * @return matches ordered from the most similar, then by id
+     */
+    List<NameMatch> search(String query, int limit, double minSimilarity);
+
+}
@@ -0,0 +1,106 @@
+package ru.hogwarts.school.search;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Search by inverted index of trigrams in memory, for databases without {@code pg_trgm}<br>
+ * trigrams are built the same way as in {@code pg_trgm}: name is lower cased and split into words by characters
+ * which are not letters or digits, every word is padded by two spaces before and one after.
+ * Similarity is the share of trigrams of query found in name, close to {@code word_similarity} of {@code pg_trgm}.
+ * Index is loaded by {@code names} on first search and then kept up to date by {@link #put} and {@link #remove},
+ * so it does not see changes which are not passed to them, such as changes of other instances of application
+ */
+public class NgramNameSearch implements NameSearch {
+
+    private final Supplier<Map<Long, String>> names;
+    private final Map<String, Set<Long>> index = new HashMap<>();
+    private final Map<Long, Set<String>> trigramsOfIds = new HashMap<>();
+    private boolean loaded;
+
+    /**
+     * @param names all ids and names of table
+     */
+    public NgramNameSearch(Supplier<Map<Long, String>> names) {
+        this.names = names;
+    }
+
+    @Override
+    public synchronized List<NameMatch> search(String query, int limit, double minSimilarity) {
+        load();
+        Set<String> queryTrigrams = trigrams(query);
+        if (queryTrigrams.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Integer> common = new HashMap<>();
+        for (String trigram : queryTrigrams) {
+            for (Long id : index.getOrDefault(trigram, Set.of())) {
+                common.merge(id, 1, Integer::sum);
+            }
+        }
+        List<NameMatch> matches = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : common.entrySet()) {
+            double similarity = (double) entry.getValue() / queryTrigrams.size();
+            if (similarity >= minSimilarity) {
+                matches.add(new NameMatch(entry.getKey(), similarity));
+            }
+        }
+        matches.sort(Comparator.comparingDouble(NameMatch::getSimilarity).reversed()
+                .thenComparingLong(NameMatch::getId));
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    /**
+     * Add or replace name of id
+     */
+    public synchronized void put(long id, String name) {
+        if (!loaded) {
+            return;
+        }
+        remove(id);
+        Set<String> trigrams = trigrams(name);
+        trigramsOfIds.put(id, trigrams);
+        for (String trigram : trigrams) {
+            index.computeIfAbsent(trigram, t -> new HashSet<>()).add(id);
+        }
+    }
+
+    public synchronized void remove(long id) {
+        Set<String> trigrams = trigramsOfIds.remove(id);
+        if (trigrams == null) {
+            return;
+        }
+        for (String trigram : trigrams) {
+            Set<Long> ids = index.get(trigram);
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                index.remove(trigram);
+            }
+        }
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        names.get().forEach(this::put);
+    }
+
+    static Set<String> trigrams(String text) {
+        Set<String> trigrams = new HashSet<>();
+        if (text == null) {
+            return trigrams;
+        }
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                trigrams.add(padded.substring(i, i + 3));
+            }
+        }
+        return trigrams;
+    }
+}
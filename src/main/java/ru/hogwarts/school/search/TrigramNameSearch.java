@@ -0,0 +1,43 @@
+package ru.hogwarts.school.search;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Search by {@code pg_trgm} in PostgreSQL, with GIN index {@code gin_trgm_ops} on column {@code name}<br>
+ * similarity is {@code word_similarity}: the greatest similarity of query to any part of name,
+ * so part of name matches as well as whole name. Operator {@code <%} is served by index,
+ * its threshold is set to min similarity for the transaction of query
+ */
+public class TrigramNameSearch implements NameSearch {
+
+    private static final String THRESHOLD = "SELECT set_config('pg_trgm.word_similarity_threshold', ?, true)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final String select;
+
+    /**
+     * @param table table with columns {@code id} and {@code name}, not a user input
+     */
+    public TrigramNameSearch(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, String table) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.select = "SELECT id, word_similarity(?, name) AS similarity FROM " + table
+                + " WHERE ? <% name ORDER BY similarity DESC, id LIMIT ?";
+    }
+
+    @Override
+    public List<NameMatch> search(String query, int limit, double minSimilarity) {
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.queryForObject(THRESHOLD, String.class, Double.toString(minSimilarity));
+            return jdbcTemplate.query(select,
+                    (rs, rowNum) -> new NameMatch(rs.getLong("id"), rs.getDouble("similarity")),
+                    query, query, limit);
+        });
+    }
+}
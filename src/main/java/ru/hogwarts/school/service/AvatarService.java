@@ -1,17 +1,31 @@
 package ru.hogwarts.school.service;
 
 import org.springframework.web.multipart.MultipartFile;
+import ru.hogwarts.school.dto.AvatarExportContent;
+import ru.hogwarts.school.dto.AvatarImportResult;
 import ru.hogwarts.school.model.Avatar;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.Collection;
 
 public interface AvatarService {
 
     void upLoad(Long id, MultipartFile file) throws IOException;
 
-    Avatar findAvatar(Long avatarId);
+    void upLoad(Long id, Path file, String fileName, String mediaType) throws IOException;
+
+    Avatar findAvatarOfStudent(Long studentId);
+
+    Collection<Avatar> findAvatarsOfStudents(Collection<Long> studentIds);
 
     Collection<Avatar> getAllAvatars(Integer pageNumber, Integer pageSize);
 
+    Collection<AvatarImportResult> importAvatars(InputStream archive) throws IOException;
+
+    void exportAvatars(AvatarExportContent content, Long facultyId, Long fromStudentId, Long toStudentId,
+                       OutputStream out) throws IOException;
+
 }
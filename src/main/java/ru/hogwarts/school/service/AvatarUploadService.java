@@ -0,0 +1,20 @@
+package ru.hogwarts.school.service;
+
+import ru.hogwarts.school.dto.AvatarUploadStatus;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface AvatarUploadService {
+
+    AvatarUploadStatus createUpload(Long studentId, String fileName, String mediaType, long size) throws IOException;
+
+    AvatarUploadStatus writeChunk(String uploadId, long offset, long length, InputStream data) throws IOException;
+
+    AvatarUploadStatus getStatus(String uploadId);
+
+    AvatarUploadStatus completeUpload(String uploadId) throws IOException;
+
+    boolean cancelUpload(String uploadId) throws IOException;
+
+}
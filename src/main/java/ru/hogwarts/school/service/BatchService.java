@@ -0,0 +1,12 @@
+package ru.hogwarts.school.service;
+
+import ru.hogwarts.school.dto.BatchOperation;
+import ru.hogwarts.school.dto.BatchResult;
+
+import java.util.List;
+
+public interface BatchService {
+
+    BatchResult execute(List<BatchOperation> operations);
+
+}
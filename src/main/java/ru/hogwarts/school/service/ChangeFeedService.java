@@ -0,0 +1,12 @@
+package ru.hogwarts.school.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.hogwarts.school.dto.ChangeEvent;
+
+public interface ChangeFeedService {
+
+    SseEmitter subscribe(String lastEventId);
+
+    void publish(ChangeEvent event);
+
+}
@@ -0,0 +1,17 @@
+package ru.hogwarts.school.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public interface CsvService {
+
+    long importStudents(InputStream csv) throws IOException;
+
+    long exportStudents(OutputStream csv) throws IOException;
+
+    long importFaculties(InputStream csv) throws IOException;
+
+    long exportFaculties(OutputStream csv) throws IOException;
+
+}
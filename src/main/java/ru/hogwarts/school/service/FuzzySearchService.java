@@ -0,0 +1,15 @@
+package ru.hogwarts.school.service;
+
+import ru.hogwarts.school.dto.FuzzyMatch;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+
+import java.util.List;
+
+public interface FuzzySearchService {
+
+    List<FuzzyMatch<Student>> searchStudents(String query, int limit);
+
+    List<FuzzyMatch<Faculty>> searchFaculties(String query, int limit);
+
+}
@@ -0,0 +1,13 @@
+package ru.hogwarts.school.service;
+
+import ru.hogwarts.school.model.PreviewBackfill;
+
+public interface PreviewBackfillService {
+
+    PreviewBackfill start(boolean fromBeginning);
+
+    PreviewBackfill stop();
+
+    PreviewBackfill getStatus();
+
+}
@@ -0,0 +1,15 @@
+package ru.hogwarts.school.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+public interface PreviewService {
+
+    byte[] generatePreview(Path file) throws IOException;
+
+    byte[] generatePreview(Path file, String extension) throws IOException;
+
+    byte[] generatePreview(InputStream image, String extension) throws IOException;
+
+}
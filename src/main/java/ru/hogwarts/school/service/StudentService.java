@@ -12,6 +12,8 @@ public interface StudentService {
 
     Student findStudent(long id);
 
+    Collection<Student> findStudents(Collection<Long> ids);
+
     Student editStudent(Student student);
 
     Student deleteStudent(long id);
@@ -0,0 +1,9 @@
+package ru.hogwarts.school.service;
+
+import ru.hogwarts.school.dto.SyncResult;
+
+public interface SyncService {
+
+    SyncResult sync(long since);
+
+}
@@ -5,42 +5,91 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import ru.hogwarts.school.dto.AvatarExportContent;
+import ru.hogwarts.school.dto.AvatarImportResult;
 import ru.hogwarts.school.model.Avatar;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repositories.AvatarRepository;
 import ru.hogwarts.school.service.AvatarService;
+import ru.hogwarts.school.service.PreviewService;
 import ru.hogwarts.school.service.StudentService;
 
-import javax.imageio.ImageIO;
-import javax.transaction.Transactional;
-import java.awt.*;
-import java.awt.image.BufferedImage;
+import javax.annotation.PreDestroy;
 import java.io.*;
+import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.util.Collection;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
-import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
 /**
- * Service for working with avatars of students from school Hogwarts
+ * Service for working with avatars of students from school Hogwarts<br>
+ * files and previews are processed without transaction, only metadata of avatars is written
+ * in short transaction, so connection to database is not held during slow work with images
  */
 @Service
-@Transactional
 public class AvatarServiceImpl implements AvatarService {
 
+    private static final int EXPORT_PAGE_SIZE = 100;
+    private static final int UPLOAD_LOCK_STRIPES = 64;
+    private static final Set<String> COMPRESSED_MEDIA_TYPES = Set.of("image/jpeg", "image/png", "image/gif");
+
     @Value(value = "${avatars.dir.path}")
     private String avatarsDir;
 
+    @Value(value = "${avatars.import.batch-size:50}")
+    private int importBatchSize;
+
+    @Value(value = "${avatars.upload.max-size:52428800}")
+    private long maxAvatarSize;
+
     private final AvatarRepository avatarRepository;
     private final StudentService studentService;
+    private final PreviewService previewService;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService imageExecutor;
+    private final Lock[] uploadLocks = new Lock[UPLOAD_LOCK_STRIPES];
 
     Logger logger = LoggerFactory.getLogger(AvatarService.class);
 
-    public AvatarServiceImpl(AvatarRepository avatarRepository, StudentService studentService) {
+    public AvatarServiceImpl(AvatarRepository avatarRepository, StudentService studentService,
+                             PreviewService previewService, PlatformTransactionManager transactionManager) {
         this.avatarRepository = avatarRepository;
         this.studentService = studentService;
+        this.previewService = previewService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.imageExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        for (int i = 0; i < UPLOAD_LOCK_STRIPES; i++) {
+            uploadLocks[i] = new ReentrantLock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        imageExecutor.shutdown();
     }
 
     /**
@@ -53,27 +102,483 @@ public class AvatarServiceImpl implements AvatarService {
     @Override
     public void upLoad(Long studentId, MultipartFile file) throws IOException {
         logger.info("Was invoked method for upload avatar of student");
-        Student student = studentService.findStudent(studentId);
         Path filePath = Path.of(avatarsDir, studentId + "." + getExtension(file.getOriginalFilename()));
+        Path tempFile = createTempFile(filePath);
+        try {
+            try (InputStream is = file.getInputStream();
+                 OutputStream os = Files.newOutputStream(tempFile);
+                 BufferedInputStream bis = new BufferedInputStream(is, 1024);
+                 BufferedOutputStream bos = new BufferedOutputStream(os, 1024)
+            ) {
+                bis.transferTo(bos);
+            }
+            replaceAvatar(studentId, tempFile, filePath, file.getSize(), file.getContentType());
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Upload avatar for student from already received file, file is moved to directory of avatars
+     *
+     * @param studentId id of student
+     * @param file received file of image
+     * @param fileName original name of file
+     * @param mediaType media type of image
+     * @throws IOException if an IO exception
+     */
+    @Override
+    public void upLoad(Long studentId, Path file, String fileName, String mediaType) throws IOException {
+        logger.info("Was invoked method for upload received avatar of student");
+        Path filePath = Path.of(avatarsDir, studentId + "." + getExtension(fileName));
         Files.createDirectories(filePath.getParent());
-        Files.deleteIfExists(filePath);
+        replaceAvatar(studentId, file, filePath, Files.size(file), mediaType);
+    }
+
+    /**
+     * Replace file and metadata of avatar, preview is generated before lock of student is taken,
+     * then file is atomically moved into place and metadata is saved under lock,
+     * so uploads for one student are serialized and readers see old or new file, never a partial one.
+     * If metadata is not saved, replaced file is put back
+     */
+    private void replaceAvatar(Long studentId, Path source, Path filePath, long fileSize, String mediaType) throws IOException {
+        byte[] preview = previewService.generatePreview(source, getExtension(filePath.getFileName().toString()));
+        if (studentService.findStudent(studentId) == null) {
+            throw new IllegalArgumentException("Student with id = " + studentId + " is not found");
+        }
+        Lock lock = lockOf(studentId);
+        lock.lock();
+        try {
+            Path backup = replaceFile(source, filePath);
+            try {
+                saveAvatar(studentId, filePath, fileSize, mediaType, preview);
+            } catch (RuntimeException e) {
+                undoReplace(filePath, backup);
+                throw e;
+            }
+            deleteBackup(backup);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Lock lockOf(Long studentId) {
+        return uploadLocks[stripeOf(studentId)];
+    }
+
+    /**
+     * Locks of several students, stripes are ordered, so concurrent imports take them without deadlock
+     */
+    private List<Lock> locksOf(Collection<Long> studentIds) {
+        return studentIds.stream()
+                .map(this::stripeOf)
+                .distinct()
+                .sorted()
+                .map(stripe -> uploadLocks[stripe])
+                .collect(Collectors.toList());
+    }
+
+    private int stripeOf(Long studentId) {
+        int hash = Long.hashCode(studentId);
+        return (hash ^ (hash >>> 16)) & (UPLOAD_LOCK_STRIPES - 1);
+    }
+
+    private Path createTempFile(Path filePath) throws IOException {
+        Files.createDirectories(filePath.getParent());
+        return Files.createTempFile(filePath.getParent(), "." + filePath.getFileName() + "-", ".tmp");
+    }
+
+    private void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Path tempFile = createTempFile(target);
+            try {
+                Files.copy(source, tempFile, REPLACE_EXISTING);
+                Files.move(tempFile, target, ATOMIC_MOVE);
+                Files.delete(source);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+
+    /**
+     * Move file into place, replaced file is kept as hard link, or as copy if links are not supported,
+     * so target is never missing and replacement can be undone
+     *
+     * @return backup of replaced file, {@code null} if target did not exist
+     */
+    private Path replaceFile(Path source, Path target) throws IOException {
+        Path backup = null;
+        if (Files.exists(target)) {
+            backup = target.resolveSibling("." + target.getFileName() + "-" + UUID.randomUUID() + ".bak");
+            try {
+                Files.createLink(backup, target);
+            } catch (UnsupportedOperationException | IOException e) {
+                Files.copy(target, backup, REPLACE_EXISTING);
+            }
+        }
+        try {
+            moveAtomically(source, target);
+        } catch (IOException e) {
+            deleteBackup(backup);
+            throw e;
+        }
+        return backup;
+    }
+
+    /**
+     * Put replaced file back, or delete moved file if there was no file before
+     */
+    private void undoReplace(Path target, Path backup) {
+        try {
+            if (backup != null) {
+                moveAtomically(backup, target);
+            } else {
+                Files.deleteIfExists(target);
+            }
+        } catch (IOException e) {
+            logger.error("File of avatar {} is not restored", target, e);
+        }
+    }
+
+    private void deleteBackup(Path backup) {
+        if (backup == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(backup);
+        } catch (IOException e) {
+            logger.warn("Backup of avatar {} is not deleted: {}", backup, e.getMessage());
+        }
+    }
+
+    private void saveAvatar(Long studentId, Path filePath, long fileSize, String mediaType, byte[] preview) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Avatar avatar = avatarRepository.findByStudentId(studentId).orElse(null);
+            if (avatar == null) {
+                Student student = studentService.findStudent(studentId);
+                if (student == null) {
+                    throw new IllegalArgumentException("Student with id = " + studentId + " is not found");
+                }
+                avatar = new Avatar();
+                avatar.setStudent(student);
+            }
+            avatar.setFilePath(filePath.toString());
+            avatar.setFileSize(fileSize);
+            avatar.setMediaType(mediaType);
+            avatar.setData(preview);
+
+            avatarRepository.save(avatar);
+        });
+    }
+
+    /**
+     * Import avatars of students from ZIP archive with entries named {@code {studentId}.{ext}}<br>
+     * archive is read as a stream, every entry is written to temporary file next to avatars,
+     * previews are generated in parallel and avatars are saved by batches of {@code avatars.import.batch-size}.
+     * Entries bigger than {@code avatars.upload.max-size} are skipped
+     *
+     * @param archive stream of ZIP archive, must not be {@code null}
+     * @return result of import for every entry of archive, in order of entries
+     * @throws IOException if an IO exception while reading archive
+     */
+    @Override
+    public Collection<AvatarImportResult> importAvatars(InputStream archive) throws IOException {
+        logger.info("Was invoked method for import avatars from archive");
+        List<AvatarImportResult> results = new ArrayList<>();
+        List<ImportEntry> batch = new ArrayList<>(importBatchSize);
+        Set<Long> importedStudentIds = new HashSet<>();
+
+        try {
+            try (ZipInputStream zis = new ZipInputStream(new BufferedInputStream(archive, 8192))) {
+                ZipEntry entry;
+                while ((entry = zis.getNextEntry()) != null) {
+                    if (entry.isDirectory()) {
+                        continue;
+                    }
+                    String entryName = Path.of(entry.getName()).getFileName().toString();
+                    Long studentId = parseStudentId(entryName);
+                    if (studentId == null) {
+                        results.add(new AvatarImportResult(entryName, null, AvatarImportResult.Status.SKIPPED,
+                                "Name of entry must be {studentId}.{ext}"));
+                        continue;
+                    }
+                    if (!importedStudentIds.add(studentId)) {
+                        results.add(new AvatarImportResult(entryName, studentId, AvatarImportResult.Status.SKIPPED,
+                                "Avatar of student is already in archive"));
+                        continue;
+                    }
+                    String extension = getExtension(entryName);
+                    Path filePath = Path.of(avatarsDir, studentId + "." + extension);
+                    Path tempFile = createTempFile(filePath);
+                    long size;
+                    try {
+                        size = copyEntry(zis, tempFile);
+                    } catch (IOException e) {
+                        Files.deleteIfExists(tempFile);
+                        throw e;
+                    }
+                    if (size < 0) {
+                        Files.deleteIfExists(tempFile);
+                        results.add(new AvatarImportResult(entryName, studentId, AvatarImportResult.Status.SKIPPED,
+                                "File is too big"));
+                        continue;
+                    }
+                    CompletableFuture<byte[]> preview = CompletableFuture.supplyAsync(
+                            () -> generatePreviewUnchecked(tempFile, extension), imageExecutor);
+                    // place of result is taken now, so results are in order of entries
+                    results.add(null);
+                    batch.add(new ImportEntry(results.size() - 1, entryName, studentId, filePath, tempFile, size, preview));
 
-        try (InputStream is = file.getInputStream();
-             OutputStream os = Files.newOutputStream(filePath, CREATE_NEW);
-             BufferedInputStream bis = new BufferedInputStream(is, 1024);
-             BufferedOutputStream bos = new BufferedOutputStream(os, 1024)
-        ) {
-            bis.transferTo(bos);
+                    if (batch.size() >= importBatchSize) {
+                        saveImportBatch(batch, results);
+                        batch.clear();
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                saveImportBatch(batch, results);
+            }
+        } finally {
+            deleteTempFiles(batch);
         }
+        logger.info("Import of avatars is finished, {} entries processed", results.size());
+        return results;
+    }
 
-        Avatar avatar = findAvatar(studentId);
-        avatar.setStudent(student);
-        avatar.setFilePath(filePath.toString());
-        avatar.setFileSize(file.getSize());
-        avatar.setMediaType(file.getContentType());
-        avatar.setData(generateImagePreview(filePath));
+    /**
+     * Copy entry of archive to file, but not more than {@code avatars.upload.max-size} bytes
+     *
+     * @return size of entry, {@code -1} if entry is bigger than max size
+     */
+    private long copyEntry(InputStream entry, Path file) throws IOException {
+        byte[] buffer = new byte[8192];
+        long size = 0;
+        try (OutputStream os = Files.newOutputStream(file)) {
+            int read;
+            while ((read = entry.read(buffer)) != -1) {
+                size += read;
+                if (size > maxAvatarSize) {
+                    return -1;
+                }
+                os.write(buffer, 0, read);
+            }
+        }
+        return size;
+    }
 
-        avatarRepository.save(avatar);
+    /**
+     * Export avatars of students to ZIP archive, by faculty or by range of student ids<br>
+     * only paths and media types of avatars are read from database by pages, previews are read by separate query
+     * if they are exported, and files are copied straight from avatars directory, so memory does not depend
+     * on amount of avatars. Already compressed images are not compressed again
+     *
+     * @param content which files are written to archive
+     * @param facultyId id of faculty, if {@code null} range of student ids is used
+     * @param fromStudentId first id of student in range
+     * @param toStudentId last id of student in range
+     * @param out stream for archive, must not be {@code null}
+     * @throws IOException if an IO exception
+     * @throws IllegalArgumentException if faculty and range of student ids are not set
+     */
+    @Override
+    public void exportAvatars(AvatarExportContent content, Long facultyId, Long fromStudentId, Long toStudentId,
+                              OutputStream out) throws IOException {
+        logger.info("Was invoked method for export avatars, faculty = {}, students from {} to {}",
+                facultyId, fromStudentId, toStudentId);
+        if (facultyId == null && (fromStudentId == null || toStudentId == null)) {
+            throw new IllegalArgumentException("Faculty or range of student ids must be set");
+        }
+        PageRequest page = PageRequest.of(0, EXPORT_PAGE_SIZE);
+        long exported = 0;
+        try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(out, 8192))) {
+            long afterId = 0;
+            List<AvatarRepository.AvatarExportFile> avatars;
+            do {
+                avatars = facultyId != null
+                        ? avatarRepository.findExportFilesOfFaculty(facultyId, afterId, page)
+                        : avatarRepository.findExportFilesOfStudents(fromStudentId, toStudentId, afterId, page);
+                Map<Long, byte[]> previews = content != AvatarExportContent.ORIGINALS && !avatars.isEmpty()
+                        ? previewsOf(avatars)
+                        : Map.of();
+                for (AvatarRepository.AvatarExportFile avatar : avatars) {
+                    String fileName = Path.of(avatar.getFilePath()).getFileName().toString();
+                    boolean compressed = COMPRESSED_MEDIA_TYPES.contains(avatar.getMediaType());
+                    if (content != AvatarExportContent.PREVIEWS) {
+                        writeFileEntry(zos, "originals/" + fileName, Path.of(avatar.getFilePath()), compressed);
+                    }
+                    byte[] preview = previews.get(avatar.getId());
+                    if (preview != null) {
+                        writeDataEntry(zos, "previews/" + fileName, preview, compressed);
+                    }
+                    afterId = avatar.getId();
+                    exported++;
+                }
+            } while (avatars.size() == EXPORT_PAGE_SIZE);
+        }
+        logger.info("Export of avatars is finished, {} avatars exported", exported);
+    }
+
+    private Map<Long, byte[]> previewsOf(List<AvatarRepository.AvatarExportFile> avatars) {
+        List<Long> ids = avatars.stream()
+                .map(AvatarRepository.AvatarExportFile::getId)
+                .collect(Collectors.toList());
+        Map<Long, byte[]> previews = new HashMap<>();
+        for (AvatarRepository.AvatarPreview preview : avatarRepository.findPreviewsByIdIn(ids)) {
+            if (preview.getData() != null) {
+                previews.put(preview.getId(), preview.getData());
+            }
+        }
+        return previews;
+    }
+
+    /**
+     * Write file to archive, file is read by one channel, so size and bytes of entry are of the same file
+     * even if upload replaces it by rename meanwhile.
+     * Already compressed file is deflated with level 0 instead of stored, so its CRC and size are written
+     * after its bytes and file is read once, stored entry would need one more read for CRC before them
+     */
+    private void writeFileEntry(ZipOutputStream zos, String name, Path filePath, boolean compressed)
+            throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(filePath, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            logger.warn("File of avatar {} is not found", filePath);
+            return;
+        }
+        try (channel) {
+            zos.setLevel(compressed ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+            zos.putNextEntry(new ZipEntry(name));
+            Channels.newInputStream(channel).transferTo(zos);
+            zos.closeEntry();
+        }
+    }
+
+    private void writeDataEntry(ZipOutputStream zos, String name, byte[] data, boolean stored) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        if (stored) {
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(data.length);
+            entry.setCompressedSize(data.length);
+            entry.setCrc(crc.getValue());
+        } else {
+            zos.setLevel(Deflater.DEFAULT_COMPRESSION);
+        }
+        zos.putNextEntry(entry);
+        zos.write(data);
+        zos.closeEntry();
+    }
+
+    private void saveImportBatch(List<ImportEntry> batch, List<AvatarImportResult> results) throws IOException {
+        try {
+            Set<Long> studentIds = batch.stream()
+                    .map(e -> e.studentId)
+                    .collect(Collectors.toSet());
+            Map<Long, Student> students = studentService.findStudents(studentIds).stream()
+                    .collect(Collectors.toMap(Student::getId, Function.identity()));
+
+            List<ImportEntry> toSave = new ArrayList<>();
+            for (ImportEntry entry : batch) {
+                if (!students.containsKey(entry.studentId)) {
+                    results.set(entry.index, new AvatarImportResult(entry.name, entry.studentId,
+                            AvatarImportResult.Status.NOT_FOUND, "Student is not found"));
+                    continue;
+                }
+                try {
+                    entry.previewData = entry.preview.join();
+                } catch (CompletionException e) {
+                    logger.warn("Preview of entry {} is not generated", entry.name, e.getCause());
+                    results.set(entry.index, new AvatarImportResult(entry.name, entry.studentId,
+                            AvatarImportResult.Status.FAILED, e.getCause().getMessage()));
+                    continue;
+                }
+                toSave.add(entry);
+            }
+            if (toSave.isEmpty()) {
+                return;
+            }
+            saveImportedAvatars(toSave, students);
+            for (ImportEntry entry : toSave) {
+                results.set(entry.index, new AvatarImportResult(entry.name, entry.studentId,
+                        AvatarImportResult.Status.IMPORTED, null));
+            }
+            logger.debug("Batch of {} avatars is saved", toSave.size());
+        } finally {
+            deleteTempFiles(batch);
+        }
+    }
+
+    /**
+     * Move files into place and save metadata under locks of students, so uploads do not interleave with import.
+     * Files are moved before the transaction, and if metadata is not committed, replaced files are put back
+     */
+    private void saveImportedAvatars(List<ImportEntry> entries, Map<Long, Student> students) throws IOException {
+        List<Long> studentIds = entries.stream()
+                .map(e -> e.studentId)
+                .collect(Collectors.toList());
+        List<Lock> locks = locksOf(studentIds);
+        locks.forEach(Lock::lock);
+        try {
+            try {
+                for (ImportEntry entry : entries) {
+                    entry.backup = replaceFile(entry.tempFile, entry.filePath);
+                    entry.moved = true;
+                }
+                transactionTemplate.executeWithoutResult(status -> {
+                    Map<Long, Avatar> avatars = avatarRepository.findByStudentIdIn(studentIds).stream()
+                            .collect(Collectors.toMap(a -> a.getStudent().getId(), Function.identity()));
+                    for (ImportEntry entry : entries) {
+                        Avatar avatar = avatars.computeIfAbsent(entry.studentId, id -> new Avatar());
+                        avatar.setStudent(students.get(entry.studentId));
+                        avatar.setFilePath(entry.filePath.toString());
+                        avatar.setFileSize(entry.size);
+                        avatar.setMediaType(getMediaType(entry.name));
+                        avatar.setData(entry.previewData);
+                    }
+                    avatarRepository.saveAll(avatars.values());
+                });
+            } catch (IOException | RuntimeException e) {
+                for (ImportEntry entry : entries) {
+                    if (entry.moved) {
+                        undoReplace(entry.filePath, entry.backup);
+                    }
+                }
+                throw e;
+            }
+            entries.forEach(entry -> deleteBackup(entry.backup));
+        } finally {
+            for (int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).unlock();
+            }
+        }
+    }
+
+    private void deleteTempFiles(List<ImportEntry> entries) throws IOException {
+        for (ImportEntry entry : entries) {
+            Files.deleteIfExists(entry.tempFile);
+        }
+    }
+
+    private Long parseStudentId(String fileName) {
+        int dot = fileName.lastIndexOf(".");
+        if (dot <= 0 || dot == fileName.length() - 1) {
+            return null;
+        }
+        try {
+            return Long.parseLong(fileName.substring(0, dot));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private String getMediaType(String fileName) {
+        String mediaType = URLConnection.guessContentTypeFromName(fileName);
+        return mediaType == null ? "application/octet-stream" : mediaType;
     }
 
     private String getExtension(String fileName) {
@@ -81,15 +586,27 @@ public class AvatarServiceImpl implements AvatarService {
     }
 
     /**
-     * Find avatar by {@code id} in database
+     * Find avatar of student in database, avatar is fetched together with student by one query
+     *
+     * @param studentId id of student
+     * @return avatar of student, return {@code null} if student has no avatar
+     */
+    @Override
+    public Avatar findAvatarOfStudent(Long studentId) {
+        logger.info("Was invoked method for find avatar of student id = {}", studentId);
+        return avatarRepository.findByStudentId(studentId).orElse(null);
+    }
+
+    /**
+     * Find avatars of students by ids of students with one query
      *
-     * @param avatarId id of avatar
-     * @return avatar by id
+     * @param studentIds ids of students, must not be {@code null}
+     * @return found avatars, avatars of students without avatar are absent
      */
     @Override
-    public Avatar findAvatar(Long avatarId) {
-        logger.info("Was invoked method for find avatar bu id = {}", avatarId);
-        return avatarRepository.findAvatarById(avatarId).orElse(new Avatar());
+    public Collection<Avatar> findAvatarsOfStudents(Collection<Long> studentIds) {
+        logger.info("Was invoked method for find avatars of {} students", studentIds.size());
+        return avatarRepository.findByStudentIdIn(studentIds);
     }
 
     /**
@@ -106,21 +623,36 @@ public class AvatarServiceImpl implements AvatarService {
         return avatarRepository.findAll(pageRequest).getContent();
     }
 
-    private byte[] generateImagePreview(Path filePath) throws IOException {
-        try (InputStream is = Files.newInputStream(filePath);
-             BufferedInputStream bis = new BufferedInputStream(is, 1024);
-             ByteArrayOutputStream baos = new ByteArrayOutputStream()
-        ) {
-            BufferedImage image = ImageIO.read(bis);
+    private byte[] generatePreviewUnchecked(Path file, String extension) {
+        try {
+            return previewService.generatePreview(file, extension);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class ImportEntry {
 
-            int height = image.getHeight() / (image.getWidth() / 100);
-            BufferedImage preview = new BufferedImage(100, height, image.getType());
-            Graphics2D graphics = preview.createGraphics();
-            graphics.drawImage(image, 0, 0, 100, height, null);
-            graphics.dispose();
+        private final int index;
+        private final String name;
+        private final Long studentId;
+        private final Path filePath;
+        private final Path tempFile;
+        private final long size;
+        private final CompletableFuture<byte[]> preview;
+        private byte[] previewData;
+        private Path backup;
+        private boolean moved;
 
-            ImageIO.write(preview, getExtension(filePath.getFileName().toString()), baos);
-            return baos.toByteArray();
+        private ImportEntry(int index, String name, Long studentId, Path filePath, Path tempFile, long size,
+                            CompletableFuture<byte[]> preview) {
+            this.index = index;
+            this.name = name;
+            this.studentId = studentId;
+            this.filePath = filePath;
+            this.tempFile = tempFile;
+            this.size = size;
+            this.preview = preview;
         }
     }
 
@@ -0,0 +1,336 @@
+package ru.hogwarts.school.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.hogwarts.school.dto.AvatarUploadStatus;
+import ru.hogwarts.school.service.AvatarService;
+import ru.hogwarts.school.service.AvatarUploadService;
+import ru.hogwarts.school.service.StudentService;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Service for resumable upload of large avatars by chunks<br>
+ * chunks are written to staging file by their offsets, so they can be sent in any order and repeated,
+ * when all chunks are received avatar is saved by {@link AvatarService#upLoad(Long, Path, String, String)}.
+ * Chunks are not accepted while upload is being completed. Expired uploads and their staging files
+ * are removed every {@code avatars.upload.purge-interval-seconds}
+ */
+@Service
+public class AvatarUploadServiceImpl implements AvatarUploadService {
+
+    private static final Pattern EXTENSION = Pattern.compile("[A-Za-z0-9]{1,10}");
+
+    @Value(value = "${avatars.upload.staging-dir:${avatars.dir.path}/staging}")
+    private String stagingDir;
+
+    @Value(value = "${avatars.upload.chunk-size:1048576}")
+    private int chunkSize;
+
+    @Value(value = "${avatars.upload.max-size:52428800}")
+    private long maxSize;
+
+    @Value(value = "${avatars.upload.expire-minutes:60}")
+    private long expireMinutes;
+
+    @Value(value = "${avatars.upload.purge-interval-seconds:300}")
+    private long purgeIntervalSeconds;
+
+    private final AvatarService avatarService;
+    private final StudentService studentService;
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService purger;
+
+    Logger logger = LoggerFactory.getLogger(AvatarUploadService.class);
+
+    public AvatarUploadServiceImpl(AvatarService avatarService, StudentService studentService) {
+        this.avatarService = avatarService;
+        this.studentService = studentService;
+        this.purger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "avatar-upload-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void schedulePurge() {
+        purger.scheduleWithFixedDelay(this::purgeExpiredUploads, purgeIntervalSeconds, purgeIntervalSeconds,
+                TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        purger.shutdownNow();
+    }
+
+    /**
+     * Create session of upload and empty staging file for it
+     *
+     * @param studentId id of student
+     * @param fileName name of original file, used for extension of avatar
+     * @param mediaType media type of avatar
+     * @param size size of avatar in bytes, {@code 0 < size <= avatars.upload.max-size}
+     * @return status of created upload, return {@code null} if student not found
+     * @throws IOException if an IO exception
+     * @throws IllegalArgumentException if size is not allowed or file name has no valid extension
+     */
+    @Override
+    public AvatarUploadStatus createUpload(Long studentId, String fileName, String mediaType, long size) throws IOException {
+        logger.info("Was invoked method for create upload of avatar of student id = {}", studentId);
+        if (size <= 0 || size > maxSize) {
+            throw new IllegalArgumentException("Size of avatar must be > 0 and <= " + maxSize);
+        }
+        if (fileName == null || fileName.lastIndexOf(".") < 0
+                || !EXTENSION.matcher(fileName.substring(fileName.lastIndexOf(".") + 1)).matches()) {
+            throw new IllegalArgumentException("Name of file must have extension of 1 to 10 letters or digits");
+        }
+        if (studentService.findStudent(studentId) == null) {
+            return null;
+        }
+        String uploadId = UUID.randomUUID().toString();
+        Path stagingFile = Path.of(stagingDir, uploadId + ".part");
+        Files.createDirectories(stagingFile.getParent());
+        try (FileChannel channel = FileChannel.open(stagingFile, CREATE_NEW, WRITE)) {
+            // staging file gets its full size at once, chunks can be written in any order
+            channel.write(ByteBuffer.allocate(1), size - 1);
+        }
+
+        Upload upload = new Upload(uploadId, studentId, fileName, mediaType, size, chunkSize, stagingFile);
+        uploads.put(uploadId, upload);
+        logger.debug("Upload {} is created, size = {}, chunks = {}", uploadId, size, upload.chunks);
+        return upload.status();
+    }
+
+    /**
+     * Write chunk of avatar to staging file by offset
+     *
+     * @param uploadId id of upload
+     * @param offset offset of chunk, must be multiple of chunk size
+     * @param length length of chunk, must be equal chunk size, except last chunk
+     * @param data stream with chunk
+     * @return status of upload, return {@code null} if upload not found
+     * @throws IOException if an IO exception, or stream is shorter than length
+     * @throws IllegalArgumentException if offset or length of chunk is wrong
+     * @throws IllegalStateException if upload is being completed
+     */
+    @Override
+    public AvatarUploadStatus writeChunk(String uploadId, long offset, long length, InputStream data) throws IOException {
+        Upload upload = uploads.get(uploadId);
+        if (upload == null) {
+            return null;
+        }
+        if (offset < 0 || offset >= upload.size || offset % upload.chunkSize != 0) {
+            throw new IllegalArgumentException("Offset must be multiple of " + upload.chunkSize + " and less than " + upload.size);
+        }
+        long expectedLength = Math.min(upload.chunkSize, upload.size - offset);
+        if (length != expectedLength) {
+            throw new IllegalArgumentException("Length of chunk must be " + expectedLength);
+        }
+
+        // completion does not start while chunk is written, and chunk is not written while completion reads the file
+        if (!upload.startWriting()) {
+            throw new IllegalStateException("Upload is being completed");
+        }
+        boolean written = false;
+        try (FileChannel channel = FileChannel.open(upload.stagingFile, WRITE);
+             ReadableByteChannel source = Channels.newChannel(data)
+        ) {
+            long position = 0;
+            while (position < length) {
+                long count = channel.transferFrom(source, offset + position, length - position);
+                if (count <= 0) {
+                    throw new IOException("Chunk is shorter than " + length + " bytes");
+                }
+                position += count;
+            }
+            written = true;
+        } finally {
+            upload.stopWriting(written ? (int) (offset / upload.chunkSize) : -1);
+        }
+        logger.debug("Chunk with offset {} of upload {} is written", offset, uploadId);
+        return upload.status();
+    }
+
+    /**
+     * Get status of upload
+     *
+     * @param uploadId id of upload
+     * @return status of upload, return {@code null} if upload not found
+     */
+    @Override
+    public AvatarUploadStatus getStatus(String uploadId) {
+        Upload upload = uploads.get(uploadId);
+        return upload == null ? null : upload.status();
+    }
+
+    /**
+     * Complete upload and save avatar of student
+     *
+     * @param uploadId id of upload
+     * @return status of completed upload, return {@code null} if upload not found
+     * @throws IOException if an IO exception
+     * @throws IllegalStateException if not all chunks are received, chunks are being written,
+     * or upload is being completed
+     */
+    @Override
+    public AvatarUploadStatus completeUpload(String uploadId) throws IOException {
+        logger.info("Was invoked method for complete upload {}", uploadId);
+        Upload upload = uploads.get(uploadId);
+        if (upload == null) {
+            return null;
+        }
+        AvatarUploadStatus status = upload.status();
+        if (!status.isComplete()) {
+            throw new IllegalStateException("Chunk with offset " + status.getNextOffset() + " is not received");
+        }
+        if (!upload.startCompleting()) {
+            throw new IllegalStateException("Upload is already being completed, or its chunks are being written");
+        }
+        // session is removed only after avatar is saved, so failed completion can be retried or expires with its file
+        try {
+            avatarService.upLoad(upload.studentId, upload.stagingFile, upload.fileName, upload.mediaType);
+        } catch (IOException | RuntimeException e) {
+            if (Files.exists(upload.stagingFile)) {
+                upload.stopCompleting();
+            } else {
+                uploads.remove(uploadId, upload);
+            }
+            throw e;
+        }
+        uploads.remove(uploadId, upload);
+        return status;
+    }
+
+    /**
+     * Cancel upload and delete staging file
+     *
+     * @param uploadId id of upload
+     * @return {@code true} if upload is canceled, {@code false} if upload not found
+     * @throws IOException if an IO exception
+     */
+    @Override
+    public boolean cancelUpload(String uploadId) throws IOException {
+        logger.info("Was invoked method for cancel upload {}", uploadId);
+        Upload upload = uploads.remove(uploadId);
+        if (upload == null) {
+            return false;
+        }
+        Files.deleteIfExists(upload.stagingFile);
+        return true;
+    }
+
+    private void purgeExpiredUploads() {
+        Instant expired = Instant.now().minus(Duration.ofMinutes(expireMinutes));
+        for (Upload upload : uploads.values()) {
+            if (upload.isExpired(expired) && uploads.remove(upload.uploadId, upload)) {
+                logger.info("Upload {} is expired", upload.uploadId);
+                try {
+                    Files.deleteIfExists(upload.stagingFile);
+                } catch (IOException e) {
+                    logger.warn("Staging file {} is not deleted: {}", upload.stagingFile, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static class Upload {
+
+        private final String uploadId;
+        private final Long studentId;
+        private final String fileName;
+        private final String mediaType;
+        private final long size;
+        private final int chunkSize;
+        private final int chunks;
+        private final Path stagingFile;
+        private final BitSet receivedChunks;
+        private Instant lastTouched = Instant.now();
+        private boolean completing;
+        private int writers;
+
+        private Upload(String uploadId, Long studentId, String fileName, String mediaType, long size, int chunkSize, Path stagingFile) {
+            this.uploadId = uploadId;
+            this.studentId = studentId;
+            this.fileName = fileName;
+            this.mediaType = mediaType;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.chunks = (int) ((size + chunkSize - 1) / chunkSize);
+            this.stagingFile = stagingFile;
+            this.receivedChunks = new BitSet(chunks);
+        }
+
+        private synchronized boolean startWriting() {
+            if (completing) {
+                return false;
+            }
+            writers++;
+            lastTouched = Instant.now();
+            return true;
+        }
+
+        /**
+         * @param chunk written chunk, or {@code -1} if chunk is not written
+         */
+        private synchronized void stopWriting(int chunk) {
+            writers--;
+            if (chunk >= 0) {
+                receivedChunks.set(chunk);
+            }
+            lastTouched = Instant.now();
+        }
+
+        private synchronized boolean startCompleting() {
+            if (completing || writers > 0) {
+                return false;
+            }
+            completing = true;
+            lastTouched = Instant.now();
+            return true;
+        }
+
+        private synchronized void stopCompleting() {
+            completing = false;
+            lastTouched = Instant.now();
+        }
+
+        private synchronized boolean isExpired(Instant expired) {
+            return lastTouched.isBefore(expired) && !completing && writers == 0;
+        }
+
+        private synchronized AvatarUploadStatus status() {
+            int nextChunk = receivedChunks.nextClearBit(0);
+            Long nextOffset = nextChunk < chunks ? (long) nextChunk * chunkSize : null;
+            long receivedBytes = (long) receivedChunks.cardinality() * chunkSize;
+            if (receivedChunks.get(chunks - 1)) {
+                receivedBytes -= (long) chunks * chunkSize - size;
+            }
+            return new AvatarUploadStatus(uploadId, studentId, size, chunkSize, receivedBytes, nextOffset);
+        }
+    }
+}
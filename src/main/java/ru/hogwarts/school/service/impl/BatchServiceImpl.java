@@ -0,0 +1,270 @@
+package ru.hogwarts.school.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.dto.BatchOperation;
+import ru.hogwarts.school.dto.BatchOperationResult;
+import ru.hogwarts.school.dto.BatchResult;
+import ru.hogwarts.school.dto.ChangeEvent;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repositories.FacultyRepository;
+import ru.hogwarts.school.repositories.StudentRepository;
+import ru.hogwarts.school.service.BatchService;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Service for executing batches of operations with students and faculties in one transaction<br>
+ * edited and deleted entities are loaded by one query for every entity, changes are written on flush
+ * by JDBC batches of Hibernate, with ordered inserts and updates. If any operation fails,
+ * the whole batch is rolled back. Changes are published as {@link ChangeEvent}, and sent to feed only after commit
+ */
+@Service
+public class BatchServiceImpl implements BatchService {
+
+    @Value(value = "${batch.max-operations:1000}")
+    private int maxOperations;
+
+    private final StudentRepository studentRepository;
+    private final FacultyRepository facultyRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    Logger logger = LoggerFactory.getLogger(BatchService.class);
+
+    public BatchServiceImpl(StudentRepository studentRepository, FacultyRepository facultyRepository,
+                            PlatformTransactionManager transactionManager, ApplicationEventPublisher eventPublisher) {
+        this.studentRepository = studentRepository;
+        this.facultyRepository = facultyRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Execute operations in their order in one transaction
+     *
+     * @param operations operations with students and faculties, must not be {@code null}
+     * @return result of every operation, if batch is not committed failed operations have their status
+     * and other operations have status {@code ROLLED_BACK}
+     * @throws IllegalArgumentException if operations are empty or there are more than {@code batch.max-operations}
+     */
+    @Override
+    public BatchResult execute(List<BatchOperation> operations) {
+        logger.info("Was invoked method for execute batch of {} operations", operations.size());
+        if (operations.isEmpty() || operations.size() > maxOperations) {
+            throw new IllegalArgumentException("Batch must have from 1 to " + maxOperations + " operations");
+        }
+        return transactionTemplate.execute(status -> {
+            Map<Long, Student> students = loadStudents(operations);
+            Map<Long, Faculty> faculties = loadFaculties(operations);
+            Object[] entities = new Object[operations.size()];
+            Map<Integer, BatchOperationResult> failures = new LinkedHashMap<>();
+
+            boolean deleted = false;
+            for (int i = 0; i < operations.size(); i++) {
+                BatchOperation operation = operations.get(i);
+                // Hibernate writes deletes after inserts and updates, so they are flushed to keep order of batch
+                if (deleted && operation.getType() != BatchOperation.Type.DELETE) {
+                    studentRepository.flush();
+                    deleted = false;
+                }
+                BatchOperationResult failure;
+                if (operation.getType() == null || operation.getEntity() == null) {
+                    failure = failure(i, BatchOperationResult.Status.INVALID, "Type and entity of operation must be set");
+                } else if (operation.getEntity() == BatchOperation.Entity.STUDENT) {
+                    failure = applyToStudent(i, operation, students, faculties, entities);
+                } else {
+                    failure = applyToFaculty(i, operation, faculties, entities);
+                }
+                if (failure != null) {
+                    failures.put(i, failure);
+                }
+                deleted |= operation.getType() == BatchOperation.Type.DELETE;
+            }
+            if (!failures.isEmpty()) {
+                status.setRollbackOnly();
+                return rolledBack(operations.size(), failures, null);
+            }
+            try {
+                studentRepository.flush();
+            } catch (DataIntegrityViolationException | OptimisticLockingFailureException e) {
+                logger.warn("Batch of {} operations is rolled back: {}", operations.size(), e.getMessage());
+                status.setRollbackOnly();
+                return rolledBack(operations.size(), failures, e.getMessage());
+            }
+
+            List<BatchOperationResult> results = new ArrayList<>(operations.size());
+            for (int i = 0; i < entities.length; i++) {
+                results.add(applied(i, entities[i]));
+                eventPublisher.publishEvent(changed(operations.get(i).getType(), entities[i]));
+            }
+            logger.debug("Batch of {} operations is committed", operations.size());
+            return new BatchResult(true, results);
+        });
+    }
+
+    private BatchOperationResult applyToStudent(int index, BatchOperation operation, Map<Long, Student> students,
+                                                Map<Long, Faculty> faculties, Object[] entities) {
+        if (operation.getType() == BatchOperation.Type.DELETE) {
+            Student student = operation.getId() == null ? null : students.remove(operation.getId());
+            if (student == null) {
+                return failure(index, BatchOperationResult.Status.NOT_FOUND, "Student is not found");
+            }
+            studentRepository.delete(student);
+            entities[index] = student;
+            return null;
+        }
+        Student source = operation.getStudent();
+        if (source == null) {
+            return failure(index, BatchOperationResult.Status.INVALID, "Student is not set");
+        }
+        if (source.getAge() <= 0) {
+            return failure(index, BatchOperationResult.Status.INVALID, "Student age <= 0");
+        }
+        if (source.getFaculty() == null || source.getFaculty().getId() == null) {
+            return failure(index, BatchOperationResult.Status.INVALID, "Faculty of student is not set");
+        }
+        // there is no foreign key on faculty of student, so missing faculty fails the batch like import of students does
+        Faculty faculty = faculties.get(source.getFaculty().getId());
+        if (faculty == null) {
+            return failure(index, BatchOperationResult.Status.NOT_FOUND, "Faculty of student is not found");
+        }
+
+        if (operation.getType() == BatchOperation.Type.CREATE) {
+            Student student = new Student();
+            student.setName(source.getName());
+            student.setAge(source.getAge());
+            student.setFaculty(faculty);
+            entities[index] = studentRepository.save(student);
+            return null;
+        }
+        Student student = students.get(source.getId());
+        if (student == null) {
+            return failure(index, BatchOperationResult.Status.NOT_FOUND, "Student is not found");
+        }
+        if (source.getVersion() != null && !source.getVersion().equals(student.getVersion())) {
+            return failure(index, BatchOperationResult.Status.CONFLICT, "Version of student is " + student.getVersion());
+        }
+        student.setName(source.getName());
+        student.setAge(source.getAge());
+        student.setFaculty(faculty);
+        entities[index] = student;
+        return null;
+    }
+
+    private BatchOperationResult applyToFaculty(int index, BatchOperation operation, Map<Long, Faculty> faculties,
+                                                Object[] entities) {
+        if (operation.getType() == BatchOperation.Type.DELETE) {
+            Faculty faculty = operation.getId() == null ? null : faculties.remove(operation.getId());
+            if (faculty == null) {
+                return failure(index, BatchOperationResult.Status.NOT_FOUND, "Faculty is not found");
+            }
+            facultyRepository.delete(faculty);
+            entities[index] = faculty;
+            return null;
+        }
+        Faculty source = operation.getFaculty();
+        if (source == null) {
+            return failure(index, BatchOperationResult.Status.INVALID, "Faculty is not set");
+        }
+        if (source.getName() == null || source.getColor() == null) {
+            return failure(index, BatchOperationResult.Status.INVALID, "Name and color of faculty must be set");
+        }
+
+        if (operation.getType() == BatchOperation.Type.CREATE) {
+            Faculty faculty = new Faculty();
+            faculty.setName(source.getName());
+            faculty.setColor(source.getColor());
+            entities[index] = facultyRepository.save(faculty);
+            return null;
+        }
+        Faculty faculty = source.getId() == null ? null : faculties.get(source.getId());
+        if (faculty == null) {
+            return failure(index, BatchOperationResult.Status.NOT_FOUND, "Faculty is not found");
+        }
+        if (source.getVersion() != null && !source.getVersion().equals(faculty.getVersion())) {
+            return failure(index, BatchOperationResult.Status.CONFLICT, "Version of faculty is " + faculty.getVersion());
+        }
+        faculty.setName(source.getName());
+        faculty.setColor(source.getColor());
+        entities[index] = faculty;
+        return null;
+    }
+
+    private Map<Long, Student> loadStudents(List<BatchOperation> operations) {
+        Set<Long> ids = operations.stream()
+                .filter(o -> o.getEntity() == BatchOperation.Entity.STUDENT)
+                .map(o -> o.getType() == BatchOperation.Type.DELETE ? o.getId()
+                        : o.getType() == BatchOperation.Type.EDIT && o.getStudent() != null ? (Long) o.getStudent().getId() : null)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (ids.isEmpty()) {
+            return new HashMap<>();
+        }
+        return studentRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Student::getId, Function.identity()));
+    }
+
+    /**
+     * Load faculties changed by operations and faculties of created and edited students by one query
+     */
+    private Map<Long, Faculty> loadFaculties(List<BatchOperation> operations) {
+        Set<Long> ids = operations.stream()
+                .map(o -> o.getEntity() == BatchOperation.Entity.STUDENT ? facultyIdOf(o.getStudent())
+                        : o.getType() == BatchOperation.Type.DELETE ? o.getId()
+                        : o.getType() == BatchOperation.Type.EDIT && o.getFaculty() != null ? o.getFaculty().getId() : null)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (ids.isEmpty()) {
+            return new HashMap<>();
+        }
+        return facultyRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Faculty::getId, Function.identity()));
+    }
+
+    private Long facultyIdOf(Student student) {
+        return student == null || student.getFaculty() == null ? null : student.getFaculty().getId();
+    }
+
+    private BatchOperationResult failure(int index, BatchOperationResult.Status status, String message) {
+        return new BatchOperationResult(index, status, null, null, message);
+    }
+
+    private BatchOperationResult applied(int index, Object entity) {
+        if (entity instanceof Student) {
+            Student student = (Student) entity;
+            return new BatchOperationResult(index, BatchOperationResult.Status.OK, student.getId(), student.getVersion(), null);
+        }
+        Faculty faculty = (Faculty) entity;
+        return new BatchOperationResult(index, BatchOperationResult.Status.OK, faculty.getId(), faculty.getVersion(), null);
+    }
+
+    private ChangeEvent changed(BatchOperation.Type type, Object entity) {
+        ChangeEvent.Type changeType = type == BatchOperation.Type.CREATE ? ChangeEvent.Type.CREATED
+                : type == BatchOperation.Type.EDIT ? ChangeEvent.Type.UPDATED : ChangeEvent.Type.DELETED;
+        if (entity instanceof Student) {
+            return ChangeEvent.of(changeType, (Student) entity);
+        }
+        return ChangeEvent.of(changeType, (Faculty) entity);
+    }
+
+    private BatchResult rolledBack(int size, Map<Integer, BatchOperationResult> failures, String message) {
+        List<BatchOperationResult> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            BatchOperationResult failure = failures.get(i);
+            results.add(failure != null ? failure
+                    : new BatchOperationResult(i, BatchOperationResult.Status.ROLLED_BACK, null, null, message));
+        }
+        return new BatchResult(false, results);
+    }
+}
@@ -0,0 +1,277 @@
+package ru.hogwarts.school.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.hogwarts.school.dto.ChangeEvent;
+import ru.hogwarts.school.service.ChangeFeedService;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Service for feed of changes of students and faculties by Server-Sent Events<br>
+ * events are published by services and taken by feed after commit of their transaction, events of
+ * rolled back transactions are dropped. Last {@code changes.feed.buffer-size} events are kept in ring buffer,
+ * so reconnected client gets events after its {@code Last-Event-ID}. Writers only put event to buffer and
+ * schedule sending, events are sent by {@code changes.feed.sender-threads} threads, every subscriber reads
+ * buffer from its own position. Subscriber which fell behind buffer, or reconnected with id from other run
+ * of application, gets event {@code reset} and must reload lists of students and faculties.
+ * {@code changes.feed.sender-threads} threads are kept, more are started while they are blocked by slow
+ * subscribers, so a slow subscriber holds only its own thread. Subscriber whose send is blocked longer than
+ * {@code changes.feed.send-timeout-ms} is dropped, and its emitter is completed when the send returns
+ */
+@Service
+public class ChangeFeedServiceImpl implements ChangeFeedService {
+
+    static final String RESET = "reset";
+    private static final int EVENTS_PER_SEND = 64;
+
+    private final ObjectMapper objectMapper;
+    private final long timeoutMillis;
+    private final long sendTimeoutNanos;
+    private final int maxSubscribers;
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final FeedEvent[] buffer;
+    private long lastId;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ThreadPoolExecutor senders;
+    private final Counter resets;
+    private final Counter dropped;
+
+    Logger logger = LoggerFactory.getLogger(ChangeFeedService.class);
+
+    public ChangeFeedServiceImpl(ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${changes.feed.buffer-size:1024}") int bufferSize,
+                                 @Value("${changes.feed.sender-threads:2}") int senderThreads,
+                                 @Value("${changes.feed.timeout-ms:1800000}") long timeoutMillis,
+                                 @Value("${changes.feed.send-timeout-ms:10000}") long sendTimeoutMillis,
+                                 @Value("${changes.feed.max-subscribers:1000}") int maxSubscribers) {
+        this.objectMapper = objectMapper;
+        this.timeoutMillis = timeoutMillis;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        this.maxSubscribers = maxSubscribers;
+        this.buffer = new FeedEvent[bufferSize];
+        AtomicInteger threads = new AtomicInteger();
+        // subscriber has one task at a time, so tasks are never queued behind a blocked send
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads + maxSubscribers,
+                60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, "change-feed-sender-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.resets = meterRegistry.counter("changes.feed.resets");
+        this.dropped = meterRegistry.counter("changes.feed.dropped");
+        meterRegistry.gauge("changes.feed.subscribers", subscriberCount);
+    }
+
+    /**
+     * Subscribe to changes
+     *
+     * @param lastEventId id of last received event, or {@code null} to get only new events
+     * @return emitter of events
+     * @throws IllegalStateException if there are {@code changes.feed.max-subscribers} subscribers
+     */
+    @Override
+    public SseEmitter subscribe(String lastEventId) {
+        logger.info("Was invoked method for subscribe to changes after event {}", lastEventId);
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new IllegalStateException("Too many subscribers of changes");
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter, positionOf(lastEventId));
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+        subscribers.add(subscriber);
+        schedule(subscriber);
+        return emitter;
+    }
+
+    /**
+     * Put event to buffer and schedule sending to subscribers, called after commit of transaction
+     * or at once if event is published without transaction
+     *
+     * @param event change of student or faculty, must not be {@code null}
+     */
+    @Override
+    @TransactionalEventListener(fallbackExecution = true)
+    public void publish(ChangeEvent event) {
+        String data;
+        try {
+            data = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            logger.error("Event {} is not published", event, e);
+            return;
+        }
+        String name = event.getEntity().name().toLowerCase() + "." + event.getType().name().toLowerCase();
+        synchronized (buffer) {
+            lastId++;
+            buffer[(int) (lastId % buffer.length)] = new FeedEvent(lastId, name, data);
+        }
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            long sendingSince = subscriber.sendingSince;
+            if (sendingSince != 0 && now - sendingSince > sendTimeoutNanos) {
+                // emitter is locked by blocked send, so it is completed by sender when the send returns
+                logger.debug("Subscriber of changes is dropped, its send is blocked");
+                dropped.increment();
+                unsubscribe(subscriber);
+            } else {
+                schedule(subscriber);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        subscribers.forEach(s -> s.emitter.complete());
+        senders.shutdown();
+        senders.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private long positionOf(String lastEventId) {
+        long current;
+        synchronized (buffer) {
+            current = lastId;
+        }
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return current;
+        }
+        int separator = lastEventId.indexOf('-');
+        if (separator < 0 || !epoch.equals(lastEventId.substring(0, separator))) {
+            return -1;
+        }
+        try {
+            long id = Long.parseLong(lastEventId.substring(separator + 1));
+            return id >= 0 && id <= current ? id : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Events after position, or {@code null} if some of them are already overwritten
+     */
+    private List<FeedEvent> eventsAfter(long position) {
+        synchronized (buffer) {
+            if (position < 0 || position < lastId - buffer.length) {
+                return null;
+            }
+            long last = Math.min(lastId, position + EVENTS_PER_SEND);
+            List<FeedEvent> events = new ArrayList<>((int) (last - position));
+            for (long id = position + 1; id <= last; id++) {
+                events.add(buffer[(int) (id % buffer.length)]);
+            }
+            return events;
+        }
+    }
+
+    private long lastId() {
+        synchronized (buffer) {
+            return lastId;
+        }
+    }
+
+    private void schedule(Subscriber subscriber) {
+        // one task of subscriber at a time, so events are sent in order and slow subscriber takes one thread
+        if (subscriber.scheduled.compareAndSet(false, true)) {
+            try {
+                senders.execute(() -> send(subscriber));
+            } catch (RejectedExecutionException e) {
+                subscriber.scheduled.set(false);
+                unsubscribe(subscriber);
+                subscriber.emitter.complete();
+            }
+        }
+    }
+
+    private void send(Subscriber subscriber) {
+        subscriber.sendingSince = System.nanoTime();
+        try {
+            List<FeedEvent> events = eventsAfter(subscriber.position);
+            if (events == null) {
+                long current = lastId();
+                resets.increment();
+                subscriber.emitter.send(SseEmitter.event().id(epoch + "-" + current).name(RESET).data(""));
+                subscriber.position = current;
+            } else {
+                for (FeedEvent event : events) {
+                    subscriber.emitter.send(SseEmitter.event()
+                            .id(epoch + "-" + event.id)
+                            .name(event.name)
+                            .data(event.data, MediaType.APPLICATION_JSON));
+                    subscriber.position = event.id;
+                }
+            }
+        } catch (IOException | UncheckedIOException | IllegalStateException e) {
+            logger.debug("Subscriber of changes is disconnected: {}", e.getMessage());
+            unsubscribe(subscriber);
+            subscriber.emitter.completeWithError(e);
+            return;
+        } finally {
+            subscriber.sendingSince = 0;
+            subscriber.scheduled.set(false);
+        }
+        if (!subscribers.contains(subscriber)) {
+            subscriber.emitter.complete();
+        } else if (subscriber.position < lastId()) {
+            schedule(subscriber);
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            subscriberCount.decrementAndGet();
+        }
+    }
+
+    private static class FeedEvent {
+
+        private final long id;
+        private final String name;
+        private final String data;
+
+        private FeedEvent(long id, String name, String data) {
+            this.id = id;
+            this.name = name;
+            this.data = data;
+        }
+    }
+
+    private static class Subscriber {
+
+        private final SseEmitter emitter;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // written only by task of subscriber, tasks are ordered by flag scheduled
+        private volatile long position;
+        private volatile long sendingSince;
+
+        private Subscriber(SseEmitter emitter, long position) {
+            this.emitter = emitter;
+            this.position = position;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package ru.hogwarts.school.service.impl;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.service.CsvService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Service for bulk import and export of students and faculties in CSV with header<br>
+ * request body is streamed by {@code COPY FROM STDIN} of PostgreSQL into temporary table without constraints,
+ * rows are validated there by one query, and valid import is moved to the table by one {@code INSERT ... SELECT}
+ * with ids from {@code hibernate_sequence}. If any row is invalid, nothing is imported.
+ * Export is streamed by {@code COPY TO STDOUT} to response, so none of them is kept in memory.
+ * Columns of import of students are {@code name,age,faculty_id}, of faculties {@code name,color},
+ * export has {@code id} before them
+ */
+@Service
+public class CsvServiceImpl implements CsvService {
+
+    private static final int COPY_BUFFER_SIZE = 65536;
+    private static final int MAX_REPORTED_LINES = 10;
+
+    private static final String CREATE_STUDENT_IMPORT = "CREATE TEMP TABLE student_import "
+            + "(line bigserial, name text, age int, faculty_id bigint) ON COMMIT DROP";
+    private static final String COPY_STUDENT_IMPORT = "COPY student_import (name, age, faculty_id) "
+            + "FROM STDIN WITH (FORMAT csv, HEADER true)";
+    // age is checked here by the same rule as CHECK (age > 0) of table student
+    private static final String INVALID_STUDENT_LINES = "SELECT i.line + 1 FROM student_import i "
+            + "LEFT JOIN faculty f ON f.id = i.faculty_id "
+            + "WHERE i.name IS NULL OR i.age IS NULL OR i.age <= 0 OR f.id IS NULL ORDER BY i.line LIMIT ?";
+    private static final String INSERT_STUDENTS = "INSERT INTO student (id, name, age, faculty_id, version) "
+            + "SELECT nextval('hibernate_sequence'), name, age, faculty_id, 0 FROM student_import ORDER BY line";
+    private static final String COPY_STUDENTS = "COPY (SELECT id, name, age, faculty_id FROM student ORDER BY id) "
+            + "TO STDOUT WITH (FORMAT csv, HEADER true)";
+
+    private static final String CREATE_FACULTY_IMPORT = "CREATE TEMP TABLE faculty_import "
+            + "(line bigserial, name text, color text) ON COMMIT DROP";
+    private static final String COPY_FACULTY_IMPORT = "COPY faculty_import (name, color) "
+            + "FROM STDIN WITH (FORMAT csv, HEADER true)";
+    private static final String INVALID_FACULTY_LINES = "SELECT line + 1 FROM faculty_import "
+            + "WHERE name IS NULL OR color IS NULL ORDER BY line LIMIT ?";
+    private static final String INSERT_FACULTIES = "INSERT INTO faculty (id, name, color, version) "
+            + "SELECT nextval('hibernate_sequence'), name, color, 0 FROM faculty_import ORDER BY line";
+    private static final String COPY_FACULTIES = "COPY (SELECT id, name, color FROM faculty ORDER BY id) "
+            + "TO STDOUT WITH (FORMAT csv, HEADER true)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    Logger logger = LoggerFactory.getLogger(CsvService.class);
+
+    public CsvServiceImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Import students from CSV with columns {@code name,age,faculty_id}
+     *
+     * @param csv stream of CSV, it is read to the end
+     * @return amount of imported students
+     * @throws IOException if an IO exception
+     * @throws IllegalArgumentException if age of student is not positive, name is empty or faculty not found
+     * @throws org.springframework.dao.DataIntegrityViolationException if CSV is malformed
+     */
+    @Override
+    public long importStudents(InputStream csv) throws IOException {
+        logger.info("Was invoked method for import students from CSV");
+        return importCsv(csv, CREATE_STUDENT_IMPORT, COPY_STUDENT_IMPORT, INVALID_STUDENT_LINES, INSERT_STUDENTS,
+                "students");
+    }
+
+    /**
+     * Export all students to CSV with columns {@code id,name,age,faculty_id}
+     *
+     * @param csv stream for CSV, it is not closed
+     * @return amount of exported students
+     * @throws IOException if an IO exception
+     */
+    @Override
+    public long exportStudents(OutputStream csv) throws IOException {
+        logger.info("Was invoked method for export students to CSV");
+        return exportCsv(csv, COPY_STUDENTS);
+    }
+
+    /**
+     * Import faculties from CSV with columns {@code name,color}
+     *
+     * @param csv stream of CSV, it is read to the end
+     * @return amount of imported faculties
+     * @throws IOException if an IO exception
+     * @throws IllegalArgumentException if name or color of faculty is empty
+     * @throws org.springframework.dao.DataIntegrityViolationException if CSV is malformed,
+     *                                                                  or name or color of faculty is not unique
+     */
+    @Override
+    public long importFaculties(InputStream csv) throws IOException {
+        logger.info("Was invoked method for import faculties from CSV");
+        return importCsv(csv, CREATE_FACULTY_IMPORT, COPY_FACULTY_IMPORT, INVALID_FACULTY_LINES, INSERT_FACULTIES,
+                "faculties");
+    }
+
+    /**
+     * Export all faculties to CSV with columns {@code id,name,color}
+     *
+     * @param csv stream for CSV, it is not closed
+     * @return amount of exported faculties
+     * @throws IOException if an IO exception
+     */
+    @Override
+    public long exportFaculties(OutputStream csv) throws IOException {
+        logger.info("Was invoked method for export faculties to CSV");
+        return exportCsv(csv, COPY_FACULTIES);
+    }
+
+    private long importCsv(InputStream csv, String createTable, String copy, String invalidLines, String insert,
+                           String entities) throws IOException {
+        try {
+            Long imported = transactionTemplate.execute(status -> {
+                jdbcTemplate.execute(createTable);
+                long copied = copy(copyManager -> copyManager.copyIn(copy, csv, COPY_BUFFER_SIZE));
+                List<Long> lines = jdbcTemplate.queryForList(invalidLines, Long.class, MAX_REPORTED_LINES);
+                if (!lines.isEmpty()) {
+                    throw new IllegalArgumentException("Invalid " + entities + " in lines " + lines);
+                }
+                int inserted = jdbcTemplate.update(insert);
+                logger.debug("Copied {} rows of {}, inserted {}", copied, entities, inserted);
+                return (long) inserted;
+            });
+            return imported == null ? 0 : imported;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private long exportCsv(OutputStream csv, String copy) throws IOException {
+        try {
+            return copy(copyManager -> copyManager.copyOut(copy, csv));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Run COPY on connection of current transaction, or on a new connection if there is no transaction
+     */
+    private long copy(Copy copy) {
+        Long rows = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            try {
+                return copy.run(copyManager);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return rows == null ? 0 : rows;
+    }
+
+    private interface Copy {
+        long run(CopyManager copyManager) throws SQLException, IOException;
+    }
+}
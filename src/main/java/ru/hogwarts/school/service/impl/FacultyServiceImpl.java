@@ -2,18 +2,27 @@ package ru.hogwarts.school.service.impl;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.coalescing.Coalesced;
+import ru.hogwarts.school.dto.ChangeEvent;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repositories.FacultyRepository;
 import ru.hogwarts.school.service.AvatarService;
 import ru.hogwarts.school.service.FacultyService;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.stream.Collectors;
 
 /**
- * Service for working Faculty from school Hogwarts
+ * Service for working Faculty from school Hogwarts<br>
+ * created, edited and deleted faculties are published as {@link ChangeEvent},
+ * reads are in read-only transactions, which go to replica if replicas are configured,
+ * and concurrent equal reads are {@link Coalesced} into one query
  */
 @Service
 public class FacultyServiceImpl implements FacultyService {
@@ -21,9 +30,11 @@ public class FacultyServiceImpl implements FacultyService {
     Logger logger = LoggerFactory.getLogger(AvatarService.class);
 
     private final FacultyRepository facultyRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public FacultyServiceImpl(FacultyRepository facultyRepository) {
+    public FacultyServiceImpl(FacultyRepository facultyRepository, ApplicationEventPublisher eventPublisher) {
         this.facultyRepository = facultyRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -35,7 +46,9 @@ public class FacultyServiceImpl implements FacultyService {
     @Override
     public Faculty createFaculty(Faculty faculty) {
         logger.info("Was invoked method for creat faculty");
-        return facultyRepository.save(faculty);
+        Faculty createFaculty = facultyRepository.save(faculty);
+        eventPublisher.publishEvent(ChangeEvent.of(ChangeEvent.Type.CREATED, createFaculty));
+        return createFaculty;
     }
 
     /**
@@ -45,6 +58,8 @@ public class FacultyServiceImpl implements FacultyService {
      * @return finding faculty, return {@code null} if faculty not found
      */
     @Override
+    @Coalesced
+    @Transactional(readOnly = true)
     public Faculty findFaculty(long id){
         logger.info("Was invoked method for find faculty by id = {}", id);
         if (facultyRepository.findById(id).isEmpty()){
@@ -54,35 +69,40 @@ public class FacultyServiceImpl implements FacultyService {
     }
 
     /**
-     * Edit faculty in database
+     * Edit faculty in database by one statement, version of faculty is checked if it is set
      *
      * @param faculty must not be {@code null}
-     * @return edit faculty, return {@code null} if edit faculty not found
+     * @return edit faculty with new version, return {@code null} if edit faculty not found
+     * @throws ObjectOptimisticLockingFailureException if faculty was changed after its version was read
      */
     @Override
     public Faculty editFaculty(Faculty faculty) {
         logger.info("Was invoked method for edit faculty = {}", faculty);
-        if (facultyRepository.findById(faculty.getId()).isEmpty()){
-            return null;
+        Faculty editFaculty = facultyRepository.updateFaculty(faculty).orElse(null);
+        if (editFaculty == null && faculty.getVersion() != null && facultyRepository.existsById(faculty.getId())) {
+            throw new ObjectOptimisticLockingFailureException(Faculty.class, faculty.getId());
+        }
+        if (editFaculty != null) {
+            eventPublisher.publishEvent(ChangeEvent.of(ChangeEvent.Type.UPDATED, editFaculty));
         }
-        return facultyRepository.save(faculty);
+        return editFaculty;
     }
 
     /**
-     * Delete faculty by {@code id} from database
+     * Delete faculty by {@code id} from database, faculty is deleted and returned by one statement
      *
      * @param id of faculty, must not be {@code null}
      * @return deleting faculty, return {@code null} if faculty not found
      */
     @Override
     public Faculty deleteFaculty(long id) {
-        if (facultyRepository.findById(id).isEmpty()){
+        Faculty deleteFaculty = facultyRepository.deleteFacultyById(id).orElse(null);
+        if (deleteFaculty == null) {
             logger.info("Faculty with id {} is not found", id);
             return null;
         }
-        Faculty deleteFaculty = facultyRepository.findById(id).get();
-        facultyRepository.deleteById(id);
         logger.info("Faculty with id = {} is deleted", id);
+        eventPublisher.publishEvent(ChangeEvent.of(ChangeEvent.Type.DELETED, deleteFaculty));
         return deleteFaculty;
     }
 
@@ -92,6 +112,8 @@ public class FacultyServiceImpl implements FacultyService {
      * @return faculties from database
      */
     @Override
+    @Coalesced
+    @Transactional(readOnly = true)
     public Collection<Faculty> getAllFaculties() {
         logger.info("Was invoked method for get all faculties");
         return facultyRepository.findAll();
@@ -105,6 +127,8 @@ public class FacultyServiceImpl implements FacultyService {
      * @throws IllegalArgumentException if color is {@code null}
      */
     @Override
+    @Coalesced
+    @Transactional(readOnly = true)
     public Collection<Faculty> filterFacultiesByColor(String color) {
         logger.info("Was invoked method for filter faculty by color = {}", color);
         if (color == null) {
@@ -124,6 +148,8 @@ public class FacultyServiceImpl implements FacultyService {
      * @return filtered faculties
      */
     @Override
+    @Coalesced
+    @Transactional(readOnly = true)
     public Collection<Faculty> filterFacultiesByColorOrName(String color, String name) {
         logger.info("Was invoked method for filter faculty by color or(and) name");
         if (color == null){
@@ -142,9 +168,13 @@ public class FacultyServiceImpl implements FacultyService {
      * @return studens of faculty
      */
     @Override
+    @Coalesced
+    @Transactional(readOnly = true)
     public Collection<Student> findStudentsOfFaculty(long id) {
         logger.info("Was invoked method for find students of faculty by id = {}", id);
-        return facultyRepository.getById(id).getStudents();
+        // students are loaded in transaction, they are serialized after it is closed,
+        // they are selected by faculty_id, so only partition of faculty is read
+        return new ArrayList<>(facultyRepository.getById(id).getStudents());
     }
 
     /**
@@ -153,6 +183,8 @@ public class FacultyServiceImpl implements FacultyService {
      * @return longest name
      */
     @Override
+    @Coalesced
+    @Transactional(readOnly = true)
     public String longestNameOfFaculty() {
         logger.info("Was invoked method longestNameOfFaculty");
         return facultyRepository.findAll().stream()
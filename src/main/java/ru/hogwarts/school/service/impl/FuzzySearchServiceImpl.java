@@ -0,0 +1,157 @@
+package ru.hogwarts.school.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.dto.ChangeEvent;
+import ru.hogwarts.school.dto.FuzzyMatch;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repositories.FacultyRepository;
+import ru.hogwarts.school.repositories.StudentRepository;
+import ru.hogwarts.school.search.NameMatch;
+import ru.hogwarts.school.search.NameSearch;
+import ru.hogwarts.school.search.NgramNameSearch;
+import ru.hogwarts.school.search.TrigramNameSearch;
+import ru.hogwarts.school.service.FuzzySearchService;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Service for fuzzy search of students and faculties by partial or misspelled names<br>
+ * search is made by {@link NameSearch} selected by {@code search.fuzzy.engine}: {@code trigram} uses
+ * {@code pg_trgm} and its GIN indexes, {@code ngram} uses index in memory for databases without {@code pg_trgm}.
+ * Index in memory is updated only by changes made by this instance through services, changes of other instances
+ * and of bulk writers, which do not publish {@link ChangeEvent}, are not seen until restart,
+ * so {@code ngram} is for a single instance and tests only.
+ * Matches have similarity at least {@code search.fuzzy.min-similarity}, and there are no more than
+ * {@code search.fuzzy.max-limit} of them
+ */
+@Service
+public class FuzzySearchServiceImpl implements FuzzySearchService {
+
+    private final StudentRepository studentRepository;
+    private final FacultyRepository facultyRepository;
+    private final NameSearch students;
+    private final NameSearch faculties;
+    private final double minSimilarity;
+    private final int maxLimit;
+
+    Logger logger = LoggerFactory.getLogger(FuzzySearchServiceImpl.class);
+
+    public FuzzySearchServiceImpl(StudentRepository studentRepository,
+                                  FacultyRepository facultyRepository,
+                                  JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${search.fuzzy.engine:trigram}") String engine,
+                                  @Value("${search.fuzzy.min-similarity:0.3}") double minSimilarity,
+                                  @Value("${search.fuzzy.max-limit:100}") int maxLimit) {
+        this.studentRepository = studentRepository;
+        this.facultyRepository = facultyRepository;
+        this.minSimilarity = minSimilarity;
+        this.maxLimit = maxLimit;
+        switch (engine) {
+            case "trigram":
+                this.students = new TrigramNameSearch(jdbcTemplate, transactionManager, "student");
+                this.faculties = new TrigramNameSearch(jdbcTemplate, transactionManager, "faculty");
+                break;
+            case "ngram":
+                this.students = new NgramNameSearch(() -> namesOf(studentRepository, Student::getId, Student::getName));
+                this.faculties = new NgramNameSearch(() -> namesOf(facultyRepository, Faculty::getId, Faculty::getName));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown engine of fuzzy search: " + engine);
+        }
+    }
+
+    /**
+     * Find students by partial or misspelled name
+     *
+     * @param query part of name
+     * @param limit max number of students, from 1 to {@code search.fuzzy.max-limit}
+     * @return students ordered from the most similar name
+     * @throws IllegalArgumentException if query is blank or limit is out of range
+     */
+    @Override
+    public List<FuzzyMatch<Student>> searchStudents(String query, int limit) {
+        logger.debug("Call method searchStudents query = {}, limit = {}", query, limit);
+        check(query, limit);
+        return ranked(students.search(query.trim(), limit, minSimilarity), studentRepository::findAllById, Student::getId);
+    }
+
+    /**
+     * Find faculties by partial or misspelled name
+     *
+     * @param query part of name
+     * @param limit max number of faculties, from 1 to {@code search.fuzzy.max-limit}
+     * @return faculties ordered from the most similar name
+     * @throws IllegalArgumentException if query is blank or limit is out of range
+     */
+    @Override
+    public List<FuzzyMatch<Faculty>> searchFaculties(String query, int limit) {
+        logger.debug("Call method searchFaculties query = {}, limit = {}", query, limit);
+        check(query, limit);
+        return ranked(faculties.search(query.trim(), limit, minSimilarity), facultyRepository::findAllById, Faculty::getId);
+    }
+
+    /**
+     * Keep index in memory up to date with changes of this instance, index of {@code pg_trgm} is updated by database
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void changed(ChangeEvent event) {
+        NameSearch search = event.getEntity() == ChangeEvent.Entity.STUDENT ? students : faculties;
+        if (!(search instanceof NgramNameSearch)) {
+            return;
+        }
+        if (event.getType() == ChangeEvent.Type.DELETED) {
+            ((NgramNameSearch) search).remove(event.getId());
+        } else {
+            ((NgramNameSearch) search).put(event.getId(), (String) event.getData().get("name"));
+        }
+    }
+
+    private void check(String query, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Query must not be empty");
+        }
+        if (limit < 1 || limit > maxLimit) {
+            throw new IllegalArgumentException("Limit must be from 1 to " + maxLimit);
+        }
+    }
+
+    /**
+     * Load entities of matches and keep order of matches, entities deleted after search are skipped
+     */
+    private static <T> List<FuzzyMatch<T>> ranked(List<NameMatch> matches, Function<List<Long>, List<T>> findAllById,
+                                                  Function<T, Long> idOf) {
+        if (matches.isEmpty()) {
+            return List.of();
+        }
+        List<Long> ids = matches.stream().map(NameMatch::getId).collect(Collectors.toList());
+        Map<Long, T> entities = findAllById.apply(ids).stream().collect(Collectors.toMap(idOf, Function.identity()));
+        List<FuzzyMatch<T>> result = new ArrayList<>(matches.size());
+        for (NameMatch match : matches) {
+            T entity = entities.get(match.getId());
+            if (entity != null) {
+                result.add(new FuzzyMatch<>(entity, match.getSimilarity()));
+            }
+        }
+        return result;
+    }
+
+    private static <T> Map<Long, String> namesOf(JpaRepository<T, Long> repository, Function<T, Long> idOf,
+                                                 Function<T, String> nameOf) {
+        Map<Long, String> names = new HashMap<>();
+        for (T entity : repository.findAll()) {
+            names.put(idOf.apply(entity), nameOf.apply(entity));
+        }
+        return names;
+    }
+}
@@ -0,0 +1,295 @@
+package ru.hogwarts.school.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.model.PreviewBackfill;
+import ru.hogwarts.school.repositories.AvatarRepository;
+import ru.hogwarts.school.repositories.PreviewBackfillRepository;
+import ru.hogwarts.school.service.PreviewBackfillService;
+import ru.hogwarts.school.service.PreviewService;
+
+import javax.annotation.PreDestroy;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Background job which regenerates previews of all avatars from their original files<br>
+ * avatars are walked by keyset on {@code id}, previews of one batch are generated in parallel
+ * on fork-join pool with {@code avatars.backfill.concurrency} threads, then written by one JDBC batch
+ * in the same transaction with checkpoint, so after restart job continues from the last written batch.
+ * Preview is written only if version of avatar is the same as when its file was read,
+ * so avatar uploaded during batch keeps its own preview, such avatars are counted as skipped.
+ * Job runs on one instance of application: the instance takes the row of job with lease of
+ * {@code avatars.backfill.lease-ms}, which is renewed by every checkpoint. Checkpoint of instance which lost
+ * the row is rolled back, and the instance stops. Job of crashed instance is taken by next start or restart
+ * of application after its lease is expired. Stop is written to the row, so it stops job on any instance
+ */
+@Service
+public class PreviewBackfillServiceImpl implements PreviewBackfillService {
+
+    private static final String NAME = "avatar-preview";
+    private static final String UPDATE_PREVIEW = "UPDATE avatar SET data = ? WHERE id = ? AND version = ?";
+    private static final String CLAIM = "UPDATE preview_backfill SET owner = ?, lease_until = ? " +
+            "WHERE name = ? AND status = 'RUNNING' AND (owner IS NULL OR owner = ? OR lease_until < ?)";
+    private static final String CHECKPOINT = "UPDATE preview_backfill SET last_avatar_id = ?, processed = ?, " +
+            "failed = ?, skipped = ?, updated_at = ?, lease_until = ? WHERE name = ? AND owner = ?";
+    private static final String RELEASE = "UPDATE preview_backfill SET status = ?, owner = NULL, lease_until = NULL, " +
+            "updated_at = ? WHERE name = ? AND owner = ?";
+    private static final String STOP = "UPDATE preview_backfill SET status = 'STOPPED', owner = NULL, " +
+            "lease_until = NULL, updated_at = ? WHERE name = ? AND status = 'RUNNING'";
+
+    @Value(value = "${avatars.backfill.batch-size:100}")
+    private int batchSize;
+
+    @Value(value = "${avatars.backfill.lease-ms:300000}")
+    private long leaseMillis;
+
+    private final String owner = UUID.randomUUID().toString();
+
+    private final AvatarRepository avatarRepository;
+    private final PreviewBackfillRepository backfillRepository;
+    private final PreviewService previewService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ExecutorService jobExecutor;
+    private final ForkJoinPool previewPool;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean stopRequested;
+    private volatile boolean shuttingDown;
+
+    private final Counter processedCounter;
+    private final Counter failedCounter;
+    private final Counter skippedCounter;
+    private final Timer batchTimer;
+    private final AtomicLong lastAvatarId = new AtomicLong();
+    private final AtomicLong avatarsPerSecond = new AtomicLong();
+
+    Logger logger = LoggerFactory.getLogger(PreviewBackfillService.class);
+
+    public PreviewBackfillServiceImpl(AvatarRepository avatarRepository,
+                                      PreviewBackfillRepository backfillRepository,
+                                      PreviewService previewService,
+                                      JdbcTemplate jdbcTemplate,
+                                      TransactionTemplate transactionTemplate,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${avatars.backfill.concurrency:0}") int concurrency) {
+        this.avatarRepository = avatarRepository;
+        this.backfillRepository = backfillRepository;
+        this.previewService = previewService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.jobExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "preview-backfill"));
+        this.previewPool = new ForkJoinPool(concurrency > 0 ? concurrency : Runtime.getRuntime().availableProcessors());
+
+        this.processedCounter = meterRegistry.counter("avatar.preview.backfill.processed");
+        this.failedCounter = meterRegistry.counter("avatar.preview.backfill.failed");
+        this.skippedCounter = meterRegistry.counter("avatar.preview.backfill.skipped");
+        this.batchTimer = meterRegistry.timer("avatar.preview.backfill.batch");
+        meterRegistry.gauge("avatar.preview.backfill.last.id", lastAvatarId);
+        meterRegistry.gauge("avatar.preview.backfill.throughput", avatarsPerSecond);
+        meterRegistry.gauge("avatar.preview.backfill.running", running, r -> r.get() ? 1 : 0);
+    }
+
+    /**
+     * Continue job after restart of application, if it was running and no other instance runs it
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void resumeAfterRestart() {
+        backfillRepository.findById(NAME)
+                .filter(b -> b.getStatus() == PreviewBackfill.Status.RUNNING)
+                .ifPresent(b -> {
+                    logger.info("Backfill of previews is resumed from avatar id = {}", b.getLastAvatarId());
+                    launch();
+                });
+    }
+
+    /**
+     * Start regeneration of previews of all avatars
+     *
+     * @param fromBeginning if {@code true} all avatars are processed again,
+     *                      else job continues from checkpoint of stopped job
+     * @return state of job
+     */
+    @Override
+    public synchronized PreviewBackfill start(boolean fromBeginning) {
+        logger.info("Was invoked method for start backfill of previews");
+        if (running.get()) {
+            return getStatus();
+        }
+        PreviewBackfill backfill = backfillRepository.findById(NAME).orElse(null);
+        if (backfill != null && isRunningElsewhere(backfill)) {
+            logger.info("Backfill of previews is running on other instance");
+            return backfill;
+        }
+        if (backfill == null || fromBeginning || backfill.getStatus() == PreviewBackfill.Status.FINISHED) {
+            backfill = new PreviewBackfill();
+            backfill.setName(NAME);
+            backfill.setStartedAt(Instant.now());
+        }
+        backfill.setStatus(PreviewBackfill.Status.RUNNING);
+        backfill.setOwner(null);
+        backfill.setLeaseUntil(null);
+        backfill.setUpdatedAt(Instant.now());
+        backfill = backfillRepository.save(backfill);
+        launch();
+        return getStatus();
+    }
+
+    /**
+     * Stop job after current batch on any instance, job can be continued from checkpoint
+     *
+     * @return state of job, return {@code null} if job was never started
+     */
+    @Override
+    public PreviewBackfill stop() {
+        logger.info("Was invoked method for stop backfill of previews");
+        stopRequested = true;
+        jdbcTemplate.update(STOP, Timestamp.from(Instant.now()), NAME);
+        return getStatus();
+    }
+
+    /**
+     * Get state of job
+     *
+     * @return state of job, return {@code null} if job was never started
+     */
+    @Override
+    public PreviewBackfill getStatus() {
+        return backfillRepository.findById(NAME).orElse(null);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        shuttingDown = true;
+        stopRequested = true;
+        jobExecutor.shutdown();
+        jobExecutor.awaitTermination(30, TimeUnit.SECONDS);
+        previewPool.shutdown();
+    }
+
+    private boolean isRunningElsewhere(PreviewBackfill backfill) {
+        return backfill.getStatus() == PreviewBackfill.Status.RUNNING && backfill.getOwner() != null
+                && backfill.getLeaseUntil() != null && backfill.getLeaseUntil().isAfter(Instant.now());
+    }
+
+    private void launch() {
+        Instant now = Instant.now();
+        if (jdbcTemplate.update(CLAIM, owner, Timestamp.from(now.plusMillis(leaseMillis)), NAME, owner,
+                Timestamp.from(now)) == 0) {
+            logger.info("Backfill of previews is not launched, it is running on other instance");
+            return;
+        }
+        stopRequested = false;
+        running.set(true);
+        jobExecutor.execute(this::run);
+    }
+
+    private void run() {
+        PreviewBackfill backfill = backfillRepository.findById(NAME).orElseThrow();
+        try {
+            while (!stopRequested) {
+                List<AvatarRepository.AvatarFile> files =
+                        avatarRepository.findAvatarFilesAfter(backfill.getLastAvatarId(), PageRequest.of(0, batchSize));
+                if (files.isEmpty()) {
+                    backfill.setStatus(PreviewBackfill.Status.FINISHED);
+                    break;
+                }
+                long start = System.nanoTime();
+                if (!processBatch(backfill, files)) {
+                    logger.info("Backfill of previews is stopped or taken by other instance");
+                    break;
+                }
+                long nanos = System.nanoTime() - start;
+                batchTimer.record(nanos, TimeUnit.NANOSECONDS);
+                avatarsPerSecond.set(files.size() * TimeUnit.SECONDS.toNanos(1) / Math.max(1, nanos));
+            }
+            // job stays RUNNING on shutdown of application, so it is resumed after restart
+            if (stopRequested && !shuttingDown) {
+                backfill.setStatus(PreviewBackfill.Status.STOPPED);
+            }
+        } catch (Exception e) {
+            // state in memory is changed only by written checkpoint, so job is stopped at the last one
+            logger.error("Backfill of previews is stopped after avatar id = {}", backfill.getLastAvatarId(), e);
+            backfill.setStatus(PreviewBackfill.Status.STOPPED);
+        } finally {
+            // row of job is not changed if it is stopped or taken by other instance
+            jdbcTemplate.update(RELEASE, backfill.getStatus().name(), Timestamp.from(Instant.now()), NAME, owner);
+            running.set(false);
+            logger.info("Backfill of previews is {}, processed = {}, failed = {}, skipped = {}",
+                    backfill.getStatus(), backfill.getProcessed(), backfill.getFailed(), backfill.getSkipped());
+        }
+    }
+
+    /**
+     * @return {@code false} if checkpoint is not written, because job is stopped or taken by other instance
+     */
+    private boolean processBatch(PreviewBackfill backfill, List<AvatarRepository.AvatarFile> files) throws Exception {
+        List<Object[]> updates = previewPool.submit(() -> files.parallelStream()
+                        .map(this::regenerate)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList()))
+                .get();
+        long lastId = files.get(files.size() - 1).getId();
+        int failed = files.size() - updates.size();
+
+        Integer skipped = transactionTemplate.execute(status -> {
+            int[] counts = jdbcTemplate.batchUpdate(UPDATE_PREVIEW, updates);
+            int changedAvatars = (int) Arrays.stream(counts).filter(count -> count == 0).count();
+            Instant now = Instant.now();
+            if (jdbcTemplate.update(CHECKPOINT, lastId, backfill.getProcessed() + updates.size() - changedAvatars,
+                    backfill.getFailed() + failed, backfill.getSkipped() + changedAvatars, Timestamp.from(now),
+                    Timestamp.from(now.plusMillis(leaseMillis)), NAME, owner) == 0) {
+                status.setRollbackOnly();
+                return null;
+            }
+            return changedAvatars;
+        });
+        if (skipped == null) {
+            return false;
+        }
+        backfill.setLastAvatarId(lastId);
+        backfill.setProcessed(backfill.getProcessed() + updates.size() - skipped);
+        backfill.setFailed(backfill.getFailed() + failed);
+        backfill.setSkipped(backfill.getSkipped() + skipped);
+
+        processedCounter.increment(updates.size() - skipped);
+        failedCounter.increment(failed);
+        skippedCounter.increment(skipped);
+        lastAvatarId.set(lastId);
+        logger.debug("Previews of avatars up to id = {} are regenerated, failed = {}, skipped = {}", lastId, failed, skipped);
+        return true;
+    }
+
+    private Object[] regenerate(AvatarRepository.AvatarFile file) {
+        try {
+            return new Object[]{previewService.generatePreview(Path.of(file.getFilePath())), file.getId(),
+                    file.getVersion()};
+        } catch (Exception e) {
+            logger.warn("Preview of avatar id = {} is not regenerated: {}", file.getId(), e.getMessage());
+            return null;
+        }
+    }
+}
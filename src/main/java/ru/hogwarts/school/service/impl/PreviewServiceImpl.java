@@ -0,0 +1,174 @@
+package ru.hogwarts.school.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.hogwarts.school.service.PreviewService;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service for generating previews of avatars<br>
+ * image is decoded by {@link ImageReader} with source subsampling chosen from dimensions in header,
+ * images with too many pixels are rejected before decoding,
+ * and all decodes together use no more than {@code avatars.preview.decode-memory-mb} of memory
+ */
+@Service
+public class PreviewServiceImpl implements PreviewService {
+
+    private static final int PREVIEW_WIDTH = 100;
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private final long maxPixels;
+    private final int maxDimension;
+    private final long decodeTimeoutSeconds;
+    private final int decodeMemoryKb;
+    private final Semaphore decodeMemory;
+
+    Logger logger = LoggerFactory.getLogger(PreviewService.class);
+
+    public PreviewServiceImpl(@Value("${avatars.preview.max-pixels:50000000}") long maxPixels,
+                              @Value("${avatars.preview.max-dimension:20000}") int maxDimension,
+                              @Value("${avatars.preview.decode-memory-mb:256}") int decodeMemoryMb,
+                              @Value("${avatars.preview.decode-timeout-seconds:30}") long decodeTimeoutSeconds) {
+        this.maxPixels = maxPixels;
+        this.maxDimension = maxDimension;
+        this.decodeTimeoutSeconds = decodeTimeoutSeconds;
+        this.decodeMemoryKb = decodeMemoryMb * 1024;
+        this.decodeMemory = new Semaphore(decodeMemoryKb, true);
+    }
+
+    /**
+     * Generate preview of image from file, format of preview is taken from extension of file
+     *
+     * @param file file of image
+     * @return bytes of preview
+     * @throws IOException if an IO exception, or format of image is not supported
+     * @throws IllegalArgumentException if image is too big
+     */
+    @Override
+    public byte[] generatePreview(Path file) throws IOException {
+        String fileName = file.getFileName().toString();
+        return generatePreview(file, fileName.substring(fileName.lastIndexOf(".") + 1));
+    }
+
+    /**
+     * Generate preview of image from file
+     *
+     * @param file file of image
+     * @param extension format of preview
+     * @return bytes of preview
+     * @throws IOException if an IO exception, or format of image is not supported
+     * @throws IllegalArgumentException if image is too big
+     */
+    @Override
+    public byte[] generatePreview(Path file, String extension) throws IOException {
+        try (ImageInputStream iis = new FileImageInputStream(file.toFile())) {
+            return generatePreview(iis, extension);
+        }
+    }
+
+    /**
+     * Generate preview of image from stream
+     *
+     * @param image stream of image
+     * @param extension format of preview
+     * @return bytes of preview
+     * @throws IOException if an IO exception, or format of image is not supported
+     * @throws IllegalArgumentException if image is too big
+     */
+    @Override
+    public byte[] generatePreview(InputStream image, String extension) throws IOException {
+        try (ImageInputStream iis = new MemoryCacheImageInputStream(new BufferedInputStream(image, 8192))) {
+            return generatePreview(iis, extension);
+        }
+    }
+
+    private byte[] generatePreview(ImageInputStream iis, String extension) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+        if (!readers.hasNext()) {
+            throw new IOException("Format of image is not supported");
+        }
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(iis, true, true);
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            if (width > maxDimension || height > maxDimension || (long) width * height > maxPixels) {
+                throw new IllegalArgumentException("Image is too big: " + width + "x" + height);
+            }
+
+            // decoded image is kept at least twice as wide as preview, so quality of preview is the same
+            int subsampling = Math.max(1, width / (PREVIEW_WIDTH * 2));
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+            long decodedPixels = (long) ceilDiv(width, subsampling) * ceilDiv(height, subsampling);
+            int permits = (int) Math.max(1, decodedPixels * BYTES_PER_PIXEL / 1024);
+            if (permits > decodeMemoryKb) {
+                throw new IllegalArgumentException("Image is too big: " + width + "x" + height);
+            }
+            BufferedImage image = decode(reader, param, permits);
+            return encode(scale(image, extension), extension);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private BufferedImage decode(ImageReader reader, ImageReadParam param, int permits) throws IOException {
+        try {
+            if (!decodeMemory.tryAcquire(permits, decodeTimeoutSeconds, TimeUnit.SECONDS)) {
+                throw new IOException("Memory for decoding images is exhausted");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Decoding of image is interrupted");
+        }
+        try {
+            return reader.read(0, param);
+        } finally {
+            decodeMemory.release(permits);
+        }
+    }
+
+    private BufferedImage scale(BufferedImage image, String extension) {
+        int height = Math.max(1, image.getHeight() * PREVIEW_WIDTH / image.getWidth());
+        boolean alpha = image.getColorModel().hasAlpha() && !isJpeg(extension);
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage preview = new BufferedImage(PREVIEW_WIDTH, height, type);
+        Graphics2D graphics = preview.createGraphics();
+        graphics.drawImage(image, 0, 0, PREVIEW_WIDTH, height, null);
+        graphics.dispose();
+        return preview;
+    }
+
+    private byte[] encode(BufferedImage preview, String extension) throws IOException {
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+            if (!ImageIO.write(preview, extension, baos)) {
+                throw new IOException("Format of preview " + extension + " is not supported");
+            }
+            return baos.toByteArray();
+        }
+    }
+
+    private static boolean isJpeg(String extension) {
+        return "jpg".equalsIgnoreCase(extension) || "jpeg".equalsIgnoreCase(extension);
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+}
@@ -0,0 +1,276 @@
+package ru.hogwarts.school.service.impl;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.model.Student;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Group commit of new students, enabled by {@code students.group-commit.enabled}<br>
+ * concurrent calls are queued, and one thread inserts them by one multi-row {@code INSERT} and one commit.
+ * Batch is collected during {@code students.group-commit.window-ms} after its first student was queued,
+ * or until {@code students.group-commit.max-batch-size}. Student which waited in queue longer than
+ * {@code students.group-commit.max-latency-ms} is not inserted and its caller gets an error.
+ * Caller of student still in queue waits no longer than max latency plus
+ * {@code students.group-commit.insert-timeout-ms}, so a stalled database does not block callers forever.
+ * Caller of student whose insert is already running waits for result of insert, so caller never gets
+ * an error for a student which is saved.
+ * If batch fails, its students are inserted one by one, so every caller gets its own id or error.
+ * Students left in queue on shutdown get an error
+ */
+@Component
+@ConditionalOnProperty(name = "students.group-commit.enabled", havingValue = "true")
+public class StudentGroupCommitter {
+
+    private static final String NEXT_IDS = "SELECT nextval('hibernate_sequence') FROM generate_series(1, ?)";
+    private static final String INSERT = "INSERT INTO student (id, name, age, faculty_id, version) VALUES ";
+    private static final String ROW = "(?, ?, ?, ?, 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxBatchSize;
+    private final long windowNanos;
+    private final long maxLatencyNanos;
+    private final long waitNanos;
+    private final BlockingQueue<PendingStudent> queue;
+    private final ExecutorService flusher;
+    private final DistributionSummary batchSizes;
+    private volatile boolean running = true;
+
+    Logger logger = LoggerFactory.getLogger(StudentGroupCommitter.class);
+
+    public StudentGroupCommitter(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${students.group-commit.max-batch-size:100}") int maxBatchSize,
+                                 @Value("${students.group-commit.window-ms:5}") long windowMillis,
+                                 @Value("${students.group-commit.max-latency-ms:200}") long maxLatencyMillis,
+                                 @Value("${students.group-commit.insert-timeout-ms:1000}") long insertTimeoutMillis,
+                                 @Value("${students.group-commit.queue-capacity:10000}") int queueCapacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxBatchSize = maxBatchSize;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis);
+        this.waitNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis + insertTimeoutMillis);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSizes = meterRegistry.summary("students.group-commit.batch.size");
+        meterRegistry.gauge("students.group-commit.queue.size", queue, BlockingQueue::size);
+        this.flusher = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "student-group-commit");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.execute(this::run);
+    }
+
+    /**
+     * Insert student together with students of concurrent calls
+     *
+     * @param student new student, must not be {@code null}
+     * @return the same student with generated id
+     * @throws TransientDataAccessResourceException if queue is full, student waited too long, or committer is shut down
+     * @throws org.springframework.dao.DataAccessException if student is not inserted
+     */
+    public Student insert(Student student) {
+        PendingStudent pending = new PendingStudent(student);
+        if (!running || !queue.offer(pending)) {
+            throw new TransientDataAccessResourceException("Queue of new students is full");
+        }
+        try {
+            return pending.result.get(waitNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // flusher takes only queued students, so expired student is never inserted
+            if (pending.expire()) {
+                throw new TransientDataAccessResourceException(
+                        "Student is not created within " + TimeUnit.NANOSECONDS.toMillis(waitNanos) + " ms");
+            }
+            return join(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransientDataAccessResourceException("Waiting for insert of student is interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private Student join(PendingStudent pending) {
+        try {
+            return pending.result.join();
+        } catch (CompletionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        flusher.shutdown();
+        if (!flusher.awaitTermination(30, TimeUnit.SECONDS)) {
+            flusher.shutdownNow();
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        failQueued();
+    }
+
+    private void failQueued() {
+        List<PendingStudent> left = new ArrayList<>();
+        queue.drainTo(left);
+        left.forEach(p -> p.fail(new TransientDataAccessResourceException("Group commit of students is shut down")));
+    }
+
+    private void run() {
+        List<PendingStudent> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingStudent first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // under load queue is already full of waiting students, and batch is collected without waiting
+                long deadline = first.queuedAt + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingStudent next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.forEach(p -> p.fail(
+                        new TransientDataAccessResourceException("Group commit of students is shut down")));
+                failQueued();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Batch of {} students is not flushed", batch.size(), e);
+                batch.forEach(p -> p.fail(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingStudent> batch) {
+        long now = System.nanoTime();
+        List<PendingStudent> live = new ArrayList<>(batch.size());
+        for (PendingStudent pending : batch) {
+            if (now - pending.queuedAt > maxLatencyNanos) {
+                if (pending.expire()) {
+                    pending.result.completeExceptionally(new TransientDataAccessResourceException(
+                            "Student is not created within " + TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos) + " ms"));
+                }
+            } else if (pending.claim()) {
+                live.add(pending);
+            }
+        }
+        if (live.isEmpty()) {
+            return;
+        }
+        try {
+            insertAll(live);
+            batchSizes.record(live.size());
+        } catch (RuntimeException e) {
+            if (live.size() == 1) {
+                live.get(0).fail(e);
+                return;
+            }
+            logger.debug("Batch of {} students is failed, students are inserted one by one: {}", live.size(), e.getMessage());
+            for (PendingStudent pending : live) {
+                try {
+                    insertAll(Collections.singletonList(pending));
+                    batchSizes.record(1);
+                } catch (RuntimeException single) {
+                    pending.fail(single);
+                }
+            }
+        }
+    }
+
+    private void insertAll(List<PendingStudent> pendings) {
+        List<Long> ids = transactionTemplate.execute(status -> {
+            List<Long> nextIds = jdbcTemplate.queryForList(NEXT_IDS, Long.class, pendings.size());
+            StringBuilder sql = new StringBuilder(INSERT.length() + pendings.size() * (ROW.length() + 2)).append(INSERT);
+            Object[] args = new Object[pendings.size() * 4];
+            for (int i = 0; i < pendings.size(); i++) {
+                Student student = pendings.get(i).student;
+                sql.append(i == 0 ? "" : ", ").append(ROW);
+                args[i * 4] = nextIds.get(i);
+                args[i * 4 + 1] = student.getName();
+                args[i * 4 + 2] = student.getAge();
+                args[i * 4 + 3] = student.getFaculty() == null ? null : student.getFaculty().getId();
+            }
+            jdbcTemplate.update(sql.toString(), args);
+            return nextIds;
+        });
+        for (int i = 0; i < pendings.size(); i++) {
+            Student student = pendings.get(i).student;
+            student.setId(ids.get(i));
+            student.setVersion(0L);
+            pendings.get(i).complete(student);
+        }
+    }
+
+    private enum State {
+        QUEUED, INSERTING, DONE, EXPIRED
+    }
+
+    private static class PendingStudent {
+
+        private final Student student;
+        private final long queuedAt = System.nanoTime();
+        private final AtomicReference<State> state = new AtomicReference<>(State.QUEUED);
+        private final CompletableFuture<Student> result = new CompletableFuture<>();
+
+        private PendingStudent(Student student) {
+            this.student = student;
+        }
+
+        /**
+         * Take student to batch of flusher, after that caller waits for result of insert
+         */
+        private boolean claim() {
+            return state.compareAndSet(State.QUEUED, State.INSERTING);
+        }
+
+        /**
+         * Give up student which is not taken to batch, after that it is never inserted
+         */
+        private boolean expire() {
+            return state.compareAndSet(State.QUEUED, State.EXPIRED);
+        }
+
+        private void complete(Student inserted) {
+            state.set(State.DONE);
+            result.complete(inserted);
+        }
+
+        private void fail(RuntimeException e) {
+            if (state.get() != State.EXPIRED) {
+                state.set(State.DONE);
+            }
+            result.completeExceptionally(e);
+        }
+    }
+}
@@ -2,8 +2,14 @@ package ru.hogwarts.school.service.impl;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.coalescing.Coalesced;
+import ru.hogwarts.school.dto.ChangeEvent;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repositories.StudentRepository;
@@ -15,7 +21,10 @@ import java.util.OptionalDouble;
 import java.util.stream.Collectors;
 
 /**
- * Service for working with students from school Hogwarts
+ * Service for working with students from school Hogwarts<br>
+ * created, edited and deleted students are published as {@link ChangeEvent},
+ * reads are in read-only transactions, which go to replica if replicas are configured,
+ * and concurrent equal reads are {@link Coalesced} into one query
  */
 
 @Service
@@ -24,14 +33,20 @@ public class StudentServiceImpl implements StudentService {
     Logger logger = LoggerFactory.getLogger(AvatarService.class);
 
     private final StudentRepository studentRepository;
+    private final StudentGroupCommitter groupCommitter;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public StudentServiceImpl(StudentRepository studentRepository) {
+    public StudentServiceImpl(StudentRepository studentRepository, ObjectProvider<StudentGroupCommitter> groupCommitter,
+                              ApplicationEventPublisher eventPublisher) {
         this.studentRepository = studentRepository;
+        this.groupCommitter = groupCommitter.getIfAvailable();
+        this.eventPublisher = eventPublisher;
     }
 
     /**
      * Saves the student to the database<br>
-     * method is used {@link org.springframework.data.jpa.repository.JpaRepository#save(Object)}
+     * method is used {@link org.springframework.data.jpa.repository.JpaRepository#save(Object)},
+     * or {@link StudentGroupCommitter#insert(Student)} if group commit of new students is enabled
      *
      * @param student created student, must not be {@code null}
      * @return created student.
@@ -39,7 +54,9 @@ public class StudentServiceImpl implements StudentService {
     @Override
     public Student createStudent(Student student) {
         logger.info("Was invoked method for creat student");
-        return studentRepository.save(student);
+        Student createStudent = groupCommitter != null ? groupCommitter.insert(student) : studentRepository.save(student);
+        eventPublisher.publishEvent(ChangeEvent.of(ChangeEvent.Type.CREATED, createStudent));
+        return createStudent;
     }
 
     /**
@@ -50,46 +67,67 @@ public class StudentServiceImpl implements StudentService {
      * @return found student, if student not found return {@code null}.
      */
     @Override
+    @Coalesced
+    @Transactional(readOnly = true)
     public Student findStudent(long id) {
         logger.info("Was invoked method for find student by id = {}", id);
-        if (studentRepository.findById(id).isEmpty()){
-            return null;
-        }
-        return studentRepository.findById(id).get();
+        return studentRepository.findById(id).orElse(null);
+    }
+
+    /**
+     * Find students by ids with one query<br>
+     * method is used {@link org.springframework.data.jpa.repository.JpaRepository#findAllById(Iterable)}
+     *
+     * @param ids ids of students, must not be {@code null}
+     * @return found students, students which not found are absent
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Collection<Student> findStudents(Collection<Long> ids) {
+        logger.info("Was invoked method for find students by {} ids", ids.size());
+        return studentRepository.findAllById(ids);
     }
 
     /**
      * Edit the student in the database<br>
-     * method is used {@link org.springframework.data.jpa.repository.JpaRepository#save(Object)}
+     * method is used {@link ru.hogwarts.school.repositories.StudentMutationRepository#updateStudent(Student)},
+     * student is updated by one statement, version of student is checked if it is set
      *
      * @param student edit student, must not be {@code null}
-     * @return edit student, if student not found in database return {@code null}
+     * @return edit student with new version, if student not found in database return {@code null}
+     * @throws ObjectOptimisticLockingFailureException if student was changed after its version was read
      */
     @Override
     public Student editStudent(Student student) {
         logger.info("Was invoked method for edit student");
-        if (studentRepository.findById(student.getId()).isEmpty()){
-            return null;
+        Student editStudent = studentRepository.updateStudent(student).orElse(null);
+        // version is checked in the same statement, so existence is queried only when update failed
+        if (editStudent == null && student.getVersion() != null && studentRepository.existsById(student.getId())) {
+            throw new ObjectOptimisticLockingFailureException(Student.class, student.getId());
+        }
+        if (editStudent != null) {
+            eventPublisher.publishEvent(ChangeEvent.of(ChangeEvent.Type.UPDATED, editStudent));
         }
-        return studentRepository.save(student);
+        return editStudent;
     }
 
     /**
      * Delete a student from the database<br>
-     * method is used {@link org.springframework.data.jpa.repository.JpaRepository#deleteById(Object)}
+     * method is used {@link ru.hogwarts.school.repositories.StudentMutationRepository#deleteStudentById(long)},
+     * student is deleted and returned by one statement
      *
      * @param id must not be {@code null}
      * @return deleted student from database, if student not found in database return {@code null}
      */
     @Override
     public Student deleteStudent(long id) {
-        if (studentRepository.findById(id).isEmpty()){
+        Student deleteStudent = studentRepository.deleteStudentById(id).orElse(null);
+        if (deleteStudent == null) {
             logger.info("Student with id {} is not found", id);
             return null;
         }
-        Student deleteStudent = studentRepository.findById(id).get();
-        studentRepository.deleteById(id);
         logger.info("Student with id = {} is deleted", id);
+        eventPublisher.publishEvent(ChangeEvent.of(ChangeEvent.Type.DELETED, deleteStudent));
         return deleteStudent;
     }
 
@@ -100,6 +138,8 @@ public class StudentServiceImpl implements StudentService {
      * @return All students from database
      */
     @Override
+    @Coalesced
+    @Transactional(readOnly = true)
     public Collection<Student> getAllStudents() {
         logger.info("Was invoked method for get all students");
         return studentRepository.findAll();
@@ -113,6 +153,8 @@ public class StudentServiceImpl implements StudentService {
      * @throws IllegalArgumentException if age <= 0
      */
     @Override
+    @Coalesced
+    @Transactional(readOnly = true)
     public Collection<Student> filterAgeStudents(int age) {
         logger.info("Was invoked method for filter Students by age = {}", age);
         if (age <= 0) {
@@ -132,6 +174,8 @@ public class StudentServiceImpl implements StudentService {
      * @throws IllegalArgumentException if Student age min <= 0 || max <= 0 || max < min
      */
     @Override
+    @Coalesced
+    @Transactional(readOnly = true)
     public Collection<Student> filterAgeStudents(int min, int max) {
         logger.info("Was invoked method for filter Students by age between {} and {} age", min, max);
         if (min <= 0 || max <=0 || max < min){
@@ -147,6 +191,8 @@ public class StudentServiceImpl implements StudentService {
      * @return faculty of student, or return {@code null} when student not found.
      */
     @Override
+    @Coalesced
+    @Transactional(readOnly = true)
     public Faculty findFacultyOfStudent(long id) {
         logger.info("Was invoked method for find faculty of Student by id = {} ", id);
         if (studentRepository.findById(id).isEmpty()){
@@ -161,6 +207,8 @@ public class StudentServiceImpl implements StudentService {
      * @return amount of students
      */
     @Override
+    @Coalesced
+    @Transactional(readOnly = true)
     public long getAmountOfStudents() {
         logger.info("Was invoked method for get amount of students");
         return studentRepository.getAmountOfStudents();
@@ -172,6 +220,8 @@ public class StudentServiceImpl implements StudentService {
      * @return average age
      */
     @Override
+    @Coalesced
+    @Transactional(readOnly = true)
     public double getAverageAge() {
         logger.info("Was invoked method for get average age of students ");
         return studentRepository.getAverageAge();
@@ -183,6 +233,8 @@ public class StudentServiceImpl implements StudentService {
      * @return five last students
      */
     @Override
+    @Coalesced
+    @Transactional(readOnly = true)
     public Collection<Student> getFiveLastStudents() {
         logger.info("Was invoked method for get five last students by id");
         return studentRepository.getFiveLastStudents();
@@ -194,6 +246,8 @@ public class StudentServiceImpl implements StudentService {
      * @return students with name start with 'A' and sorted
      */
     @Override
+    @Coalesced
+    @Transactional(readOnly = true)
     public Collection<String> filterStudentsByOrderStartNameA() {
         return studentRepository.findAll().stream()
                 .filter(s -> s.getName().startsWith("A"))
@@ -208,6 +262,8 @@ public class StudentServiceImpl implements StudentService {
      * @return average age
      */
     @Override
+    @Coalesced
+    @Transactional(readOnly = true)
     public OptionalDouble getAverageAgeWithStream() {
         return studentRepository.findAll().stream()
                 .mapToDouble(s -> (double) s.getAge())
@@ -0,0 +1,81 @@
+package ru.hogwarts.school.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.dto.SyncResult;
+import ru.hogwarts.school.repositories.FacultyRepository;
+import ru.hogwarts.school.repositories.StudentRepository;
+import ru.hogwarts.school.service.SyncService;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Service for incremental sync of students and faculties<br>
+ * every insert, update and delete of student and faculty is written to table {@code change_log} by trigger,
+ * in the same transaction, with id of this transaction. Version of sync is the oldest transaction
+ * which was running when sync was read, so all transactions before version were already committed
+ * and seen by sync. Next sync returns rows changed by transactions from this version, rows of transactions
+ * committed later are not lost, and some rows may be returned again. Sync is read in one snapshot
+ */
+@Service
+public class SyncServiceImpl implements SyncService {
+
+    private static final String VERSION = "SELECT txid_snapshot_xmin(txid_current_snapshot())";
+    private static final String DELETED_IDS = "SELECT DISTINCT c.entity_id FROM change_log c "
+            + "WHERE c.entity = ? AND c.txid >= ? AND NOT EXISTS (SELECT 1 FROM %s e WHERE e.id = c.entity_id)";
+
+    private final StudentRepository studentRepository;
+    private final FacultyRepository facultyRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    Logger logger = LoggerFactory.getLogger(SyncService.class);
+
+    public SyncServiceImpl(StudentRepository studentRepository, FacultyRepository facultyRepository,
+                           JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.studentRepository = studentRepository;
+        this.facultyRepository = facultyRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    /**
+     * Get students and faculties changed since version
+     *
+     * @param since version of previous sync, {@code 0} for the first sync
+     * @return changed and deleted students and faculties, or all of them if {@code since} is {@code 0}
+     * @throws IllegalArgumentException if since < 0
+     */
+    @Override
+    public SyncResult sync(long since) {
+        logger.info("Was invoked method for sync since version {}", since);
+        if (since < 0) {
+            throw new IllegalArgumentException("Version of sync < 0");
+        }
+        return transactionTemplate.execute(status -> {
+            // the first statement takes snapshot of transaction, so version and rows are read from the same one
+            Long version = jdbcTemplate.queryForObject(VERSION, Long.class);
+            if (since == 0) {
+                return new SyncResult(version, true, studentRepository.findAll(), facultyRepository.findAll(),
+                        Collections.emptyList(), Collections.emptyList());
+            }
+            return new SyncResult(version, false,
+                    studentRepository.findChangedSince(since),
+                    facultyRepository.findChangedSince(since),
+                    deletedIds("student", since),
+                    deletedIds("faculty", since));
+        });
+    }
+
+    private Collection<Long> deletedIds(String entity, long since) {
+        return jdbcTemplate.queryForList(String.format(DELETED_IDS, entity), Long.class, entity, since);
+    }
+}
@@ -0,0 +1,69 @@
+package ru.hogwarts.school.startup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Makes beans of packages {@code startup.lazy-packages} lazy, so they are created on first use instead of startup<br>
+ * bean belongs to package by its class, or by class of configuration which declares it.
+ * Only beans which are not needed for serving requests should be lazy, for example documentation of API
+ */
+@Component
+@ConditionalOnProperty(name = "startup.lazy-packages")
+public class LazyPackagesPostProcessor implements BeanFactoryPostProcessor, EnvironmentAware {
+
+    private List<String> packages = List.of();
+
+    Logger logger = LoggerFactory.getLogger(LazyPackagesPostProcessor.class);
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        String[] names = environment.getProperty("startup.lazy-packages", String[].class, new String[0]);
+        packages = List.of(names);
+    }
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+        int lazy = 0;
+        for (String name : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition definition = beanFactory.getBeanDefinition(name);
+            if (definition.isSingleton() && !definition.isLazyInit() && inPackages(classOf(beanFactory, definition))) {
+                definition.setLazyInit(true);
+                lazy++;
+            }
+        }
+        logger.info("{} beans of packages {} are lazy", lazy, packages);
+    }
+
+    private boolean inPackages(String className) {
+        if (className == null) {
+            return false;
+        }
+        for (String prefix : packages) {
+            if (className.startsWith(prefix.trim() + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String classOf(ConfigurableListableBeanFactory beanFactory, BeanDefinition definition) {
+        if (definition.getBeanClassName() != null) {
+            return definition.getBeanClassName();
+        }
+        String factoryBean = definition.getFactoryBeanName();
+        if (factoryBean != null && beanFactory.containsBeanDefinition(factoryBean)) {
+            return beanFactory.getBeanDefinition(factoryBean).getBeanClassName();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,122 @@
+package ru.hogwarts.school.startup;
+
+import liquibase.integration.spring.SpringLiquibase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Skips Liquibase on startup if its change log is not changed since last run, enabled by
+ * {@code startup.liquibase.skip-unchanged}<br>
+ * checksum is SHA-256 of all files in {@code liquibase} folder of classpath, it is saved to table
+ * {@code changelog_checksum} after every successful run of Liquibase. Unchanged change log is checked
+ * by one query instead of locking and reading of {@code databasechangelog} and parsing of change log.
+ * Changes made to database outside of change log are not noticed, as they are not noticed by Liquibase too
+ */
+@Component
+@ConditionalOnProperty(name = "startup.liquibase.skip-unchanged", havingValue = "true")
+public class LiquibaseChecksumPostProcessor implements BeanPostProcessor {
+
+    static final String CHANGE_LOG_FILES = "classpath*:liquibase/**/*.*";
+    private static final String SELECT = "SELECT checksum FROM changelog_checksum WHERE id = 1";
+    private static final String UPSERT = "INSERT INTO changelog_checksum (id, checksum, applied_at) VALUES (1, ?, now()) "
+            + "ON CONFLICT (id) DO UPDATE SET checksum = EXCLUDED.checksum, applied_at = EXCLUDED.applied_at";
+
+    private String checksum;
+    private boolean skipped;
+
+    Logger logger = LoggerFactory.getLogger(LiquibaseChecksumPostProcessor.class);
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof SpringLiquibase) {
+            SpringLiquibase liquibase = (SpringLiquibase) bean;
+            try {
+                checksum = checksumOf(new PathMatchingResourcePatternResolver().getResources(CHANGE_LOG_FILES));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            String applied = appliedChecksum(new JdbcTemplate(liquibase.getDataSource()));
+            if (checksum.equals(applied)) {
+                logger.info("Change log is not changed since last run, Liquibase is skipped");
+                liquibase.setShouldRun(false);
+                skipped = true;
+            }
+        }
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof SpringLiquibase && !skipped) {
+            new JdbcTemplate(((SpringLiquibase) bean).getDataSource()).update(UPSERT, checksum);
+        }
+        return bean;
+    }
+
+    private String appliedChecksum(JdbcTemplate jdbcTemplate) {
+        try {
+            List<String> checksums = jdbcTemplate.queryForList(SELECT, String.class);
+            return checksums.isEmpty() ? null : checksums.get(0);
+        } catch (DataAccessException e) {
+            logger.debug("Checksum of change log is not read: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return hex SHA-256 of paths and contents of resources, in order of paths
+     */
+    static String checksumOf(Resource[] resources) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            Resource[] sorted = resources.clone();
+            Arrays.sort(sorted, Comparator.comparing(LiquibaseChecksumPostProcessor::pathOf));
+            byte[] buffer = new byte[8192];
+            for (Resource resource : sorted) {
+                digest.update(pathOf(resource).getBytes(StandardCharsets.UTF_8));
+                try (InputStream in = new DigestInputStream(resource.getInputStream(), digest)) {
+                    while (in.read(buffer) != -1) {
+                        // digest is updated by stream
+                    }
+                }
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return path of resource from folder {@code liquibase}, the same in jar and in folder of classes
+     */
+    private static String pathOf(Resource resource) {
+        try {
+            String url = resource.getURL().toString();
+            return url.substring(url.lastIndexOf("liquibase/"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ru.hogwarts.school.startup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Logs time from start of JVM until application is ready<br>
+ * with {@code startup.exit-after-start} application exits when it is ready, for training run of AppCDS
+ * archive and for measuring startup, see {@code StartupBenchmark}
+ */
+@Component
+public class StartupTimer {
+
+    static final String READY = "Application is ready in {} ms";
+
+    private final boolean exitAfterStart;
+
+    Logger logger = LoggerFactory.getLogger(StartupTimer.class);
+
+    public StartupTimer(@Value("${startup.exit-after-start:false}") boolean exitAfterStart) {
+        this.exitAfterStart = exitAfterStart;
+    }
+
+    @EventListener
+    public void ready(ApplicationReadyEvent event) {
+        logger.info(READY, ManagementFactory.getRuntimeMXBean().getUptime());
+        if (exitAfterStart) {
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+}
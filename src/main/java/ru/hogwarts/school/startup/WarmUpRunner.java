@@ -0,0 +1,128 @@
+package ru.hogwarts.school.startup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.impl.FacultyServiceImpl;
+import ru.hogwarts.school.service.impl.StudentServiceImpl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Warms up JIT before application reports readiness, enabled by {@code startup.warm-up.enabled}<br>
+ * application runners run before readiness state becomes {@code ACCEPTING_TRAFFIC}, so readiness probe
+ * reports UP only after warm-up. Read methods of services are called with students and faculties found in database,
+ * and their results are serialized by {@link ObjectMapper} of MVC, {@code startup.warm-up.iterations} times
+ * or until {@code startup.warm-up.max-duration-ms}. First round of calls fills query plan cache of Hibernate
+ * with queries of hot paths. Every round runs in its own read-only transaction which is rolled back,
+ * so entities are hydrated from fresh persistence context in every round and connection is not held between rounds,
+ * and calls of services inside transaction are not coalesced, so every call reaches database.
+ * Duration is recorded to timer {@code startup.warm-up}
+ */
+@Component
+@ConditionalOnProperty(name = "startup.warm-up.enabled", havingValue = "true")
+public class WarmUpRunner implements ApplicationRunner {
+
+    private final StudentServiceImpl studentService;
+    private final FacultyServiceImpl facultyService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int iterations;
+    private final long maxDurationNanos;
+
+    Logger logger = LoggerFactory.getLogger(WarmUpRunner.class);
+
+    public WarmUpRunner(StudentServiceImpl studentService,
+                        FacultyServiceImpl facultyService,
+                        ObjectMapper objectMapper,
+                        PlatformTransactionManager transactionManager,
+                        MeterRegistry meterRegistry,
+                        @Value("${startup.warm-up.iterations:1000}") int iterations,
+                        @Value("${startup.warm-up.max-duration-ms:30000}") long maxDurationMillis) {
+        this.studentService = studentService;
+        this.facultyService = facultyService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.meterRegistry = meterRegistry;
+        this.iterations = iterations;
+        this.maxDurationNanos = TimeUnit.MILLISECONDS.toNanos(maxDurationMillis);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        int done = warmUp(start);
+        long nanos = System.nanoTime() - start;
+        meterRegistry.timer("startup.warm-up").record(nanos, TimeUnit.NANOSECONDS);
+        logger.info("Warm-up made {} iterations in {} ms", done, TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    private int warmUp(long start) {
+        List<Supplier<Object>> calls = inRolledBackTransaction(this::calls);
+        int iteration = 0;
+        while (iteration < iterations && System.nanoTime() - start < maxDurationNanos) {
+            inRolledBackTransaction(() -> {
+                for (Supplier<Object> call : calls) {
+                    try {
+                        objectMapper.writeValueAsBytes(call.get());
+                    } catch (JsonProcessingException | RuntimeException e) {
+                        logger.debug("Warm-up call failed: {}", e.getMessage());
+                    }
+                }
+                return null;
+            });
+            iteration++;
+        }
+        return iteration;
+    }
+
+    private <T> T inRolledBackTransaction(Supplier<T> action) {
+        return transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            return action.get();
+        });
+    }
+
+    /**
+     * Calls of hot read methods with arguments which find something in database,
+     * arguments are copied from entities, so calls do not touch entities of other persistence context.
+     * Only calls which read a few rows are made: filters by age, students of faculty, count and average
+     * of students read the whole table of students, which can have millions of rows
+     */
+    private List<Supplier<Object>> calls() {
+        Collection<Student> students = studentService.getFiveLastStudents();
+        List<Supplier<Object>> calls = new ArrayList<>();
+        calls.add(studentService::getFiveLastStudents);
+        calls.add(facultyService::longestNameOfFaculty);
+        for (Student student : students) {
+            long id = student.getId();
+            calls.add(() -> studentService.findStudent(id));
+            calls.add(() -> studentService.findFacultyOfStudent(id));
+            Faculty faculty = student.getFaculty();
+            if (faculty != null) {
+                long facultyId = faculty.getId();
+                String color = faculty.getColor();
+                calls.add(() -> facultyService.findFaculty(facultyId));
+                calls.add(() -> facultyService.filterFacultiesByColor(color));
+            }
+        }
+        return calls;
+    }
+}
@@ -44,4 +44,124 @@ INSERT INTO faculty (id, name, color) VALUES (2, 'mag', 'red');
 CREATE INDEX student_name_index ON student (name);
 
 -- changeSet Serge:7
-CREATE INDEX faculty_name_and_color_index ON faculty (name, color);
\ No newline at end of file
+CREATE INDEX faculty_name_and_color_index ON faculty (name, color);
+
+-- changeSet Serge:8
+CREATE TABLE preview_backfill(
+                        name            text        NOT NULL    PRIMARY KEY,
+                        status          text        NOT NULL,
+                        last_avatar_id  bigint      NOT NULL,
+                        processed       bigint      NOT NULL,
+                        failed          bigint      NOT NULL,
+                        started_at      timestamp   NOT NULL,
+                        updated_at      timestamp   NOT NULL
+);
+
+-- changeSet Serge:9
+ALTER TABLE student ADD COLUMN version bigint NOT NULL DEFAULT 0;
+ALTER TABLE faculty ADD COLUMN version bigint NOT NULL DEFAULT 0;
+
+-- changeSet Serge:10
+CREATE TABLE change_log(
+                        version     bigserial   NOT NULL    PRIMARY KEY,
+                        txid        bigint      NOT NULL    DEFAULT txid_current(),
+                        entity      text        NOT NULL,
+                        entity_id   bigint      NOT NULL,
+                        operation   text        NOT NULL,
+                        changed_at  timestamp   NOT NULL    DEFAULT now()
+);
+CREATE INDEX change_log_txid_index ON change_log (txid);
+
+-- changeSet Serge:11 splitStatements:false
+CREATE FUNCTION log_change() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        INSERT INTO change_log (entity, entity_id, operation) VALUES (TG_TABLE_NAME, OLD.id, TG_OP);
+        RETURN OLD;
+    END IF;
+    INSERT INTO change_log (entity, entity_id, operation) VALUES (TG_TABLE_NAME, NEW.id, TG_OP);
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+-- changeSet Serge:12
+CREATE TRIGGER student_change_log AFTER INSERT OR UPDATE OR DELETE ON student
+    FOR EACH ROW EXECUTE PROCEDURE log_change();
+CREATE TRIGGER faculty_change_log AFTER INSERT OR UPDATE OR DELETE ON faculty
+    FOR EACH ROW EXECUTE PROCEDURE log_change();
+
+-- changeSet Serge:13
+CREATE TABLE changelog_checksum(
+                        id          int         NOT NULL    PRIMARY KEY,
+                        checksum    text        NOT NULL,
+                        applied_at  timestamp   NOT NULL    DEFAULT now()
+);
+
+-- changeSet Serge:14
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX student_name_trgm_index ON student USING gin (name gin_trgm_ops);
+CREATE INDEX faculty_name_trgm_index ON faculty USING gin (name gin_trgm_ops);
+
+-- changeSet Serge:15 splitStatements:false
+CREATE OR REPLACE FUNCTION log_change() RETURNS trigger AS $$
+DECLARE
+    changed_entity text := COALESCE(TG_ARGV[0], TG_TABLE_NAME);
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        INSERT INTO change_log (entity, entity_id, operation) VALUES (changed_entity, OLD.id, TG_OP);
+        RETURN OLD;
+    END IF;
+    INSERT INTO change_log (entity, entity_id, operation) VALUES (changed_entity, NEW.id, TG_OP);
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+-- changeSet Serge:16
+CREATE TABLE student_partitioned(
+                        id          bigint                NOT NULL,
+                        name        text                  NOT NULL,
+                        age         int CHECK (age > 0)   NOT NULL,
+                        faculty_id  int                   NOT NULL,
+                        version     bigint                NOT NULL    DEFAULT 0,
+                        CONSTRAINT student_partitioned_pkey PRIMARY KEY (id, faculty_id)
+) PARTITION BY HASH (faculty_id);
+CREATE TABLE student_p0 PARTITION OF student_partitioned FOR VALUES WITH (MODULUS 8, REMAINDER 0);
+CREATE TABLE student_p1 PARTITION OF student_partitioned FOR VALUES WITH (MODULUS 8, REMAINDER 1);
+CREATE TABLE student_p2 PARTITION OF student_partitioned FOR VALUES WITH (MODULUS 8, REMAINDER 2);
+CREATE TABLE student_p3 PARTITION OF student_partitioned FOR VALUES WITH (MODULUS 8, REMAINDER 3);
+CREATE TABLE student_p4 PARTITION OF student_partitioned FOR VALUES WITH (MODULUS 8, REMAINDER 4);
+CREATE TABLE student_p5 PARTITION OF student_partitioned FOR VALUES WITH (MODULUS 8, REMAINDER 5);
+CREATE TABLE student_p6 PARTITION OF student_partitioned FOR VALUES WITH (MODULUS 8, REMAINDER 6);
+CREATE TABLE student_p7 PARTITION OF student_partitioned FOR VALUES WITH (MODULUS 8, REMAINDER 7);
+INSERT INTO student_partitioned (id, name, age, faculty_id, version)
+    SELECT id, name, age, faculty_id, version FROM student;
+ALTER SEQUENCE student_id_seq OWNED BY NONE;
+DROP TABLE student;
+ALTER TABLE student_partitioned RENAME TO student;
+ALTER INDEX student_partitioned_pkey RENAME TO student_pkey;
+ALTER TABLE student ALTER COLUMN id SET DEFAULT nextval('student_id_seq');
+ALTER SEQUENCE student_id_seq OWNED BY student.id;
+CREATE INDEX student_name_index ON student (name);
+CREATE INDEX student_name_trgm_index ON student USING gin (name gin_trgm_ops);
+CREATE INDEX student_faculty_id_index ON student (faculty_id);
+CREATE TRIGGER student_change_log AFTER INSERT OR UPDATE OR DELETE ON student
+    FOR EACH ROW EXECUTE PROCEDURE log_change('student');
+
+-- changeSet Serge:17
+ALTER TABLE preview_backfill ADD COLUMN skipped bigint NOT NULL DEFAULT 0;
+
+-- changeSet Serge:18
+-- version of avatar guards previews written by backfill, owner and lease let one instance run the backfill
+ALTER TABLE avatar ADD COLUMN version bigint NOT NULL DEFAULT 0;
+ALTER TABLE preview_backfill ADD COLUMN owner text;
+ALTER TABLE preview_backfill ADD COLUMN lease_until timestamp;
+
+-- changeSet Serge:19
+-- primary key of partitioned student is (id, faculty_id), so id alone is unique only if every writer takes it
+-- from one sequence: Hibernate, group commit and CSV import take hibernate_sequence, so default of id takes it too.
+-- Id given by writer itself is not checked against other partitions, and lookup by id alone probes all 8 of them
+CREATE SEQUENCE IF NOT EXISTS hibernate_sequence;
+SELECT setval('hibernate_sequence', GREATEST((SELECT last_value FROM hibernate_sequence),
+    (SELECT last_value FROM student_id_seq), (SELECT COALESCE(MAX(id), 1) FROM student)));
+ALTER TABLE student ALTER COLUMN id SET DEFAULT nextval('hibernate_sequence');
+DROP SEQUENCE student_id_seq;
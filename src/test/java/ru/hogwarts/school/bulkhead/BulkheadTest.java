@@ -0,0 +1,141 @@
+package ru.hogwarts.school.bulkhead;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BulkheadTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void interactiveCallsAreTakenFromQueueBeforeBulkCalls() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("read", 1, 10, 10_000, 1, 1000, meterRegistry);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        Bulkhead.Permit running = bulkhead.enter(Bulkhead.Priority.BULK);
+        Future<?> bulk = enterLater(bulkhead, Bulkhead.Priority.BULK, "bulk", order);
+        awaitQueued(bulkhead, 1);
+        Future<?> interactive = enterLater(bulkhead, Bulkhead.Priority.INTERACTIVE, "interactive", order);
+        awaitQueued(bulkhead, 2);
+        running.close();
+
+        bulk.get(10, TimeUnit.SECONDS);
+        interactive.get(10, TimeUnit.SECONDS);
+        assertThat(order).containsExactly("interactive", "bulk");
+        assertThat(bulkhead.getActive()).isZero();
+    }
+
+    @Test
+    public void callsOverQueueOrWaitAreRejected() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("avatar", 1, 1, 200, 1, 1000, meterRegistry);
+
+        Bulkhead.Permit permit = bulkhead.enter(Bulkhead.Priority.BULK);
+        try {
+            Future<?> waiting = enterLater(bulkhead, Bulkhead.Priority.BULK, "waiting", new CopyOnWriteArrayList<>());
+            awaitQueued(bulkhead, 1);
+            assertThatThrownBy(() -> bulkhead.enter(Bulkhead.Priority.INTERACTIVE))
+                    .isInstanceOf(RejectedExecutionException.class);
+            assertThatThrownBy(() -> waiting.get(10, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(RejectedExecutionException.class);
+        } finally {
+            permit.close();
+        }
+        assertThat(bulkhead.getQueued()).isZero();
+        assertThat(meterRegistry.get("bulkhead.rejected").tag("bulkhead", "avatar").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    public void connectionsOfBulkheadAreLimitedByItsShare() throws Exception {
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        BulkheadDataSource dataSource = new BulkheadDataSource(target);
+        Bulkhead bulkhead = new Bulkhead("write", 10, 10, 1000, 2, 50, meterRegistry);
+
+        Bulkhead.Permit permit = bulkhead.enter(Bulkhead.Priority.BULK);
+        try {
+            Connection first = dataSource.getConnection();
+            Connection second = dataSource.getConnection();
+            assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+            assertThat(meterRegistry.get("bulkhead.connections.active").gauge().value()).isEqualTo(2);
+
+            first.close();
+            first.close();
+            dataSource.getConnection().close();
+            second.close();
+        } finally {
+            permit.close();
+        }
+        assertThat(meterRegistry.get("bulkhead.connections.active").gauge().value()).isZero();
+        // connections outside of bulkheads are not limited
+        for (int i = 0; i < 3; i++) {
+            assertThat(dataSource.getConnection()).isNotNull();
+        }
+    }
+
+    @Test
+    public void connectionsOfBulkheadFollowSizeOfPool() throws Exception {
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        BulkheadDataSource dataSource = new BulkheadDataSource(target);
+        AtomicInteger poolSize = new AtomicInteger(2);
+        Bulkhead bulkhead = new Bulkhead("read", 10, 10, 1000, poolSize::get, 50, meterRegistry);
+
+        Bulkhead.Permit permit = bulkhead.enter(Bulkhead.Priority.BULK);
+        try {
+            Connection first = dataSource.getConnection();
+            Connection second = dataSource.getConnection();
+            assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+
+            poolSize.set(3);
+            Connection third = dataSource.getConnection();
+            poolSize.set(1);
+            first.close();
+            second.close();
+            assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+            third.close();
+            dataSource.getConnection().close();
+        } finally {
+            permit.close();
+        }
+        assertThat(meterRegistry.get("bulkhead.connections.active").gauge().value()).isZero();
+    }
+
+    private Future<?> enterLater(Bulkhead bulkhead, Bulkhead.Priority priority, String name, List<String> order) {
+        return executor.submit(() -> {
+            Bulkhead.Permit permit = bulkhead.enter(priority);
+            try {
+                order.add(name);
+            } finally {
+                permit.close();
+            }
+            return null;
+        });
+    }
+
+    private static void awaitQueued(Bulkhead bulkhead, int queued) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (bulkhead.getQueued() < queued && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(bulkhead.getQueued()).isEqualTo(queued);
+    }
+}
@@ -0,0 +1,106 @@
+package ru.hogwarts.school.coalescing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private static final int CALLERS = 32;
+
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final AtomicInteger executions = new AtomicInteger();
+    private final List<Integer> finishedCallers = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void concurrentCallsOfSameKeyShareOneExecution() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<Object>> results = callConcurrently(CALLERS, i -> "student-1", () -> {
+            executions.incrementAndGet();
+            release.await();
+            return "Garry";
+        }, release);
+
+        for (Future<Object> result : results) {
+            assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo("Garry");
+        }
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(finishedCallers).containsExactly(CALLERS);
+        assertThat(singleFlight.size()).isZero();
+    }
+
+    @Test
+    public void callsOfDifferentKeysAreNotShared() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<Object>> results = callConcurrently(4, i -> "student-" + i, () -> {
+            executions.incrementAndGet();
+            release.await();
+            return "Garry";
+        }, release);
+
+        for (Future<Object> result : results) {
+            assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo("Garry");
+        }
+        assertThat(executions.get()).isEqualTo(4);
+        assertThat(finishedCallers).containsOnly(1);
+    }
+
+    @Test
+    public void exceptionIsSharedAndKeyIsReleased() throws Throwable {
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<Object>> results = callConcurrently(CALLERS, i -> "student-1", () -> {
+            executions.incrementAndGet();
+            release.await();
+            throw new IllegalArgumentException("Student is not found");
+        }, release);
+
+        for (Future<Object> result : results) {
+            assertThatThrownBy(() -> result.get(10, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(IllegalArgumentException.class);
+        }
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(singleFlight.execute("student-1", () -> "Garry", callers -> { })).isEqualTo("Garry");
+    }
+
+    /**
+     * Start callers, wait until all of them either lead or join execution, and release execution
+     */
+    private List<Future<Object>> callConcurrently(int callers, IntFunction<Object> keys, SingleFlight.Execution execution,
+                                                  CountDownLatch release) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        AtomicInteger joined = new AtomicInteger();
+        List<Future<Object>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            Object key = keys.apply(i);
+            results.add(executor.submit(() -> {
+                joined.incrementAndGet();
+                try {
+                    return singleFlight.execute(key, execution, finishedCallers::add);
+                } catch (Exception | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+        }
+        while (joined.get() < callers) {
+            Thread.sleep(1);
+        }
+        // followers increment callers of flight right after they are counted as joined
+        Thread.sleep(100);
+        release.countDown();
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+        return results;
+    }
+}
@@ -0,0 +1,168 @@
+package ru.hogwarts.school.controller;
+
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repositories.FacultyRepository;
+import ru.hogwarts.school.repositories.StudentRepository;
+import ru.hogwarts.school.service.impl.BatchServiceImpl;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = BatchController.class)
+class BatchControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    StudentRepository studentRepository;
+
+    @MockBean
+    FacultyRepository facultyRepository;
+
+    @MockBean
+    PlatformTransactionManager transactionManager;
+
+    @SpyBean
+    private BatchServiceImpl batchService;
+
+    private final static String LOCAL_URL = "http://localhost:8080/batch";
+    private final static Long FACULTY_ID = 1L;
+    private final static Long STUDENT_ID = 2L;
+
+    private Faculty faculty;
+    private Student student;
+
+    @BeforeEach
+    public void startData() {
+        faculty = new Faculty();
+        faculty.setId(FACULTY_ID);
+        faculty.setName("holly");
+        faculty.setColor("white");
+        faculty.setVersion(4L);
+        student = new Student();
+        student.setId(STUDENT_ID);
+        student.setName("Gendalf");
+        student.setAge(21);
+        student.setFaculty(faculty);
+        student.setVersion(0L);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(studentRepository.save(any(Student.class))).thenAnswer(invocation -> {
+            Student saved = invocation.getArgument(0);
+            saved.setId(10L);
+            saved.setVersion(0L);
+            return saved;
+        });
+    }
+
+    @Test
+    public void executeBatch() throws Exception {
+        when(facultyRepository.findAllById(anyIterable())).thenReturn(List.of(faculty));
+        when(studentRepository.findAllById(anyIterable())).thenReturn(List.of(student));
+
+        JSONArray operations = new JSONArray();
+        operations.add(operation("CREATE", "STUDENT", Map.of("name", "Garry", "age", 15, "faculty", Map.of("id", FACULTY_ID))));
+        operations.add(operation("EDIT", "FACULTY", Map.of("id", FACULTY_ID, "name", "mag", "color", "red", "version", 4)));
+        JSONObject delete = operation("DELETE", "STUDENT", null);
+        delete.put("id", STUDENT_ID);
+        operations.add(delete);
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post(LOCAL_URL)
+                        .content(operations.toString())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.committed").value(true))
+                .andExpect(jsonPath("$.results[0].status").value("OK"))
+                .andExpect(jsonPath("$.results[0].id").value(10))
+                .andExpect(jsonPath("$.results[1].status").value("OK"))
+                .andExpect(jsonPath("$.results[1].id").value(FACULTY_ID))
+                .andExpect(jsonPath("$.results[2].status").value("OK"))
+                .andExpect(jsonPath("$.results[2].id").value(STUDENT_ID));
+
+        verify(studentRepository).save(any(Student.class));
+        verify(studentRepository).delete(student);
+        verify(studentRepository).flush();
+    }
+
+    @Test
+    public void executeBatchWithFailedOperation() throws Exception {
+        when(facultyRepository.findAllById(anyIterable())).thenReturn(List.of(faculty));
+
+        JSONArray operations = new JSONArray();
+        operations.add(operation("CREATE", "STUDENT", Map.of("name", "Garry", "age", 15, "faculty", Map.of("id", FACULTY_ID))));
+        operations.add(operation("EDIT", "FACULTY", Map.of("id", FACULTY_ID, "name", "mag", "color", "red", "version", 3)));
+        operations.add(operation("CREATE", "STUDENT", Map.of("name", "Olga", "age", 0, "faculty", Map.of("id", FACULTY_ID))));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post(LOCAL_URL)
+                        .content(operations.toString())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.committed").value(false))
+                .andExpect(jsonPath("$.results[0].status").value("ROLLED_BACK"))
+                .andExpect(jsonPath("$.results[1].status").value("CONFLICT"))
+                .andExpect(jsonPath("$.results[2].status").value("INVALID"));
+
+        verify(studentRepository, never()).flush();
+    }
+
+    @Test
+    public void executeBatchWithStudentOfMissingFaculty() throws Exception {
+        when(facultyRepository.findAllById(anyIterable())).thenReturn(List.of());
+
+        JSONArray operations = new JSONArray();
+        operations.add(operation("CREATE", "STUDENT", Map.of("name", "Garry", "age", 15, "faculty", Map.of("id", 42))));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post(LOCAL_URL)
+                        .content(operations.toString())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.committed").value(false))
+                .andExpect(jsonPath("$.results[0].status").value("NOT_FOUND"));
+
+        verify(studentRepository, never()).save(any(Student.class));
+    }
+
+    @Test
+    public void executeEmptyBatch() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post(LOCAL_URL)
+                        .content("[]")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static JSONObject operation(String type, String entity, Map<String, ?> payload) {
+        JSONObject operation = new JSONObject();
+        operation.put("type", type);
+        operation.put("entity", entity);
+        if (payload != null) {
+            operation.put(entity.toLowerCase(), payload);
+        }
+        return operation;
+    }
+}
@@ -0,0 +1,160 @@
+package ru.hogwarts.school.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import ru.hogwarts.school.dto.ChangeEvent;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.impl.ChangeFeedServiceImpl;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doThrow;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = ChangeFeedController.class)
+class ChangeFeedControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @SpyBean
+    private ChangeFeedServiceImpl changeFeedService;
+
+    private final static String LOCAL_URL = "http://localhost:8080/changes";
+
+    @TestConfiguration
+    static class MetricsConfiguration {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Test
+    public void subscriberGetsChangesInOrder() throws Exception {
+        MockHttpServletResponse response = subscribe(null);
+
+        changeFeedService.publish(ChangeEvent.of(ChangeEvent.Type.CREATED, student(10L, "Garry")));
+        changeFeedService.publish(ChangeEvent.of(ChangeEvent.Type.UPDATED, faculty()));
+        changeFeedService.publish(ChangeEvent.of(ChangeEvent.Type.DELETED, student(10L, "Garry")));
+
+        String events = awaitEvents(response, 3);
+        assertThat(events).containsSubsequence(
+                "event:student.created", "\"name\":\"Garry\"",
+                "event:faculty.updated", "\"color\":\"red\"",
+                "event:student.deleted");
+    }
+
+    @Test
+    public void reconnectedSubscriberGetsMissedChanges() throws Exception {
+        MockHttpServletResponse first = subscribe(null);
+        changeFeedService.publish(ChangeEvent.of(ChangeEvent.Type.CREATED, student(11L, "Olga")));
+        String lastEventId = lastEventId(awaitEvents(first, 1));
+
+        changeFeedService.publish(ChangeEvent.of(ChangeEvent.Type.CREATED, student(12L, "Kate")));
+        changeFeedService.publish(ChangeEvent.of(ChangeEvent.Type.CREATED, student(13L, "Helen")));
+        MockHttpServletResponse second = subscribe(lastEventId);
+
+        String events = awaitEvents(second, 2);
+        assertThat(events).doesNotContain("Olga");
+        assertThat(events).containsSubsequence("Kate", "Helen");
+    }
+
+    @Test
+    public void subscriberWithUnknownLastEventIdIsReset() throws Exception {
+        MockHttpServletResponse response = subscribe("previous-run-42");
+
+        String events = awaitEvents(response, 1);
+        assertThat(events).contains("event:reset");
+    }
+
+    @Test
+    public void subscriberOverLimitIsRejected() throws Exception {
+        doThrow(new IllegalStateException("Too many subscribers of changes"))
+                .when(changeFeedService).subscribe(isNull());
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(LOCAL_URL)
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    private MockHttpServletResponse subscribe(String lastEventId) throws Exception {
+        MockHttpServletRequestBuilder builder = MockMvcRequestBuilders
+                .get(LOCAL_URL)
+                .accept(MediaType.TEXT_EVENT_STREAM);
+        if (lastEventId != null) {
+            builder.header("Last-Event-ID", lastEventId);
+        }
+        MvcResult result = mockMvc.perform(builder)
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return result.getResponse();
+    }
+
+    private static String awaitEvents(MockHttpServletResponse response, int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        String content = response.getContentAsString();
+        while (countOf(content, "\nevent:") < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            content = response.getContentAsString();
+        }
+        assertThat(countOf(content, "\nevent:")).isGreaterThanOrEqualTo(count);
+        return content;
+    }
+
+    private static int countOf(String content, String part) {
+        int count = 0;
+        for (int i = content.indexOf(part); i >= 0; i = content.indexOf(part, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static String lastEventId(String content) {
+        Matcher matcher = Pattern.compile("id:(\\S+)").matcher(content);
+        String id = null;
+        while (matcher.find()) {
+            id = matcher.group(1);
+        }
+        return id;
+    }
+
+    private static Student student(long id, String name) {
+        Student student = new Student();
+        student.setId(id);
+        student.setName(name);
+        student.setAge(17);
+        student.setFaculty(faculty());
+        student.setVersion(0L);
+        return student;
+    }
+
+    private static Faculty faculty() {
+        Faculty faculty = new Faculty();
+        faculty.setId(2L);
+        faculty.setName("mag");
+        faculty.setColor("red");
+        faculty.setVersion(1L);
+        return faculty;
+    }
+}
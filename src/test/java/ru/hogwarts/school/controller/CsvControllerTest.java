@@ -0,0 +1,87 @@
+package ru.hogwarts.school.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import ru.hogwarts.school.service.impl.CsvServiceImpl;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = CsvController.class)
+class CsvControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CsvServiceImpl csvService;
+
+    private final static String LOCAL_URL = "http://localhost:8080/csv";
+    private final static String STUDENTS = "name,age,faculty_id\nGarry,15,2\nOlga,19,1\n";
+
+    @Test
+    public void importStudents() throws Exception {
+        when(csvService.importStudents(any(InputStream.class))).thenAnswer(invocation -> {
+            String csv = new String(invocation.<InputStream>getArgument(0).readAllBytes(), StandardCharsets.UTF_8);
+            return csv.lines().skip(1).count();
+        });
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post(LOCAL_URL + "/student")
+                        .content(STUDENTS)
+                        .contentType("text/csv"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("2"));
+    }
+
+    @Test
+    public void importInvalidStudents() throws Exception {
+        when(csvService.importStudents(any(InputStream.class)))
+                .thenThrow(new IllegalArgumentException("Invalid students in lines [3]"));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post(LOCAL_URL + "/student")
+                        .content("name,age,faculty_id\nGarry,15,2\nOlga,0,1\n")
+                        .contentType("text/csv"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Invalid students in lines [3]"));
+    }
+
+    @Test
+    public void importMalformedFaculties() throws Exception {
+        when(csvService.importFaculties(any(InputStream.class)))
+                .thenThrow(new DataIntegrityViolationException("missing data for column \"color\""));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post(LOCAL_URL + "/faculty")
+                        .content("name,color\nholly\n")
+                        .contentType("text/csv"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void exportStudents() throws Exception {
+        when(csvService.exportStudents(any(OutputStream.class))).thenAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0)
+                    .write("id,name,age,faculty_id\n1,Gnom,17,1\n".getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        });
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(LOCAL_URL + "/student"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"students.csv\""))
+                .andExpect(content().string("id,name,age,faculty_id\n1,Gnom,17,1\n"));
+    }
+}
@@ -9,12 +9,17 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repositories.FacultyRepository;
+import ru.hogwarts.school.repositories.StudentRepository;
 import ru.hogwarts.school.service.impl.FacultyServiceImpl;
+import ru.hogwarts.school.service.impl.FuzzySearchServiceImpl;
 
 import java.util.*;
 
@@ -25,6 +30,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = FacultyController.class)
+@TestPropertySource(properties = "search.fuzzy.engine=ngram")
 class FacultyControllerTest {
 
     @Autowired
@@ -33,6 +39,18 @@ class FacultyControllerTest {
     @MockBean
     FacultyRepository facultyRepository;
 
+    @MockBean
+    StudentRepository studentRepository;
+
+    @MockBean
+    JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    PlatformTransactionManager transactionManager;
+
+    @SpyBean
+    private FuzzySearchServiceImpl fuzzySearchService;
+
     @SpyBean
     private FacultyServiceImpl facultyService;
 
@@ -104,8 +122,7 @@ class FacultyControllerTest {
 
     @Test
     public void editFaculty() throws Exception {
-        when(facultyRepository.save(any(Faculty.class))).thenReturn(FACULTY);
-        when(facultyRepository.findById(any(Long.class))).thenReturn(Optional.of(FACULTY));
+        when(facultyRepository.updateFaculty(any(Faculty.class))).thenReturn(Optional.of(FACULTY));
         mockMvc.perform(MockMvcRequestBuilders
                         .put(LOCAL_URL)
                         .content(facultyObject.toString())
@@ -119,7 +136,7 @@ class FacultyControllerTest {
 
     @Test
     public void editFacultyIfNotFound() throws Exception {
-        when(facultyRepository.findById(any(Long.class))).thenReturn(Optional.empty());
+        when(facultyRepository.updateFaculty(any(Faculty.class))).thenReturn(Optional.empty());
         mockMvc.perform(MockMvcRequestBuilders
                         .put(LOCAL_URL)
                         .content(facultyObject.toString())
@@ -128,9 +145,22 @@ class FacultyControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    public void editFacultyWithChangedVersion() throws Exception {
+        facultyObject.put("version", 3);
+        when(facultyRepository.updateFaculty(any(Faculty.class))).thenReturn(Optional.empty());
+        when(facultyRepository.existsById(ID)).thenReturn(true);
+        mockMvc.perform(MockMvcRequestBuilders
+                        .put(LOCAL_URL)
+                        .content(facultyObject.toString())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isConflict());
+    }
+
     @Test
     public void deleteFaculty() throws Exception {
-        when(facultyRepository.findById(any(Long.class))).thenReturn(Optional.of(FACULTY));
+        when(facultyRepository.deleteFacultyById(ID)).thenReturn(Optional.of(FACULTY));
         mockMvc.perform(MockMvcRequestBuilders
                         .delete(LOCAL_URL + ID)
                         .content(facultyObject.toString())
@@ -144,7 +174,7 @@ class FacultyControllerTest {
 
     @Test
     public void deleteFacultyIfNotFound() throws Exception {
-        when(facultyRepository.findById(any(Long.class))).thenReturn(Optional.empty());
+        when(facultyRepository.deleteFacultyById(ID)).thenReturn(Optional.empty());
         mockMvc.perform(MockMvcRequestBuilders
                         .delete(LOCAL_URL + ID)
                         .content(facultyObject.toString())
@@ -153,4 +183,27 @@ class FacultyControllerTest {
                 .andExpect(status().isNotFound());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void searchFacultiesByPartOfName() throws Exception {
+        Faculty slytherin = new Faculty();
+        slytherin.setId(2L);
+        slytherin.setName("Slytherin");
+        slytherin.setColor("green");
+        when(facultyRepository.findAll()).thenReturn(List.of(FACULTY, slytherin));
+        when(facultyRepository.findAllById(any())).thenReturn(List.of(slytherin));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(LOCAL_URL + "search/fuzzy")
+                        .param("query", "slyther")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].item.name").value("Slytherin"))
+                .andExpect(jsonPath("$[0].similarity").isNumber());
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(LOCAL_URL + "search/fuzzy")
+                        .param("query", " "))
+                .andExpect(status().isBadRequest());
+    }
+}
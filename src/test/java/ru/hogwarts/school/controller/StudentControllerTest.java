@@ -1,5 +1,6 @@
 package ru.hogwarts.school.controller;
 
+import com.jayway.jsonpath.JsonPath;
 import net.minidev.json.JSONObject;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -8,25 +9,64 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.hogwarts.school.model.Avatar;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repositories.AvatarRepository;
+import ru.hogwarts.school.repositories.FacultyRepository;
 import ru.hogwarts.school.repositories.StudentRepository;
 import ru.hogwarts.school.service.impl.AvatarServiceImpl;
+import ru.hogwarts.school.service.impl.AvatarUploadServiceImpl;
+import ru.hogwarts.school.service.impl.FuzzySearchServiceImpl;
+import ru.hogwarts.school.service.impl.PreviewServiceImpl;
 import ru.hogwarts.school.service.impl.StudentServiceImpl;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = StudentController.class)
+@TestPropertySource(properties = {
+        "avatars.dir.path=target/test-avatars",
+        "avatars.preview.max-pixels=100000",
+        "avatars.upload.max-size=100000",
+        "search.fuzzy.engine=ngram"
+})
 class StudentControllerTest {
 
     @Autowired
@@ -38,6 +78,15 @@ class StudentControllerTest {
     @MockBean
     AvatarRepository avatarRepository;
 
+    @MockBean
+    PlatformTransactionManager transactionManager;
+
+    @MockBean
+    FacultyRepository facultyRepository;
+
+    @MockBean
+    JdbcTemplate jdbcTemplate;
+
     @SpyBean
     private StudentServiceImpl facultyService;
 
@@ -45,6 +94,15 @@ class StudentControllerTest {
     @SpyBean
     private AvatarServiceImpl avatarService;
 
+    @SpyBean
+    private AvatarUploadServiceImpl avatarUploadService;
+
+    @SpyBean
+    private PreviewServiceImpl previewService;
+
+    @SpyBean
+    private FuzzySearchServiceImpl fuzzySearchService;
+
     @InjectMocks
     private StudentController studentController;
 
@@ -116,8 +174,7 @@ class StudentControllerTest {
 
     @Test
     public void editStudent() throws Exception {
-        when(studentRepository.save(any(Student.class))).thenReturn(STUDENT);
-        when(studentRepository.findById(any(Long.class))).thenReturn(Optional.of(STUDENT));
+        when(studentRepository.updateStudent(any(Student.class))).thenReturn(Optional.of(STUDENT));
         mockMvc.perform(MockMvcRequestBuilders
                         .put(LOCAL_URL)
                         .content(studentObject.toString())
@@ -132,7 +189,7 @@ class StudentControllerTest {
 
     @Test
     public void editStudentIfNotFound() throws Exception {
-        when(studentRepository.findById(any(Long.class))).thenReturn(Optional.empty());
+        when(studentRepository.updateStudent(any(Student.class))).thenReturn(Optional.empty());
         mockMvc.perform(MockMvcRequestBuilders
                         .put(LOCAL_URL)
                         .content(studentObject.toString())
@@ -141,9 +198,22 @@ class StudentControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    public void editStudentWithChangedVersion() throws Exception {
+        studentObject.put("version", 3);
+        when(studentRepository.updateStudent(any(Student.class))).thenReturn(Optional.empty());
+        when(studentRepository.existsById(ID)).thenReturn(true);
+        mockMvc.perform(MockMvcRequestBuilders
+                        .put(LOCAL_URL)
+                        .content(studentObject.toString())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isConflict());
+    }
+
     @Test
     public void deleteStudent() throws Exception {
-        when(studentRepository.findById(any(Long.class))).thenReturn(Optional.of(STUDENT));
+        when(studentRepository.deleteStudentById(ID)).thenReturn(Optional.of(STUDENT));
         mockMvc.perform(MockMvcRequestBuilders
                         .delete(LOCAL_URL + ID)
                         .content(studentObject.toString())
@@ -158,7 +228,7 @@ class StudentControllerTest {
 
     @Test
     public void deleteStudentIfNotFound() throws Exception {
-        when(studentRepository.findById(any(Long.class))).thenReturn(Optional.empty());
+        when(studentRepository.deleteStudentById(ID)).thenReturn(Optional.empty());
         mockMvc.perform(MockMvcRequestBuilders
                         .delete(LOCAL_URL + ID)
                         .content(studentObject.toString())
@@ -167,4 +237,463 @@ class StudentControllerTest {
                 .andExpect(status().isNotFound());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void searchStudentsByMisspelledName() throws Exception {
+        List<Student> students = List.of(studentOf(1L, "Garry Potter"), studentOf(2L, "Hermione Granger"),
+                studentOf(3L, "Ron Weasley"), studentOf(4L, "Harry Potter"));
+        when(studentRepository.findAll()).thenReturn(students);
+        when(studentRepository.findAllById(any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return students.stream().filter(s -> ids.contains(s.getId())).collect(Collectors.toList());
+        });
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(LOCAL_URL + "search/fuzzy")
+                        .param("query", "Gary Poter")
+                        .param("limit", "2")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].item.id").value(1))
+                .andExpect(jsonPath("$[0].item.name").value("Garry Potter"))
+                .andExpect(jsonPath("$[1].item.id").value(4));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(LOCAL_URL + "search/fuzzy")
+                        .param("query", "Gary")
+                        .param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void importAvatars() throws Exception {
+        when(studentRepository.findAllById(anyCollection())).thenReturn(List.of(STUDENT));
+        when(avatarRepository.findByStudentIdIn(anyCollection())).thenReturn(List.of());
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post(LOCAL_URL + "avatars/import")
+                        .content(zipOf(Map.of(ID + ".png", imageOf("png"), "readme.txt", new byte[]{1})))
+                        .contentType("application/zip")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[?(@.entryName == '1.png')].status").value("IMPORTED"))
+                .andExpect(jsonPath("$[?(@.entryName == 'readme.txt')].status").value("SKIPPED"));
+    }
+
+    @Test
+    public void importAvatarsReturnsResultsInOrderOfEntries() throws Exception {
+        Student other = studentOf(2L, "Kate");
+        when(studentRepository.findAllById(anyCollection())).thenReturn(List.of(STUDENT, other));
+        when(avatarRepository.findByStudentIdIn(anyCollection())).thenReturn(List.of());
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("readme.txt", new byte[]{1});
+        entries.put(ID + ".png", imageOf("png"));
+        entries.put("2.png", new byte[100_001]);
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post(LOCAL_URL + "avatars/import")
+                        .content(zipOf(entries))
+                        .contentType("application/zip")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].entryName").value("readme.txt"))
+                .andExpect(jsonPath("$[1].entryName").value("1.png"))
+                .andExpect(jsonPath("$[1].status").value("IMPORTED"))
+                .andExpect(jsonPath("$[2].entryName").value("2.png"))
+                .andExpect(jsonPath("$[2].status").value("SKIPPED"))
+                .andExpect(jsonPath("$[2].message").value("File is too big"));
+    }
+
+    @Test
+    public void importAvatarsRestoresFilesWhenMetadataIsNotSaved() throws Exception {
+        Path file = Path.of("target/test-avatars", ID + ".png");
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[]{1, 2, 3});
+        when(studentRepository.findAllById(anyCollection())).thenReturn(List.of(STUDENT));
+        when(avatarRepository.findByStudentIdIn(anyCollection())).thenReturn(List.of());
+        when(avatarRepository.saveAll(anyCollection())).thenThrow(new DataAccessResourceFailureException("Connection is lost"));
+
+        assertThatThrownBy(() -> mockMvc.perform(MockMvcRequestBuilders
+                .post(LOCAL_URL + "avatars/import")
+                .content(zipOf(Map.of(ID + ".png", imageOf("png"))))
+                .contentType("application/zip")))
+                .hasRootCauseInstanceOf(DataAccessResourceFailureException.class);
+
+        assertThat(Files.readAllBytes(file)).isEqualTo(new byte[]{1, 2, 3});
+    }
+
+    @Test
+    public void importAvatarsWithSecondEntryOfStudent() throws Exception {
+        Files.deleteIfExists(Path.of("target/test-avatars", ID + ".jpg"));
+        when(studentRepository.findAllById(anyCollection())).thenReturn(List.of(STUDENT));
+        when(avatarRepository.findByStudentIdIn(anyCollection())).thenReturn(List.of());
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put(ID + ".png", imageOf("png"));
+        entries.put(ID + ".jpg", imageOf("jpg"));
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post(LOCAL_URL + "avatars/import")
+                        .content(zipOf(entries))
+                        .contentType("application/zip")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[?(@.entryName == '1.png')].status").value("IMPORTED"))
+                .andExpect(jsonPath("$[?(@.entryName == '1.jpg')].status").value("SKIPPED"));
+
+        assertThat(Files.exists(Path.of("target/test-avatars", ID + ".jpg"))).isFalse();
+    }
+
+    @Test
+    public void exportPreviewsOfFaculty() throws Exception {
+        byte[] preview = imageOf("png");
+        when(avatarRepository.findExportFilesOfFaculty(eq(ID), anyLong(), any()))
+                .thenReturn(List.of(exportFileOf("target/test-avatars/" + ID + ".png")));
+        when(avatarRepository.findPreviewsByIdIn(List.of(ID))).thenReturn(List.of(previewOf(preview)));
+        byte[] archive = mockMvc.perform(MockMvcRequestBuilders
+                        .get(LOCAL_URL + "avatars/export")
+                        .param("content", "PREVIEWS")
+                        .param("facultyId", ID.toString()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/zip"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            ZipEntry entry = zis.getNextEntry();
+            assertThat(entry.getName()).isEqualTo("previews/" + ID + ".png");
+            assertThat(entry.getMethod()).isEqualTo(ZipEntry.STORED);
+            assertThat(zis.readAllBytes()).isEqualTo(preview);
+            assertThat(zis.getNextEntry()).isNull();
+        }
+    }
+
+    @Test
+    public void exportOriginalsOfStudents() throws Exception {
+        Path file = Path.of("target/test-avatars", ID + "-export.png");
+        Files.createDirectories(file.getParent());
+        Files.write(file, imageOf("png"));
+        when(avatarRepository.findExportFilesOfStudents(eq(ID), eq(ID), anyLong(), any()))
+                .thenReturn(List.of(exportFileOf(file.toString())));
+        byte[] archive = mockMvc.perform(MockMvcRequestBuilders
+                        .get(LOCAL_URL + "avatars/export")
+                        .param("content", "ORIGINALS")
+                        .param("fromId", ID.toString())
+                        .param("toId", ID.toString()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            ZipEntry entry = zis.getNextEntry();
+            assertThat(entry.getName()).isEqualTo("originals/" + file.getFileName());
+            assertThat(zis.readAllBytes()).isEqualTo(Files.readAllBytes(file));
+            assertThat(entry.getCompressedSize()).isGreaterThanOrEqualTo(Files.size(file));
+            assertThat(zis.getNextEntry()).isNull();
+        }
+        verify(avatarRepository, never()).findPreviewsByIdIn(any());
+    }
+
+    @Test
+    public void exportAvatarsWithoutFilter() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(LOCAL_URL + "avatars/export"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void downloadPreviews() throws Exception {
+        Avatar avatar = new Avatar();
+        avatar.setId(ID);
+        avatar.setStudent(STUDENT);
+        avatar.setMediaType(MediaType.IMAGE_PNG_VALUE);
+        avatar.setData(new byte[]{1, 2, 3});
+        when(avatarRepository.findByStudentIdIn(anyCollection())).thenReturn(List.of(avatar));
+        String body = mockMvc.perform(MockMvcRequestBuilders
+                        .get(LOCAL_URL + "avatars/previews")
+                        .param("ids", "1", "2"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(body).contains("Content-ID: " + ID);
+        assertThat(body).contains("Content-Type: " + MediaType.IMAGE_PNG_VALUE);
+        assertThat(body).containsOnlyOnce("Content-ID:");
+    }
+
+    @Test
+    public void resumableUploadOfAvatar() throws Exception {
+        when(studentRepository.findById(any(Long.class))).thenReturn(Optional.of(STUDENT));
+        when(avatarRepository.findByStudentId(any(Long.class))).thenReturn(Optional.empty());
+        byte[] image = imageOf("png");
+        String response = mockMvc.perform(MockMvcRequestBuilders
+                        .post(LOCAL_URL + ID + "/avatar/uploads")
+                        .param("fileName", "garry.png")
+                        .param("contentType", MediaType.IMAGE_PNG_VALUE)
+                        .param("size", String.valueOf(image.length)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nextOffset").value(0))
+                .andReturn().getResponse().getContentAsString();
+        String uploadId = JsonPath.read(response, "$.uploadId");
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post(LOCAL_URL + "avatar/uploads/" + uploadId + "/complete"))
+                .andExpect(status().isConflict());
+        mockMvc.perform(MockMvcRequestBuilders
+                        .put(LOCAL_URL + "avatar/uploads/" + uploadId)
+                        .param("offset", "0")
+                        .content(image)
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.receivedBytes").value(image.length))
+                .andExpect(jsonPath("$.complete").value(true));
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post(LOCAL_URL + "avatar/uploads/" + uploadId + "/complete"))
+                .andExpect(status().isOk());
+
+        verify(avatarRepository).save(any(Avatar.class));
+        assertThat(Files.readAllBytes(Path.of("target/test-avatars", ID + ".png"))).isEqualTo(image);
+    }
+
+    @Test
+    public void failedCompletionOfUploadCanBeRetried() throws Exception {
+        when(studentRepository.findById(any(Long.class))).thenReturn(Optional.of(STUDENT));
+        byte[] image = imageOf("png", 400, 400);
+        String response = mockMvc.perform(MockMvcRequestBuilders
+                        .post(LOCAL_URL + ID + "/avatar/uploads")
+                        .param("fileName", "garry.png")
+                        .param("contentType", MediaType.IMAGE_PNG_VALUE)
+                        .param("size", String.valueOf(image.length)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String uploadId = JsonPath.read(response, "$.uploadId");
+        mockMvc.perform(MockMvcRequestBuilders
+                        .put(LOCAL_URL + "avatar/uploads/" + uploadId)
+                        .param("offset", "0")
+                        .content(image)
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post(LOCAL_URL + "avatar/uploads/" + uploadId + "/complete"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(LOCAL_URL + "avatar/uploads/" + uploadId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.complete").value(true));
+        mockMvc.perform(MockMvcRequestBuilders
+                        .delete(LOCAL_URL + "avatar/uploads/" + uploadId))
+                .andExpect(status().is2xxSuccessful());
+
+        verify(avatarRepository, never()).save(any(Avatar.class));
+    }
+
+    @Test
+    public void upLoadAvatarOfMissingStudentDoesNotWriteFile() throws Exception {
+        Path file = Path.of("target/test-avatars", ID + ".png");
+        Files.deleteIfExists(file);
+        when(studentRepository.findById(ID)).thenReturn(Optional.empty());
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .multipart(LOCAL_URL + ID + "/avatar")
+                        .file(new MockMultipartFile("avatar", "garry.png", MediaType.IMAGE_PNG_VALUE, imageOf("png"))))
+                .andExpect(status().isBadRequest());
+
+        assertThat(Files.exists(file)).isFalse();
+        verify(avatarRepository, never()).save(any(Avatar.class));
+    }
+
+    @Test
+    public void upLoadAvatarRestoresFileWhenMetadataIsNotSaved() throws Exception {
+        Path file = Path.of("target/test-avatars", ID + ".png");
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[]{1, 2, 3});
+        when(studentRepository.findById(ID)).thenReturn(Optional.of(STUDENT));
+        when(avatarRepository.findByStudentId(ID)).thenReturn(Optional.empty());
+        when(avatarRepository.save(any(Avatar.class))).thenThrow(new DataAccessResourceFailureException("Connection is lost"));
+
+        assertThatThrownBy(() -> mockMvc.perform(MockMvcRequestBuilders
+                .multipart(LOCAL_URL + ID + "/avatar")
+                .file(new MockMultipartFile("avatar", "garry.png", MediaType.IMAGE_PNG_VALUE, imageOf("png")))))
+                .hasRootCauseInstanceOf(DataAccessResourceFailureException.class);
+
+        assertThat(Files.readAllBytes(file)).isEqualTo(new byte[]{1, 2, 3});
+        try (var files = Files.list(file.getParent())) {
+            assertThat(files.map(f -> f.getFileName().toString())).noneMatch(name -> name.endsWith(".bak"));
+        }
+    }
+
+    @Test
+    public void chunkIsRejectedWhileUploadIsCompleted() throws Exception {
+        when(studentRepository.findById(any(Long.class))).thenReturn(Optional.of(STUDENT));
+        byte[] image = imageOf("png");
+        String uploadId = createUploadOf(image);
+        int[] chunkStatus = new int[1];
+        doAnswer(invocation -> {
+            chunkStatus[0] = mockMvc.perform(MockMvcRequestBuilders
+                            .put(LOCAL_URL + "avatar/uploads/" + uploadId)
+                            .param("offset", "0")
+                            .content(image)
+                            .contentType(MediaType.APPLICATION_OCTET_STREAM))
+                    .andReturn().getResponse().getStatus();
+            return null;
+        }).when(avatarService).upLoad(eq(ID), any(Path.class), anyString(), anyString());
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post(LOCAL_URL + "avatar/uploads/" + uploadId + "/complete"))
+                .andExpect(status().isOk());
+
+        assertThat(chunkStatus[0]).isEqualTo(409);
+    }
+
+    @Test
+    public void expiredUploadIsPurged() throws Exception {
+        when(studentRepository.findById(any(Long.class))).thenReturn(Optional.of(STUDENT));
+        String uploadId = createUploadOf(imageOf("png"));
+        Path stagingFile = Path.of("target/test-avatars/staging", uploadId + ".part");
+        assertThat(Files.exists(stagingFile)).isTrue();
+
+        ReflectionTestUtils.setField(avatarUploadService, "expireMinutes", -1L);
+        try {
+            ReflectionTestUtils.invokeMethod(avatarUploadService, "purgeExpiredUploads");
+        } finally {
+            ReflectionTestUtils.setField(avatarUploadService, "expireMinutes", 60L);
+        }
+
+        assertThat(Files.exists(stagingFile)).isFalse();
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(LOCAL_URL + "avatar/uploads/" + uploadId))
+                .andExpect(status().isNotFound());
+    }
+
+    private String createUploadOf(byte[] image) throws Exception {
+        String response = mockMvc.perform(MockMvcRequestBuilders
+                        .post(LOCAL_URL + ID + "/avatar/uploads")
+                        .param("fileName", "garry.png")
+                        .param("contentType", MediaType.IMAGE_PNG_VALUE)
+                        .param("size", String.valueOf(image.length)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String uploadId = JsonPath.read(response, "$.uploadId");
+        mockMvc.perform(MockMvcRequestBuilders
+                        .put(LOCAL_URL + "avatar/uploads/" + uploadId)
+                        .param("offset", "0")
+                        .content(image)
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM))
+                .andExpect(status().isOk());
+        return uploadId;
+    }
+
+    @Test
+    public void createUploadWithWrongExtension() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post(LOCAL_URL + ID + "/avatar/uploads")
+                        .param("fileName", "garry.png/../../etc")
+                        .param("contentType", MediaType.IMAGE_PNG_VALUE)
+                        .param("size", "100"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(studentRepository);
+    }
+
+    @Test
+    public void downloadAvatarFromDataBase() throws Exception {
+        Avatar avatar = new Avatar();
+        avatar.setStudent(STUDENT);
+        avatar.setMediaType(MediaType.IMAGE_PNG_VALUE);
+        avatar.setData(imageOf("png"));
+        when(avatarRepository.findByStudentId(ID)).thenReturn(Optional.of(avatar));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(LOCAL_URL + ID + "/avatar/dataBase"))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(avatar.getData()));
+
+        verify(avatarRepository).findByStudentId(ID);
+        verifyNoInteractions(studentRepository);
+    }
+
+    @Test
+    public void downloadAvatarNotFound() throws Exception {
+        when(avatarRepository.findByStudentId(ID)).thenReturn(Optional.empty());
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(LOCAL_URL + ID + "/avatar/dataBase"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(LOCAL_URL + ID + "/avatar"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void upLoadAvatarWithTooManyPixels() throws Exception {
+        when(studentRepository.findById(any(Long.class))).thenReturn(Optional.of(STUDENT));
+        mockMvc.perform(MockMvcRequestBuilders
+                        .multipart(LOCAL_URL + ID + "/avatar")
+                        .file(new MockMultipartFile("avatar", "garry.png", MediaType.IMAGE_PNG_VALUE,
+                                imageOf("png", 400, 400))))
+                .andExpect(status().isBadRequest());
+
+        verify(avatarRepository, never()).save(any(Avatar.class));
+    }
+
+    private static byte[] imageOf(String format) throws IOException {
+        return imageOf(format, 200, 300);
+    }
+
+    private static byte[] imageOf(String format, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(image, format, baos);
+        return baos.toByteArray();
+    }
+
+    private static byte[] zipOf(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(baos)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zos.putNextEntry(new ZipEntry(entry.getKey()));
+                zos.write(entry.getValue());
+                zos.closeEntry();
+            }
+        }
+        return baos.toByteArray();
+    }
+
+    private static Student studentOf(Long id, String name) {
+        Student student = new Student();
+        student.setId(id);
+        student.setName(name);
+        student.setAge(AGE);
+        return student;
+    }
+
+    private static AvatarRepository.AvatarExportFile exportFileOf(String filePath) {
+        return new AvatarRepository.AvatarExportFile() {
+            @Override
+            public Long getId() {
+                return ID;
+            }
+
+            @Override
+            public String getFilePath() {
+                return filePath;
+            }
+
+            @Override
+            public String getMediaType() {
+                return MediaType.IMAGE_PNG_VALUE;
+            }
+        };
+    }
+
+    private static AvatarRepository.AvatarPreview previewOf(byte[] data) {
+        return new AvatarRepository.AvatarPreview() {
+            @Override
+            public Long getId() {
+                return ID;
+            }
+
+            @Override
+            public byte[] getData() {
+                return data;
+            }
+        };
+    }
+}
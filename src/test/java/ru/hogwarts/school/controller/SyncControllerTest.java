@@ -0,0 +1,117 @@
+package ru.hogwarts.school.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repositories.FacultyRepository;
+import ru.hogwarts.school.repositories.StudentRepository;
+import ru.hogwarts.school.service.impl.SyncServiceImpl;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = SyncController.class)
+class SyncControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    StudentRepository studentRepository;
+
+    @MockBean
+    FacultyRepository facultyRepository;
+
+    @MockBean
+    JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    PlatformTransactionManager transactionManager;
+
+    @SpyBean
+    private SyncServiceImpl syncService;
+
+    private final static String LOCAL_URL = "http://localhost:8080/sync";
+    private final static long VERSION = 1500L;
+
+    private Faculty faculty;
+    private Student student;
+
+    @BeforeEach
+    public void startData() {
+        faculty = new Faculty();
+        faculty.setId(1L);
+        faculty.setName("holly");
+        faculty.setColor("white");
+        student = new Student();
+        student.setId(2L);
+        student.setName("Gendalf");
+        student.setAge(21);
+        student.setFaculty(faculty);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(VERSION);
+    }
+
+    @Test
+    public void firstSyncReturnsAllStudentsAndFaculties() throws Exception {
+        when(studentRepository.findAll()).thenReturn(List.of(student));
+        when(facultyRepository.findAll()).thenReturn(List.of(faculty));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(LOCAL_URL))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(VERSION))
+                .andExpect(jsonPath("$.full").value(true))
+                .andExpect(jsonPath("$.students[0].id").value(2))
+                .andExpect(jsonPath("$.faculties[0].id").value(1));
+
+        verify(studentRepository, never()).findChangedSince(anyLong());
+    }
+
+    @Test
+    public void syncReturnsOnlyChangedAndDeletedRows() throws Exception {
+        when(studentRepository.findChangedSince(1000L)).thenReturn(List.of(student));
+        when(facultyRepository.findChangedSince(1000L)).thenReturn(List.of());
+        when(jdbcTemplate.queryForList(contains("FROM student"), eq(Long.class), eq("student"), eq(1000L)))
+                .thenReturn(List.of(7L, 8L));
+        when(jdbcTemplate.queryForList(contains("FROM faculty"), eq(Long.class), eq("faculty"), eq(1000L)))
+                .thenReturn(List.of(3L));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(LOCAL_URL)
+                        .param("since", "1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(VERSION))
+                .andExpect(jsonPath("$.full").value(false))
+                .andExpect(jsonPath("$.students[0].name").value("Gendalf"))
+                .andExpect(jsonPath("$.faculties").isEmpty())
+                .andExpect(jsonPath("$.deletedStudentIds[1]").value(8))
+                .andExpect(jsonPath("$.deletedFacultyIds[0]").value(3));
+
+        verify(studentRepository, never()).findAll();
+    }
+
+    @Test
+    public void syncWithNegativeVersion() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(LOCAL_URL)
+                        .param("since", "-1"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,86 @@
+package ru.hogwarts.school.datasource;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class AdaptivePoolSizerTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger size = new AtomicInteger(10);
+    private final HikariPoolMXBean poolBean = mock(HikariPoolMXBean.class);
+    private Timer acquire;
+    private Timer usage;
+    private AdaptivePoolSizer sizer;
+
+    @BeforeEach
+    public void setUp() {
+        HikariConfigMXBean config = mock(HikariConfigMXBean.class);
+        when(config.getMaximumPoolSize()).thenAnswer(invocation -> size.get());
+        doAnswer(invocation -> {
+            size.set(invocation.getArgument(0));
+            return null;
+        }).when(config).setMaximumPoolSize(anyInt());
+        HikariDataSource pool = mock(HikariDataSource.class);
+        when(pool.getPoolName()).thenReturn("test");
+        when(pool.getHikariConfigMXBean()).thenReturn(config);
+        when(pool.getHikariPoolMXBean()).thenReturn(poolBean);
+        acquire = meterRegistry.timer("hikaricp.connections.acquire", "pool", "test");
+        usage = meterRegistry.timer("hikaricp.connections.usage", "pool", "test");
+        sizer = new AdaptivePoolSizer(pool, meterRegistry, 2, 20, 5, 1.5, 3);
+    }
+
+    @Test
+    public void poolGrowsWhileThreadsWaitAndQueriesAreNotSlower() {
+        for (int i = 0; i < 3; i++) {
+            interval(30, 20, 10, 3);
+        }
+
+        assertThat(size.get()).isEqualTo(20);
+        assertThat(meterRegistry.get(AdaptivePoolSizer.SIZE).gauge().value()).isEqualTo(20);
+        assertThat(meterRegistry.get(AdaptivePoolSizer.RESIZES).tag("reason", "wait").counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    public void poolShrinksWhenQueriesBecomeSlower() {
+        interval(30, 20, 10, 3);
+        int grown = size.get();
+
+        interval(30, 20, 40, 3);
+
+        assertThat(size.get()).isEqualTo(grown - 1);
+        assertThat(meterRegistry.get(AdaptivePoolSizer.RESIZES).tag("reason", "latency").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void idlePoolShrinksToMinSize() {
+        for (int i = 0; i < 30; i++) {
+            interval(0, 1, 10, 0);
+        }
+
+        assertThat(size.get()).isEqualTo(2);
+        assertThat(meterRegistry.get(AdaptivePoolSizer.RESIZES).tag("reason", "idle").counter().count()).isEqualTo(8);
+    }
+
+    private void interval(int waiting, int active, long usageMillis, long waitMillis) {
+        when(poolBean.getThreadsAwaitingConnection()).thenReturn(waiting);
+        when(poolBean.getActiveConnections()).thenReturn(active);
+        for (int i = 0; i < 100; i++) {
+            acquire.record(Duration.ofMillis(waitMillis));
+            usage.record(Duration.ofMillis(usageMillis));
+        }
+        sizer.adjust();
+    }
+}
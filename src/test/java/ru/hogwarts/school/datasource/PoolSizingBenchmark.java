@@ -0,0 +1,78 @@
+package ru.hogwarts.school.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of fixed pool of Hikari with default size against pool resized by {@link AdaptivePoolSizer},
+ * 64 threads run queries which both wait and use CPU of database, score is queries per second<br>
+ * needs local PostgreSQL, connection is set by {@code -Dbenchmark.jdbc.url}, {@code -Dbenchmark.jdbc.username},
+ * {@code -Dbenchmark.jdbc.password}. Size of adaptive pool and its resizes are printed after run.
+ * Run: {@code mvn -P benchmark test-compile exec:exec -Dbenchmark.include=PoolSizingBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@Threads(64)
+@State(Scope.Benchmark)
+public class PoolSizingBenchmark {
+
+    private static final String QUERY = "SELECT pg_sleep(0.002), count(*) FROM generate_series(1, 5000)";
+
+    @Param({"fixed", "adaptive"})
+    private String sizing;
+
+    private HikariDataSource pool;
+    private MeterRegistry meterRegistry;
+    private ScheduledExecutorService executor;
+
+    @Setup
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        pool = new HikariDataSource();
+        pool.setJdbcUrl(System.getProperty("benchmark.jdbc.url", "jdbc:postgresql://localhost:5432/hogwarts"));
+        pool.setUsername(System.getProperty("benchmark.jdbc.username", "student"));
+        pool.setPassword(System.getProperty("benchmark.jdbc.password", "chocolatefrog"));
+        pool.setPoolName(sizing);
+        pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        if ("adaptive".equals(sizing)) {
+            AdaptivePoolSizer sizer = new AdaptivePoolSizer(pool, meterRegistry, 2, 64, 5, 1.5, 10);
+            executor = Executors.newSingleThreadScheduledExecutor();
+            executor.scheduleWithFixedDelay(sizer::adjust, 200, 200, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            System.out.printf("%nSize of adaptive pool: %d%n", pool.getHikariConfigMXBean().getMaximumPoolSize());
+            meterRegistry.find(AdaptivePoolSizer.RESIZES).counters().forEach(c -> System.out.printf("%s %s: %.0f%n",
+                    c.getId().getTag("direction"), c.getId().getTag("reason"), c.count()));
+        }
+        pool.close();
+    }
+
+    @Benchmark
+    public long query() throws SQLException {
+        try (Connection connection = pool.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(QUERY)) {
+            resultSet.next();
+            return resultSet.getLong(2);
+        }
+    }
+}
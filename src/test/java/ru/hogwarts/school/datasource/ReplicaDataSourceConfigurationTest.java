@@ -0,0 +1,89 @@
+package ru.hogwarts.school.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks routing between two real PostgreSQL instances, primary and replica<br>
+ * needs both of them and is skipped without them, replica may be any other instance, streaming
+ * replication is not needed. Connections are set by {@code -Dtest.jdbc.url}, {@code -Dtest.jdbc.replica-url},
+ * {@code -Dtest.jdbc.username}, {@code -Dtest.jdbc.password}
+ */
+class ReplicaDataSourceConfigurationTest {
+
+    private static final String SERVER = "SELECT inet_server_addr() || ':' || inet_server_port()";
+
+    private final ReplicaDataSourceConfiguration configuration = new ReplicaDataSourceConfiguration();
+    private String primaryServer;
+    private String replicaServer;
+    private DataSource dataSource;
+
+    @BeforeEach
+    public void setUp() {
+        String url = System.getProperty("test.jdbc.url", "jdbc:postgresql://localhost:5432/hogwarts");
+        String replicaUrl = System.getProperty("test.jdbc.replica-url", "jdbc:postgresql://localhost:5433/hogwarts");
+        String username = System.getProperty("test.jdbc.username", "student");
+        String password = System.getProperty("test.jdbc.password", "chocolatefrog");
+        primaryServer = serverOf(url, username, password);
+        replicaServer = serverOf(replicaUrl, username, password);
+        Assumptions.assumeFalse(primaryServer.equals(replicaServer), "Primary and replica are the same instance");
+
+        DataSourceProperties properties = new DataSourceProperties();
+        properties.setUrl(url);
+        properties.setUsername(username);
+        properties.setPassword(password);
+        dataSource = configuration.dataSource(properties, new MockEnvironment(), List.of(replicaUrl), 1000,
+                ReplicaRoutingDataSource.StalePolicy.PRIMARY, 60000);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        configuration.shutdown();
+    }
+
+    @Test
+    public void readOnlyTransactionGoesToReplica() throws SQLException {
+        dataSource.unwrap(ReplicaRoutingDataSource.class).checkLag();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        assertThat(jdbcTemplate.queryForObject(SERVER, String.class)).isEqualTo(primaryServer);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(jdbcTemplate.queryForObject(SERVER, String.class)).isEqualTo(replicaServer);
+    }
+
+    @Test
+    public void poolsAreClosedOnShutdown() throws SQLException {
+        List<DataSource> pools = List.copyOf(
+                dataSource.unwrap(ReplicaRoutingDataSource.class).getResolvedDataSources().values());
+
+        configuration.shutdown();
+
+        assertThat(pools).hasSize(2)
+                .allSatisfy(pool -> assertThat(((HikariDataSource) pool).isClosed()).isTrue());
+    }
+
+    private static String serverOf(String url, String username, String password) {
+        try {
+            return new JdbcTemplate(new DriverManagerDataSource(url, username, password))
+                    .queryForObject(SERVER, String.class);
+        } catch (RuntimeException e) {
+            Assumptions.assumeTrue(false, "PostgreSQL is not available at " + url + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
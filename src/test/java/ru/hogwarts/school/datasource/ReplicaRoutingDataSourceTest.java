@@ -0,0 +1,157 @@
+package ru.hogwarts.school.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReplicaRoutingDataSourceTest {
+
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection firstReplicaConnection = mock(Connection.class);
+    private final Connection secondReplicaConnection = mock(Connection.class);
+    private final Map<DataSource, Long> lags = new HashMap<>();
+    private DataSource primary;
+    private DataSource firstReplica;
+    private DataSource secondReplica;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        primary = dataSource(primaryConnection);
+        firstReplica = dataSource(firstReplicaConnection);
+        secondReplica = dataSource(secondReplicaConnection);
+        lags.put(firstReplica, 0L);
+        lags.put(secondReplica, 0L);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        ReplicaRoutingDataSource.setPrimaryForced(false);
+    }
+
+    @Test
+    public void readOnlyTransactionsAreSpreadOverReplicas() throws SQLException {
+        ReplicaRoutingDataSource routing = routing(ReplicaRoutingDataSource.StalePolicy.PRIMARY);
+
+        assertThat(routing.getConnection()).isSameAs(primaryConnection);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        List<Connection> connections = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            connections.add(routing.getConnection());
+        }
+        assertThat(connections).containsOnly(firstReplicaConnection, secondReplicaConnection);
+        assertThat(connections).contains(firstReplicaConnection, secondReplicaConnection);
+    }
+
+    @Test
+    public void laggingAndUnavailableReplicasAreSkipped() throws SQLException {
+        lags.put(firstReplica, 5000L);
+        lags.put(secondReplica, null);
+        ReplicaRoutingDataSource toPrimary = routing(ReplicaRoutingDataSource.StalePolicy.PRIMARY);
+        ReplicaRoutingDataSource toLeastLagging = routing(ReplicaRoutingDataSource.StalePolicy.LEAST_LAGGING);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(toPrimary.getConnection()).isSameAs(primaryConnection);
+        assertThat(toLeastLagging.getConnection()).isSameAs(firstReplicaConnection);
+        assertThat(toPrimary.getLags()).containsEntry("replica-0", 5000L)
+                .containsEntry("replica-1", ReplicaRoutingDataSource.UNAVAILABLE);
+
+        lags.put(firstReplica, 100L);
+        toPrimary.checkLag();
+        assertThat(toPrimary.getConnection()).isSameAs(firstReplicaConnection);
+    }
+
+    @Test
+    public void clientReadsFromPrimaryAfterItsWrite() throws Exception {
+        ReplicaRoutingDataSource routing = routing(ReplicaRoutingDataSource.StalePolicy.PRIMARY);
+        ReadYourWritesFilter filter = new ReadYourWritesFilter(5000);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        List<Connection> connections = new ArrayList<>();
+
+        MockHttpServletResponse writeResponse = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("PUT", "/student"), writeResponse,
+                connect(routing, connections));
+        Cookie cookie = writeResponse.getCookie(ReadYourWritesFilter.COOKIE);
+        assertThat(cookie).isNotNull();
+
+        MockHttpServletRequest stickyRead = new MockHttpServletRequest("GET", "/student");
+        stickyRead.setCookies(cookie);
+        filter.doFilter(stickyRead, new MockHttpServletResponse(),
+                connect(routing, connections));
+        filter.doFilter(new MockHttpServletRequest("GET", "/student"), new MockHttpServletResponse(),
+                connect(routing, connections));
+
+        assertThat(connections.get(0)).isSameAs(primaryConnection);
+        assertThat(connections.get(1)).isSameAs(primaryConnection);
+        assertThat(connections.get(2)).isNotSameAs(primaryConnection);
+    }
+
+    @Test
+    public void onlyPrimaryIsWrapped() throws SQLException {
+        ReplicaRoutingDataSource routing = routing(ReplicaRoutingDataSource.StalePolicy.PRIMARY);
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        List<DataSource> wrapped = new ArrayList<>();
+
+        DataSource result = PrimaryDataSource.wrap(dataSource, target -> {
+            wrapped.add(target);
+            return new DelegatingDataSource(target);
+        });
+
+        assertThat(result).isSameAs(dataSource);
+        assertThat(wrapped).containsExactly(primary);
+        assertThat(routing.getResolvedDefaultDataSource()).isInstanceOf(DelegatingDataSource.class);
+        assertThat(routing.getConnection()).isSameAs(primaryConnection);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(routing.getConnection()).isIn(firstReplicaConnection, secondReplicaConnection);
+    }
+
+    private static FilterChain connect(DataSource dataSource, List<Connection> connections) {
+        return (request, response) -> {
+            try {
+                connections.add(dataSource.getConnection());
+            } catch (SQLException e) {
+                throw new ServletException(e);
+            }
+        };
+    }
+
+    private ReplicaRoutingDataSource routing(ReplicaRoutingDataSource.StalePolicy stalePolicy) {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, List.of(firstReplica, secondReplica),
+                1000, stalePolicy, replica -> {
+            Long lag = lags.get(replica);
+            if (lag == null) {
+                throw new DataAccessResourceFailureException("Connection refused");
+            }
+            return lag;
+        });
+        routing.checkLag();
+        return routing;
+    }
+
+    private static DataSource dataSource(Connection connection) throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        return dataSource;
+    }
+}
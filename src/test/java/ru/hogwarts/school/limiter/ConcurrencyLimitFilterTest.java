@@ -0,0 +1,104 @@
+package ru.hogwarts.school.limiter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletResponse;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyLimitFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final GradientLimiter heavy = new GradientLimiter(1, 1, 1, 2.0);
+    private final GradientLimiter read = new GradientLimiter(1, 1, 1, 2.0);
+    private final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(meterRegistry)
+            .addGroup("heavy", Set.of(), List.of("/csv/**"), heavy)
+            .addGroup("heavy", Set.of("POST"), List.of("/student/*/avatar"), heavy)
+            .addGroup("read", Set.of("GET"), List.of("/student/**"), read);
+
+    @Test
+    public void requestOverLimitOfGroupIsRejected() throws Exception {
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        MockHttpServletResponse otherGroup = new MockHttpServletResponse();
+        MockHttpServletResponse notLimited = new MockHttpServletResponse();
+
+        FilterChain chain = (request, response) -> {
+            filter.doFilter(request("GET", "/csv/faculty"), rejected, (req, res) -> { });
+            filter.doFilter(request("GET", "/student/1"), otherGroup, (req, res) -> { });
+            filter.doFilter(request("GET", "/faculty/1"), notLimited, (req, res) -> { });
+        };
+        filter.doFilter(request("GET", "/csv/student"), new MockHttpServletResponse(), chain);
+
+        assertThat(rejected.getStatus()).isEqualTo(503);
+        assertThat(rejected.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(otherGroup.getStatus()).isEqualTo(200);
+        assertThat(notLimited.getStatus()).isEqualTo(200);
+        assertThat(heavy.getInFlight()).isZero();
+        assertThat(read.getInFlight()).isZero();
+        assertThat(meterRegistry.get("http.limiter.rejected").tag("group", "heavy").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void placeIsReleasedWhenRequestFails() throws Exception {
+        try {
+            filter.doFilter(request("GET", "/student/1"), new MockHttpServletResponse(), (req, res) -> {
+                throw new IllegalStateException("Database is not available");
+            });
+        } catch (IllegalStateException e) {
+            // request failed
+        }
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request("GET", "/student/1"), response, (req, res) -> { });
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(read.getInFlight()).isZero();
+    }
+
+    @Test
+    public void groupAddedAgainMatchesOnlyItsMethods() throws Exception {
+        MockHttpServletResponse download = new MockHttpServletResponse();
+        MockHttpServletResponse upload = new MockHttpServletResponse();
+
+        FilterChain chain = (request, response) -> {
+            filter.doFilter(request("GET", "/student/2/avatar"), download, (req, res) -> { });
+            filter.doFilter(request("POST", "/student/2/avatar"), upload, (req, res) -> { });
+        };
+        filter.doFilter(request("POST", "/student/1/avatar"), new MockHttpServletResponse(), chain);
+
+        assertThat(download.getStatus()).isEqualTo(200);
+        assertThat(upload.getStatus()).isEqualTo(503);
+        assertThat(meterRegistry.get("http.limiter.rejected").tag("group", "heavy").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void requestShedByInnerThrottleDoesNotLowerLimit() throws Exception {
+        GradientLimiter limiter = new GradientLimiter(10, 1, 10, 2.0);
+        ConcurrencyLimitFilter shedFilter = new ConcurrencyLimitFilter(meterRegistry)
+                .addGroup("write", Set.of(), List.of("/student"), limiter);
+
+        for (int i = 0; i < 5; i++) {
+            shedFilter.doFilter(request("POST", "/student"), new MockHttpServletResponse(), (req, res) -> {
+                req.setAttribute(ConcurrencyLimitFilter.SHED_ATTRIBUTE, Boolean.TRUE);
+                ((HttpServletResponse) res).sendError(503);
+            });
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(10);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    private static MockHttpServletRequest request(String method, String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setRequestURI(path);
+        return request;
+    }
+}
@@ -0,0 +1,69 @@
+package ru.hogwarts.school.limiter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GradientLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    public void requestsOverLimitAreRejected() {
+        GradientLimiter limiter = new GradientLimiter(2, 1, 10, 2.0);
+
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isFalse();
+
+        limiter.release(FAST, false);
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.getInFlight()).isEqualTo(2);
+    }
+
+    @Test
+    public void limitGrowsWithStableLatencyAndShrinksWhenLatencyGrows() {
+        GradientLimiter limiter = new GradientLimiter(10, 1, 100, 2.0);
+
+        saturate(limiter, FAST, 50);
+        int grown = limiter.getLimit();
+        assertThat(grown).isGreaterThan(10);
+
+        saturate(limiter, SLOW, 20);
+        assertThat(limiter.getLimit()).isLessThan(grown);
+        assertThat(limiter.getRetryAfterSeconds()).isEqualTo(1);
+    }
+
+    @Test
+    public void unusedLimitDoesNotGrowAndDroppedRequestsBackOff() {
+        GradientLimiter limiter = new GradientLimiter(10, 1, 100, 2.0);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire();
+            limiter.release(FAST, false);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(10);
+
+        limiter.tryAcquire();
+        limiter.release(FAST, true);
+        assertThat(limiter.getLimit()).isEqualTo(9);
+    }
+
+    /**
+     * Take all places of limit and release them with given latency, {@code rounds} times
+     */
+    private static void saturate(GradientLimiter limiter, long rttNanos, int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            int acquired = 0;
+            while (limiter.tryAcquire()) {
+                acquired++;
+            }
+            for (int i = 0; i < acquired; i++) {
+                limiter.release(rttNanos, false);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package ru.hogwarts.school.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class ConnectionHoldTimeDataSourceTest {
+
+    @Test
+    public void holdTimeOfConnectionIsRecordedOnce() throws Exception {
+        Connection connection = mock(Connection.class);
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ConnectionHoldTimeDataSource holdTimeDataSource = new ConnectionHoldTimeDataSource(dataSource, () -> meterRegistry);
+
+        Connection held = holdTimeDataSource.getConnection();
+        held.setAutoCommit(false);
+        Thread.sleep(50);
+        held.close();
+        held.close();
+
+        Timer timer = meterRegistry.get(ConnectionHoldTimeDataSource.TIMER)
+                .tag("method", ServiceMethodAspect.NONE)
+                .timer();
+        assertThat(timer.count()).isEqualTo(1);
+        assertThat(timer.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(50);
+        verify(connection).setAutoCommit(false);
+        verify(connection, times(2)).close();
+    }
+}
@@ -0,0 +1,163 @@
+package ru.hogwarts.school.repositories;
+
+import liquibase.integration.spring.SpringLiquibase;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import ru.hogwarts.school.model.Faculty;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks by {@code EXPLAIN} that queries of students of one faculty read only one partition of {@code student}<br>
+ * needs local PostgreSQL and is skipped without it, change log of application is applied to schema
+ * {@code partitioning_test}, which is dropped after run. Statements of Hibernate are taken as it generates them
+ * for entities of application.
+ * Connection is set by {@code -Dtest.jdbc.url}, {@code -Dtest.jdbc.username}, {@code -Dtest.jdbc.password}
+ */
+class StudentPartitioningTest {
+
+    private static final String SCHEMA = "partitioning_test";
+    private static final Pattern PARTITION = Pattern.compile(" on (student_p\\d+)");
+
+    private static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+    private static JdbcTemplate jdbcTemplate;
+    private static EntityManagerFactory entityManagerFactory;
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        String url = System.getProperty("test.jdbc.url", "jdbc:postgresql://localhost:5432/hogwarts");
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                url + (url.contains("?") ? "&" : "?") + "currentSchema=" + SCHEMA + ",public",
+                System.getProperty("test.jdbc.username", "student"),
+                System.getProperty("test.jdbc.password", "chocolatefrog"));
+        try {
+            dataSource.getConnection().close();
+            jdbcTemplate = new JdbcTemplate(dataSource);
+        } catch (SQLException e) {
+            Assumptions.assumeTrue(false, "PostgreSQL is not available: " + e.getMessage());
+        }
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        jdbcTemplate.execute("CREATE SCHEMA " + SCHEMA);
+
+        SpringLiquibase liquibase = new SpringLiquibase();
+        liquibase.setDataSource(dataSource);
+        liquibase.setDefaultSchema(SCHEMA);
+        liquibase.setChangeLog("classpath:liquibase/changelog-master.yml");
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.afterPropertiesSet();
+
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setDataSource(dataSource);
+        factory.setPackagesToScan(Faculty.class.getPackageName());
+        factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factory.setJpaPropertyMap(Map.of("hibernate.session_factory.statement_inspector",
+                (StatementInspector) sql -> {
+                    STATEMENTS.add(sql);
+                    return sql;
+                }));
+        factory.afterPropertiesSet();
+        entityManagerFactory = factory.getObject();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        if (entityManagerFactory != null) {
+            entityManagerFactory.close();
+        }
+        if (jdbcTemplate != null) {
+            jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        }
+    }
+
+    @Test
+    public void studentsOfFacultyAreReadFromOnePartition() {
+        STATEMENTS.clear();
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            // students are loaded as FacultyServiceImpl.findStudentsOfFaculty loads them
+            entityManager.getReference(Faculty.class, 1L).getStudents().size();
+        } finally {
+            entityManager.close();
+        }
+        String sql = STATEMENTS.stream()
+                .filter(statement -> statement.contains(" from student "))
+                .findFirst()
+                .orElseThrow();
+
+        Set<String> partitions = partitionsOf(jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, 1L));
+
+        assertThat(partitions).hasSize(1);
+    }
+
+    @Test
+    public void studentByIdIsLookedUpInAllPartitions() {
+        Set<String> partitions = partitionsOf(jdbcTemplate.queryForList(
+                "EXPLAIN SELECT * FROM student WHERE id = ?", String.class, 1L));
+
+        assertThat(partitions).hasSize(8);
+    }
+
+    @Test
+    public void idOfStudentIsTakenFromHibernateSequence() {
+        Long id = jdbcTemplate.queryForObject(
+                "INSERT INTO student (name, age, faculty_id) VALUES ('Colin Creevey', 11, 1) RETURNING id", Long.class);
+        try {
+            assertThat(id).isEqualTo(jdbcTemplate.queryForObject("SELECT last_value FROM hibernate_sequence", Long.class));
+        } finally {
+            jdbcTemplate.update("DELETE FROM student WHERE id = ?", id);
+        }
+    }
+
+    @Test
+    public void allStudentsAreReadFromAllPartitions() {
+        Set<String> partitions = partitionsOf(jdbcTemplate.queryForList("EXPLAIN SELECT * FROM student", String.class));
+
+        assertThat(partitions).hasSize(8);
+    }
+
+    @Test
+    public void studentsAreKeptByMigration() {
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM student", Long.class)).isEqualTo(9);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM student WHERE faculty_id = 2", Long.class))
+                .isEqualTo(3);
+    }
+
+    @Test
+    public void changesOfPartitionsAreLoggedAsStudent() {
+        jdbcTemplate.update("UPDATE student SET faculty_id = 2 WHERE id = 9");
+        jdbcTemplate.update("UPDATE student SET faculty_id = 1 WHERE id = 9");
+
+        List<String> entities = jdbcTemplate.queryForList(
+                "SELECT DISTINCT entity FROM change_log WHERE entity_id = 9", String.class);
+
+        assertThat(entities).containsExactly("student");
+    }
+
+    private static Set<String> partitionsOf(List<String> plan) {
+        return plan.stream()
+                .map(PARTITION::matcher)
+                .filter(Matcher::find)
+                .map(matcher -> matcher.group(1))
+                .collect(Collectors.toSet());
+    }
+}
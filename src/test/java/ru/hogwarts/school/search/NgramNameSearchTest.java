@@ -0,0 +1,51 @@
+package ru.hogwarts.school.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NgramNameSearchTest {
+
+    private final NgramNameSearch search = new NgramNameSearch(() -> Map.of(
+            1L, "Garry Potter",
+            2L, "Hermione Granger",
+            3L, "Ron Weasley",
+            4L, "Harry Potter"));
+
+    @Test
+    public void trigramsAreBuiltLikeInPgTrgm() {
+        assertThat(NgramNameSearch.trigrams("Ron"))
+                .containsExactlyInAnyOrder("  r", " ro", "ron", "on ");
+        assertThat(NgramNameSearch.trigrams("Ron-Ron")).hasSize(4);
+    }
+
+    @Test
+    public void matchesAreRankedBySimilarityAndLimited() {
+        List<NameMatch> matches = search.search("Gary Poter", 10, 0.3);
+
+        assertThat(ids(matches)).containsExactly(1L, 4L);
+        assertThat(matches.get(0).getSimilarity()).isGreaterThan(matches.get(1).getSimilarity());
+        assertThat(ids(search.search("Gary Poter", 1, 0.3))).containsExactly(1L);
+        assertThat(search.search("Dumbledore", 10, 0.3)).isEmpty();
+    }
+
+    @Test
+    public void indexFollowsChangedNames() {
+        search.search("Ron", 10, 0.3);
+
+        search.put(3L, "Ronald Weasley");
+        search.put(5L, "Ginny Weasley");
+        search.remove(2L);
+
+        assertThat(ids(search.search("weasly", 10, 0.3))).containsExactlyInAnyOrder(3L, 5L);
+        assertThat(search.search("Hermione", 10, 0.3)).isEmpty();
+    }
+
+    private static List<Long> ids(List<NameMatch> matches) {
+        return matches.stream().map(NameMatch::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,221 @@
+package ru.hogwarts.school.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repositories.AvatarRepository;
+import ru.hogwarts.school.service.StudentService;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AvatarServiceImplStressTest {
+
+    private static final int WRITERS = 16;
+    private static final int READERS = 4;
+    private static final int UPLOADS_PER_WRITER = 20;
+    private static final int PAYLOADS = 32;
+
+    @TempDir
+    Path avatarsDir;
+
+    private final Map<Long, Avatar> avatars = new ConcurrentHashMap<>();
+    private final List<byte[]> payloads = new ArrayList<>();
+    private final Set<ByteBuffer> knownPayloads = new HashSet<>();
+    private final AtomicInteger savesInProgress = new AtomicInteger();
+    private final AtomicInteger maxSavesInProgress = new AtomicInteger();
+    private AvatarServiceImpl avatarService;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        AvatarRepository avatarRepository = mock(AvatarRepository.class);
+        when(avatarRepository.findByStudentId(anyLong())).thenAnswer(invocation ->
+                Optional.ofNullable(avatars.get((Long) invocation.getArgument(0))).map(this::copyOf));
+        when(avatarRepository.save(any(Avatar.class))).thenAnswer(invocation -> {
+            maxSavesInProgress.accumulateAndGet(savesInProgress.incrementAndGet(), Math::max);
+            try {
+                // metadata is saved under lock of student, so overlapping saves show uploads running in parallel
+                Thread.sleep(2);
+                return save(invocation.getArgument(0));
+            } finally {
+                savesInProgress.decrementAndGet();
+            }
+        });
+
+        StudentService studentService = mock(StudentService.class);
+        when(studentService.findStudent(anyLong())).thenAnswer(invocation -> {
+            Student student = new Student();
+            student.setId(invocation.getArgument(0));
+            return student;
+        });
+
+        avatarService = new AvatarServiceImpl(avatarRepository, studentService,
+                new PreviewServiceImpl(50_000_000, 20_000, 256, 30),
+                mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(avatarService, "avatarsDir", avatarsDir.toString());
+
+        for (int i = 0; i < PAYLOADS; i++) {
+            byte[] payload = imageOf(new Color(i * 8, 255 - i * 8, i * 4), 150 + i);
+            payloads.add(payload);
+            knownPayloads.add(ByteBuffer.wrap(payload));
+        }
+    }
+
+    @Test
+    public void concurrentUploadsOfSameStudentsAreSerialized() throws Exception {
+        runUploads(4);
+
+        assertThat(avatars).hasSize(4);
+        for (Avatar avatar : avatars.values()) {
+            byte[] file = Files.readAllBytes(Path.of(avatar.getFilePath()));
+            assertThat(knownPayloads).contains(ByteBuffer.wrap(file));
+            assertThat(avatar.getFileSize()).isEqualTo(file.length);
+            assertThat(avatar.getData()).isNotEmpty();
+        }
+        assertThat(maxSavesInProgress.get()).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    public void concurrentUploadsOfDifferentStudentsAreParallel() throws Exception {
+        runUploads(1);
+        assertThat(maxSavesInProgress.get()).isEqualTo(1);
+
+        avatars.clear();
+        maxSavesInProgress.set(0);
+        runUploads(WRITERS * UPLOADS_PER_WRITER);
+
+        assertThat(avatars).hasSize(WRITERS * UPLOADS_PER_WRITER);
+        assertThat(maxSavesInProgress.get()).isGreaterThan(1);
+    }
+
+    /**
+     * Upload avatars from many threads while readers check that file of every student is always complete
+     */
+    private void runUploads(int students) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<String> violations = new CopyOnWriteArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Future<?>> readers = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            readers.add(executor.submit(() -> {
+                start.await();
+                while (writing.get()) {
+                    for (long id = 0; id < Math.min(students, 16); id++) {
+                        Path path = avatarsDir.resolve(id + ".png");
+                        // metadata is saved after file is moved, so saved avatar always has file
+                        boolean saved = avatars.containsKey(id);
+                        try {
+                            byte[] file = Files.readAllBytes(path);
+                            if (!knownPayloads.contains(ByteBuffer.wrap(file))) {
+                                violations.add("Partial file of student " + id + ", " + file.length + " bytes");
+                            }
+                        } catch (NoSuchFileException e) {
+                            if (saved) {
+                                violations.add("Missing file of student " + id);
+                            }
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+
+        List<Future<?>> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            writers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < UPLOADS_PER_WRITER; i++) {
+                    int upload = writer * UPLOADS_PER_WRITER + i;
+                    long studentId = upload % students;
+                    byte[] payload = payloads.get(upload % PAYLOADS);
+                    avatarService.upLoad(studentId, new MockMultipartFile("avatar", "avatar.png",
+                            MediaType.IMAGE_PNG_VALUE, payload));
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(2, TimeUnit.MINUTES);
+        }
+        writing.set(false);
+        for (Future<?> reader : readers) {
+            reader.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        assertThat(violations).isEmpty();
+        try (var files = Files.list(avatarsDir)) {
+            List<String> tempFiles = files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.endsWith(".tmp"))
+                    .collect(Collectors.toList());
+            assertThat(tempFiles).isEmpty();
+        }
+    }
+
+    private Avatar save(Avatar saved) {
+        Avatar avatar = copyOf(saved);
+        if (avatar.getId() == null) {
+            // the same as UNIQUE constraint on student_id
+            avatar.setId(avatar.getStudent().getId());
+            if (avatars.putIfAbsent(avatar.getId(), avatar) != null) {
+                throw new DataIntegrityViolationException("Avatar of student exists");
+            }
+        } else {
+            avatars.put(avatar.getId(), avatar);
+        }
+        return avatar;
+    }
+
+    private Avatar copyOf(Avatar avatar) {
+        Avatar copy = new Avatar();
+        copy.setId(avatar.getId());
+        copy.setStudent(avatar.getStudent());
+        copy.setFilePath(avatar.getFilePath());
+        copy.setFileSize(avatar.getFileSize());
+        copy.setMediaType(avatar.getMediaType());
+        copy.setData(avatar.getData());
+        return copy;
+    }
+
+    private static byte[] imageOf(Color color, int size) throws IOException {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, size, size);
+        graphics.dispose();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", baos);
+        return baos.toByteArray();
+    }
+}
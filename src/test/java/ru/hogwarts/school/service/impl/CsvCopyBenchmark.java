@@ -0,0 +1,129 @@
+package ru.hogwarts.school.service.impl;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares import of students by {@code COPY FROM STDIN} of {@link CsvServiceImpl} with JDBC batches of inserts,
+ * and measures export by {@code COPY TO STDOUT}, score is students per second<br>
+ * needs local PostgreSQL, tables are created in schema {@code csv_benchmark} and dropped after run.
+ * Connection is set by {@code -Dbenchmark.jdbc.url}, {@code -Dbenchmark.jdbc.username}, {@code -Dbenchmark.jdbc.password}.
+ * Run: {@code mvn -P benchmark test-compile exec:exec -Dbenchmark.include=CsvCopyBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CsvCopyBenchmark {
+
+    private static final int STUDENTS = 100_000;
+    private static final int JDBC_BATCH_SIZE = 1000;
+    private static final String SCHEMA = "csv_benchmark";
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private CsvServiceImpl csvService;
+    private byte[] csv;
+    private List<Object[]> rows;
+
+    @Setup
+    public void setUp() {
+        String url = System.getProperty("benchmark.jdbc.url", "jdbc:postgresql://localhost:5432/hogwarts");
+        dataSource = new DriverManagerDataSource(url + (url.contains("?") ? "&" : "?") + "currentSchema=" + SCHEMA,
+                System.getProperty("benchmark.jdbc.username", "student"),
+                System.getProperty("benchmark.jdbc.password", "chocolatefrog"));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        csvService = new CsvServiceImpl(jdbcTemplate, transactionManager);
+
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        jdbcTemplate.execute("CREATE SCHEMA " + SCHEMA);
+        jdbcTemplate.execute("CREATE SEQUENCE hibernate_sequence");
+        jdbcTemplate.execute("CREATE TABLE faculty (id bigserial NOT NULL PRIMARY KEY, name text NOT NULL UNIQUE, "
+                + "color text NOT NULL UNIQUE, version bigint NOT NULL DEFAULT 0)");
+        jdbcTemplate.execute("CREATE TABLE student (id bigserial NOT NULL PRIMARY KEY, name text NOT NULL, "
+                + "age int CHECK (age > 0) NOT NULL, faculty_id int NOT NULL, version bigint NOT NULL DEFAULT 0)");
+        jdbcTemplate.execute("CREATE INDEX student_name_index ON student (name)");
+        jdbcTemplate.update("INSERT INTO faculty (id, name, color) VALUES (1, 'holly', 'white')");
+
+        StringBuilder builder = new StringBuilder("name,age,faculty_id\n");
+        rows = new ArrayList<>(STUDENTS);
+        for (int i = 0; i < STUDENTS; i++) {
+            String name = "Student \"" + i + "\"";
+            int age = 11 + i % 10;
+            builder.append('"').append(name.replace("\"", "\"\"")).append("\",").append(age).append(",1\n");
+            rows.add(new Object[]{name, age, 1});
+        }
+        csv = builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown
+    public void tearDown() {
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STUDENTS)
+    public long copyImport(EmptyStudents empty) throws IOException {
+        return csvService.importStudents(new ByteArrayInputStream(csv));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STUDENTS)
+    public int[][] batchInsert(EmptyStudents empty) {
+        return transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(
+                "INSERT INTO student (id, name, age, faculty_id, version) "
+                        + "VALUES (nextval('hibernate_sequence'), ?, ?, ?, 0)",
+                rows, JDBC_BATCH_SIZE, (ps, row) -> {
+                    ps.setString(1, (String) row[0]);
+                    ps.setInt(2, (Integer) row[1]);
+                    ps.setInt(3, (Integer) row[2]);
+                }));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STUDENTS)
+    public long copyExport(ImportedStudents imported) throws IOException {
+        return csvService.exportStudents(OutputStream.nullOutputStream());
+    }
+
+    /**
+     * Table of students is empty before every import
+     */
+    @State(Scope.Benchmark)
+    public static class EmptyStudents {
+
+        @Setup(Level.Invocation)
+        public void truncate(CsvCopyBenchmark benchmark) {
+            benchmark.jdbcTemplate.execute("TRUNCATE student");
+        }
+    }
+
+    /**
+     * Table of students is filled once for all exports
+     */
+    @State(Scope.Benchmark)
+    public static class ImportedStudents {
+
+        @Setup
+        public void fill(CsvCopyBenchmark benchmark) throws IOException {
+            benchmark.jdbcTemplate.execute("TRUNCATE student");
+            benchmark.csvService.importStudents(new ByteArrayInputStream(benchmark.csv));
+        }
+    }
+}
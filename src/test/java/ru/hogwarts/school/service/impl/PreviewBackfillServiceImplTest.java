@@ -0,0 +1,364 @@
+package ru.hogwarts.school.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.model.PreviewBackfill;
+import ru.hogwarts.school.repositories.AvatarRepository;
+import ru.hogwarts.school.repositories.PreviewBackfillRepository;
+import ru.hogwarts.school.service.PreviewService;
+
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PreviewBackfillServiceImplTest {
+
+    private static final String NAME = "avatar-preview";
+    private static final String CLAIM = sqlOf("CLAIM");
+    private static final String CHECKPOINT = sqlOf("CHECKPOINT");
+    private static final String RELEASE = sqlOf("RELEASE");
+    private static final String STOP = sqlOf("STOP");
+
+    private final FakeJdbcTemplate jdbcTemplate = new FakeJdbcTemplate();
+    private final Map<String, PreviewBackfill> backfills = new ConcurrentHashMap<>();
+    private final List<Long> generated = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger activePreviews = new AtomicInteger();
+    private final AtomicInteger maxActivePreviews = new AtomicInteger();
+    private volatile Consumer<Path> onPreview = file -> {
+    };
+    private PreviewBackfillServiceImpl backfillService;
+
+    @BeforeEach
+    public void setUp() {
+        for (long id = 1; id <= 10; id++) {
+            jdbcTemplate.avatars.put(id, new AvatarRow(id, "avatars/" + id + ".png", 0));
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        backfillService.shutdown();
+    }
+
+    @Test
+    public void jobContinuesFromCheckpointAfterFailedBatch() throws Exception {
+        backfillService = backfillService(3, 2);
+        jdbcTemplate.failOnBatch = 2;
+
+        backfillService.start(false);
+        PreviewBackfill stopped = awaitFinishedRun();
+
+        assertThat(stopped.getStatus()).isEqualTo(PreviewBackfill.Status.STOPPED);
+        assertThat(stopped.getLastAvatarId()).isEqualTo(3);
+        assertThat(stopped.getProcessed()).isEqualTo(3);
+
+        generated.clear();
+        backfillService.start(false);
+        PreviewBackfill finished = awaitFinishedRun();
+
+        assertThat(finished.getStatus()).isEqualTo(PreviewBackfill.Status.FINISHED);
+        assertThat(finished.getLastAvatarId()).isEqualTo(10);
+        assertThat(finished.getProcessed()).isEqualTo(10);
+        assertThat(generated).containsExactlyInAnyOrder(4L, 5L, 6L, 7L, 8L, 9L, 10L);
+    }
+
+    @Test
+    public void runningJobIsResumedAfterRestart() throws Exception {
+        PreviewBackfill running = new PreviewBackfill();
+        running.setName(NAME);
+        running.setStatus(PreviewBackfill.Status.RUNNING);
+        running.setLastAvatarId(6);
+        running.setProcessed(6);
+        running.setOwner("crashed-instance");
+        running.setLeaseUntil(Instant.now().minusSeconds(1));
+        backfills.put(NAME, running);
+        backfillService = backfillService(3, 2);
+
+        backfillService.resumeAfterRestart();
+        PreviewBackfill finished = awaitFinishedRun();
+
+        assertThat(finished.getStatus()).isEqualTo(PreviewBackfill.Status.FINISHED);
+        assertThat(finished.getProcessed()).isEqualTo(10);
+        assertThat(generated).containsExactlyInAnyOrder(7L, 8L, 9L, 10L);
+    }
+
+    @Test
+    public void previewsAreGeneratedByNoMoreThanConcurrencyThreads() throws Exception {
+        backfillService = backfillService(10, 2);
+        onPreview = file -> sleep(50);
+
+        backfillService.start(true);
+        PreviewBackfill finished = awaitFinishedRun();
+
+        assertThat(finished.getProcessed()).isEqualTo(10);
+        assertThat(maxActivePreviews.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void avatarUploadedDuringBatchKeepsItsPreview() throws Exception {
+        backfillService = backfillService(10, 2);
+        // new file of avatar with the same extension is uploaded while preview of its old file is generated
+        onPreview = file -> {
+            if (file.endsWith("5.png")) {
+                jdbcTemplate.avatars.put(5L, new AvatarRow(5, "avatars/5.png", 1));
+            }
+        };
+
+        backfillService.start(true);
+        PreviewBackfill finished = awaitFinishedRun();
+
+        assertThat(finished.getStatus()).isEqualTo(PreviewBackfill.Status.FINISHED);
+        assertThat(finished.getProcessed()).isEqualTo(9);
+        assertThat(finished.getSkipped()).isEqualTo(1);
+        AvatarRow uploaded = jdbcTemplate.avatars.get(5L);
+        assertThat(uploaded.version).isEqualTo(1);
+        assertThat(uploaded.data).isEqualTo(new byte[]{5});
+        assertThat(jdbcTemplate.avatars.get(4L).data).isEqualTo("4.png".getBytes());
+    }
+
+    @Test
+    public void jobRunningOnOtherInstanceIsNotStarted() throws Exception {
+        PreviewBackfill running = new PreviewBackfill();
+        running.setName(NAME);
+        running.setStatus(PreviewBackfill.Status.RUNNING);
+        running.setOwner("other-instance");
+        running.setLeaseUntil(Instant.now().plusSeconds(60));
+        backfills.put(NAME, running);
+        backfillService = backfillService(3, 2);
+
+        backfillService.resumeAfterRestart();
+        PreviewBackfill started = backfillService.start(false);
+
+        assertThat(started.getOwner()).isEqualTo("other-instance");
+        assertThat(backfills.get(NAME).getOwner()).isEqualTo("other-instance");
+        assertThat(generated).isEmpty();
+    }
+
+    @Test
+    public void jobStoppedByOtherInstanceKeepsItsLastCheckpoint() throws Exception {
+        backfillService = backfillService(3, 2);
+        // other instance stops job while this one generates previews of the second batch
+        onPreview = file -> {
+            if (file.endsWith("5.png")) {
+                jdbcTemplate.update(STOP, Timestamp.from(Instant.now()), NAME);
+            }
+        };
+
+        backfillService.start(false);
+        PreviewBackfill stopped = awaitFinishedRun();
+
+        assertThat(stopped.getStatus()).isEqualTo(PreviewBackfill.Status.STOPPED);
+        assertThat(stopped.getLastAvatarId()).isEqualTo(3);
+        assertThat(stopped.getProcessed()).isEqualTo(3);
+        assertThat(stopped.getOwner()).isNull();
+        assertThat(generated).doesNotContain(7L, 8L, 9L, 10L);
+    }
+
+    private PreviewBackfillServiceImpl backfillService(int batchSize, int concurrency) throws Exception {
+        AvatarRepository avatarRepository = mock(AvatarRepository.class);
+        when(avatarRepository.findAvatarFilesAfter(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            long afterId = invocation.getArgument(0);
+            Pageable page = invocation.getArgument(1);
+            return jdbcTemplate.avatars.values().stream()
+                    .filter(row -> row.id > afterId)
+                    .sorted(Comparator.comparingLong(row -> row.id))
+                    .limit(page.getPageSize())
+                    .map(AvatarRow::file)
+                    .collect(Collectors.toList());
+        });
+
+        PreviewBackfillRepository backfillRepository = mock(PreviewBackfillRepository.class);
+        when(backfillRepository.findById(NAME)).thenAnswer(invocation ->
+                Optional.ofNullable(backfills.get(NAME)).map(PreviewBackfillServiceImplTest::copyOf));
+        when(backfillRepository.save(any(PreviewBackfill.class))).thenAnswer(invocation -> {
+            PreviewBackfill backfill = invocation.getArgument(0);
+            backfills.put(NAME, copyOf(backfill));
+            return backfill;
+        });
+
+        PreviewService previewService = mock(PreviewService.class);
+        when(previewService.generatePreview(any(Path.class))).thenAnswer(invocation -> {
+            Path file = invocation.getArgument(0);
+            maxActivePreviews.accumulateAndGet(activePreviews.incrementAndGet(), Math::max);
+            try {
+                onPreview.accept(file);
+                String name = file.getFileName().toString();
+                generated.add(Long.parseLong(name.substring(0, name.indexOf('.'))));
+                return name.getBytes();
+            } finally {
+                activePreviews.decrementAndGet();
+            }
+        });
+
+        PreviewBackfillServiceImpl service = new PreviewBackfillServiceImpl(avatarRepository, backfillRepository,
+                previewService, jdbcTemplate, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                new SimpleMeterRegistry(), concurrency);
+        ReflectionTestUtils.setField(service, "batchSize", batchSize);
+        ReflectionTestUtils.setField(service, "leaseMillis", 60_000L);
+        return service;
+    }
+
+    private PreviewBackfill awaitFinishedRun() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            PreviewBackfill backfill = backfills.get(NAME);
+            AtomicBoolean running = (AtomicBoolean) ReflectionTestUtils.getField(backfillService, "running");
+            if (backfill != null && backfill.getStatus() != PreviewBackfill.Status.RUNNING && !running.get()) {
+                return copyOf(backfill);
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Backfill of previews is not finished");
+    }
+
+    private static PreviewBackfill copyOf(PreviewBackfill backfill) {
+        PreviewBackfill copy = new PreviewBackfill();
+        copy.setName(backfill.getName());
+        copy.setStatus(backfill.getStatus());
+        copy.setLastAvatarId(backfill.getLastAvatarId());
+        copy.setProcessed(backfill.getProcessed());
+        copy.setFailed(backfill.getFailed());
+        copy.setSkipped(backfill.getSkipped());
+        copy.setStartedAt(backfill.getStartedAt());
+        copy.setUpdatedAt(backfill.getUpdatedAt());
+        copy.setOwner(backfill.getOwner());
+        copy.setLeaseUntil(backfill.getLeaseUntil());
+        return copy;
+    }
+
+    private static String sqlOf(String name) {
+        return (String) ReflectionTestUtils.getField(PreviewBackfillServiceImpl.class, name);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class AvatarRow {
+
+        private final long id;
+        private final String filePath;
+        private final long version;
+        private volatile byte[] data;
+
+        private AvatarRow(long id, String filePath, long version) {
+            this.id = id;
+            this.filePath = filePath;
+            this.version = version;
+            this.data = new byte[]{(byte) id};
+        }
+
+        private AvatarRepository.AvatarFile file() {
+            return new AvatarRepository.AvatarFile() {
+                @Override
+                public Long getId() {
+                    return id;
+                }
+
+                @Override
+                public String getFilePath() {
+                    return filePath;
+                }
+
+                @Override
+                public Long getVersion() {
+                    return version;
+                }
+            };
+        }
+    }
+
+    /**
+     * Table of avatars for {@code UPDATE avatar SET data = ? WHERE id = ? AND version = ?},
+     * and updates of row of job in {@link #backfills}
+     */
+    private class FakeJdbcTemplate extends JdbcTemplate {
+
+        private final Map<Long, AvatarRow> avatars = new ConcurrentHashMap<>();
+        private final AtomicInteger batches = new AtomicInteger();
+        private volatile int failOnBatch;
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            if (batches.incrementAndGet() == failOnBatch) {
+                throw new DataAccessResourceFailureException("Connection is lost");
+            }
+            int[] counts = new int[batchArgs.size()];
+            for (int i = 0; i < batchArgs.size(); i++) {
+                Object[] args = batchArgs.get(i);
+                AvatarRow row = avatars.get((Long) args[1]);
+                if (row != null && row.version == (Long) args[2]) {
+                    row.data = (byte[]) args[0];
+                    counts[i] = 1;
+                }
+            }
+            return counts;
+        }
+
+        @Override
+        public synchronized int update(String sql, Object... args) {
+            PreviewBackfill backfill = backfills.get(NAME);
+            Instant now = Instant.now();
+            if (sql.equals(CLAIM)) {
+                if (backfill.getStatus() != PreviewBackfill.Status.RUNNING || !(backfill.getOwner() == null
+                        || backfill.getOwner().equals(args[3]) || backfill.getLeaseUntil().isBefore(now))) {
+                    return 0;
+                }
+                backfill.setOwner((String) args[0]);
+                backfill.setLeaseUntil(((Timestamp) args[1]).toInstant());
+            } else if (sql.equals(CHECKPOINT)) {
+                if (!Objects.equals(backfill.getOwner(), args[7])) {
+                    return 0;
+                }
+                backfill.setLastAvatarId((Long) args[0]);
+                backfill.setProcessed((Long) args[1]);
+                backfill.setFailed((Long) args[2]);
+                backfill.setSkipped((Long) args[3]);
+                backfill.setLeaseUntil(((Timestamp) args[5]).toInstant());
+            } else if (sql.equals(RELEASE)) {
+                if (!Objects.equals(backfill.getOwner(), args[3])) {
+                    return 0;
+                }
+                backfill.setStatus(PreviewBackfill.Status.valueOf((String) args[0]));
+                backfill.setOwner(null);
+                backfill.setLeaseUntil(null);
+            } else if (sql.equals(STOP)) {
+                if (backfill == null || backfill.getStatus() != PreviewBackfill.Status.RUNNING) {
+                    return 0;
+                }
+                backfill.setStatus(PreviewBackfill.Status.STOPPED);
+                backfill.setOwner(null);
+                backfill.setLeaseUntil(null);
+            } else {
+                throw new IllegalArgumentException(sql);
+            }
+            backfill.setUpdatedAt(now);
+            return 1;
+        }
+    }
+}
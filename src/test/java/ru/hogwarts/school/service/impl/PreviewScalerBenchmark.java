@@ -0,0 +1,114 @@
+package ru.hogwarts.school.service.impl;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares scaling of decoded image to preview by {@code drawImage}, as {@link PreviewServiceImpl} does,
+ * with nearest neighbour sampling straight from arrays of raster, score is microseconds per preview<br>
+ * sizes are what is left after subsampled decoding, types are layouts of decoded JPEG, BMP and PNG with alpha.
+ * Raster kernel is not faster on {@code 3BYTE_BGR}, the most common layout, and most of time of both is
+ * allocation of preview, so previews are scaled by {@code drawImage}.
+ * Run: {@code mvn -P benchmark test-compile exec:exec -Dbenchmark.include=PreviewScalerBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PreviewScalerBenchmark {
+
+    private static final int PREVIEW_WIDTH = 100;
+
+    @Param({"200x200", "299x224", "399x300"})
+    private String size;
+
+    @Param({"3BYTE_BGR", "INT_RGB", "4BYTE_ABGR"})
+    private String type;
+
+    private BufferedImage image;
+    private int previewHeight;
+
+    @Setup
+    public void setUp() {
+        String[] dimensions = size.split("x");
+        int width = Integer.parseInt(dimensions[0]);
+        int height = Integer.parseInt(dimensions[1]);
+        image = new BufferedImage(width, height, imageType());
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.ORANGE, width, height, Color.BLUE));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        previewHeight = height * PREVIEW_WIDTH / width;
+    }
+
+    @Benchmark
+    public BufferedImage drawImage() {
+        BufferedImage preview = new BufferedImage(PREVIEW_WIDTH, previewHeight, previewType());
+        Graphics2D graphics = preview.createGraphics();
+        graphics.drawImage(image, 0, 0, PREVIEW_WIDTH, previewHeight, null);
+        graphics.dispose();
+        return preview;
+    }
+
+    @Benchmark
+    public BufferedImage raster() {
+        BufferedImage preview = new BufferedImage(PREVIEW_WIDTH, previewHeight, previewType());
+        int[] target = ((DataBufferInt) preview.getRaster().getDataBuffer()).getData();
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+            int[] source = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            for (int y = 0; y < previewHeight; y++) {
+                int row = y * height / previewHeight * width;
+                for (int x = 0; x < PREVIEW_WIDTH; x++) {
+                    target[y * PREVIEW_WIDTH + x] = source[row + x * width / PREVIEW_WIDTH];
+                }
+            }
+        } else if (image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            byte[] source = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+            for (int y = 0; y < previewHeight; y++) {
+                int row = y * height / previewHeight * width;
+                for (int x = 0; x < PREVIEW_WIDTH; x++) {
+                    int i = (row + x * width / PREVIEW_WIDTH) * 3;
+                    target[y * PREVIEW_WIDTH + x] = (source[i + 2] & 0xFF) << 16
+                            | (source[i + 1] & 0xFF) << 8 | source[i] & 0xFF;
+                }
+            }
+        } else {
+            byte[] source = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+            for (int y = 0; y < previewHeight; y++) {
+                int row = y * height / previewHeight * width;
+                for (int x = 0; x < PREVIEW_WIDTH; x++) {
+                    int i = (row + x * width / PREVIEW_WIDTH) * 4;
+                    target[y * PREVIEW_WIDTH + x] = (source[i] & 0xFF) << 24 | (source[i + 3] & 0xFF) << 16
+                            | (source[i + 2] & 0xFF) << 8 | source[i + 1] & 0xFF;
+                }
+            }
+        }
+        return preview;
+    }
+
+    private int previewType() {
+        return image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+    }
+
+    private int imageType() {
+        switch (type) {
+            case "INT_RGB":
+                return BufferedImage.TYPE_INT_RGB;
+            case "4BYTE_ABGR":
+                return BufferedImage.TYPE_4BYTE_ABGR;
+            default:
+                return BufferedImage.TYPE_3BYTE_BGR;
+        }
+    }
+}
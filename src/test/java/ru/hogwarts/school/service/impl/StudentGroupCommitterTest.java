@@ -0,0 +1,202 @@
+package ru.hogwarts.school.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class StudentGroupCommitterTest {
+
+    private static final int CALLERS = 64;
+
+    private final FakeJdbcTemplate jdbcTemplate = new FakeJdbcTemplate();
+    private StudentGroupCommitter groupCommitter;
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        groupCommitter.shutdown();
+    }
+
+    @Test
+    public void concurrentStudentsAreInsertedByBatches() throws Exception {
+        groupCommitter = groupCommitter(20, 1000);
+
+        List<Future<Student>> results = createConcurrently(CALLERS, i -> studentOf("Student " + i, 17));
+
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < CALLERS; i++) {
+            Student student = results.get(i).get(10, TimeUnit.SECONDS);
+            assertThat(student.getName()).isEqualTo("Student " + i);
+            assertThat(student.getVersion()).isZero();
+            ids.add(student.getId());
+        }
+        assertThat(ids).hasSize(CALLERS);
+        assertThat(jdbcTemplate.inserts.get()).isLessThan(CALLERS);
+        assertThat(jdbcTemplate.maxRows.get()).isLessThanOrEqualTo(20);
+    }
+
+    @Test
+    public void failedStudentDoesNotFailOthersOfBatch() throws Exception {
+        groupCommitter = groupCommitter(100, 1000);
+
+        List<Future<Student>> results = createConcurrently(10, i -> studentOf("Student " + i, i == 3 ? 0 : 17));
+
+        for (int i = 0; i < 10; i++) {
+            Future<Student> result = results.get(i);
+            if (i == 3) {
+                assertThatThrownBy(() -> result.get(10, TimeUnit.SECONDS))
+                        .hasCauseInstanceOf(DataIntegrityViolationException.class);
+            } else {
+                assertThat(result.get(10, TimeUnit.SECONDS).getId()).isPositive();
+            }
+        }
+    }
+
+    @Test
+    public void studentWaitingLongerThanMaxLatencyIsNotInserted() throws Exception {
+        jdbcTemplate.insertDelayMillis = 300;
+        groupCommitter = groupCommitter(1, 100);
+
+        List<Future<Student>> results = createConcurrently(3, i -> studentOf("Student " + i, 17));
+
+        int rejected = 0;
+        for (Future<Student> result : results) {
+            try {
+                result.get(10, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).isInstanceOf(TransientDataAccessResourceException.class);
+                rejected++;
+            }
+        }
+        assertThat(rejected).isPositive();
+        assertThat(jdbcTemplate.rows.get()).isEqualTo(3 - rejected);
+    }
+
+    @Test
+    public void callerOfQueuedStudentDoesNotWaitForStalledDatabase() throws Exception {
+        jdbcTemplate.insertDelayMillis = 1500;
+        groupCommitter = groupCommitter(1, 100, 100);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<Student> inserting = executor.submit(() -> groupCommitter.insert(studentOf("Student 0", 17)));
+        while (jdbcTemplate.started.get() == 0) {
+            Thread.sleep(1);
+        }
+
+        long start = System.nanoTime();
+        Future<Student> queued = executor.submit(() -> groupCommitter.insert(studentOf("Student 1", 17)));
+
+        assertThatThrownBy(() -> queued.get(10, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(TransientDataAccessResourceException.class);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+        // caller of running insert waits longer than its timeout and gets saved student
+        assertThat(inserting.get(10, TimeUnit.SECONDS).getId()).isPositive();
+        assertThat(jdbcTemplate.rows.get()).isEqualTo(1);
+        executor.shutdown();
+    }
+
+    @Test
+    public void studentIsRejectedAfterShutdown() throws Exception {
+        groupCommitter = groupCommitter(20, 1000);
+        groupCommitter.shutdown();
+
+        assertThatThrownBy(() -> groupCommitter.insert(studentOf("Student", 17)))
+                .isInstanceOf(TransientDataAccessResourceException.class);
+        assertThat(jdbcTemplate.rows.get()).isZero();
+    }
+
+    private StudentGroupCommitter groupCommitter(int maxBatchSize, long maxLatencyMillis) {
+        return groupCommitter(maxBatchSize, maxLatencyMillis, 1000);
+    }
+
+    private StudentGroupCommitter groupCommitter(int maxBatchSize, long maxLatencyMillis, long insertTimeoutMillis) {
+        return new StudentGroupCommitter(jdbcTemplate, mock(PlatformTransactionManager.class), new SimpleMeterRegistry(),
+                maxBatchSize, 20, maxLatencyMillis, insertTimeoutMillis, 1000);
+    }
+
+    private List<Future<Student>> createConcurrently(int callers, IntFunction<Student> students)
+            throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Student>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            Student student = students.apply(i);
+            results.add(executor.submit(() -> {
+                start.await();
+                return groupCommitter.insert(student);
+            }));
+        }
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+        return results;
+    }
+
+    private static Student studentOf(String name, int age) {
+        Faculty faculty = new Faculty();
+        faculty.setId(1L);
+        Student student = new Student();
+        student.setName(name);
+        student.setAge(age);
+        student.setFaculty(faculty);
+        return student;
+    }
+
+    /**
+     * Sequence of ids and table of students with CHECK (age > 0)
+     */
+    private static class FakeJdbcTemplate extends JdbcTemplate {
+
+        private final AtomicLong sequence = new AtomicLong();
+        private final AtomicInteger started = new AtomicInteger();
+        private final AtomicInteger inserts = new AtomicInteger();
+        private final AtomicInteger rows = new AtomicInteger();
+        private final AtomicInteger maxRows = new AtomicInteger();
+        private volatile long insertDelayMillis;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+            int count = (Integer) args[0];
+            return (List<T>) LongStream.range(0, count)
+                    .mapToObj(i -> sequence.incrementAndGet())
+                    .collect(Collectors.toList());
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            int count = args.length / 4;
+            for (int i = 0; i < count; i++) {
+                if ((Integer) args[i * 4 + 2] <= 0) {
+                    throw new DataIntegrityViolationException("new row violates check constraint student_age_check");
+                }
+            }
+            started.incrementAndGet();
+            try {
+                Thread.sleep(insertDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inserts.incrementAndGet();
+            rows.addAndGet(count);
+            maxRows.accumulateAndGet(count, Math::max);
+            return count;
+        }
+    }
+}
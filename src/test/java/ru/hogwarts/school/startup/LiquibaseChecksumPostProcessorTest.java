@@ -0,0 +1,55 @@
+package ru.hogwarts.school.startup;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LiquibaseChecksumPostProcessorTest {
+
+    @TempDir
+    Path classes;
+
+    @Test
+    public void checksumDoesNotDependOnOrderOfFiles() throws Exception {
+        Resource master = file("liquibase/changelog-master.yml", "databaseChangeLog:");
+        Resource script = file("liquibase/scripts/list-of-change.sql", "-- changeSet Serge:1");
+
+        assertThat(LiquibaseChecksumPostProcessor.checksumOf(new Resource[]{master, script}))
+                .isEqualTo(LiquibaseChecksumPostProcessor.checksumOf(new Resource[]{script, master}))
+                .hasSize(64);
+    }
+
+    @Test
+    public void checksumChangesWithChangeLog() throws Exception {
+        Resource master = file("liquibase/changelog-master.yml", "databaseChangeLog:");
+        Resource script = file("liquibase/scripts/list-of-change.sql", "-- changeSet Serge:1");
+        String before = LiquibaseChecksumPostProcessor.checksumOf(new Resource[]{master, script});
+
+        file("liquibase/scripts/list-of-change.sql", "-- changeSet Serge:1\n-- changeSet Serge:2");
+
+        assertThat(LiquibaseChecksumPostProcessor.checksumOf(new Resource[]{master, script})).isNotEqualTo(before);
+    }
+
+    @Test
+    public void changeLogOfApplicationIsFound() throws Exception {
+        Resource[] resources = new PathMatchingResourcePatternResolver()
+                .getResources(LiquibaseChecksumPostProcessor.CHANGE_LOG_FILES);
+
+        assertThat(resources).extracting(Resource::getFilename)
+                .contains("changelog-master.yml", "list-of-change.sql");
+    }
+
+    private Resource file(String path, String content) throws Exception {
+        Path file = classes.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+        return new FileSystemResource(file);
+    }
+}
@@ -0,0 +1,79 @@
+package ru.hogwarts.school.startup;
+
+import org.openjdk.jmh.annotations.*;
+import ru.hogwarts.school.SchoolHogwartsApplication;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup time of application in its own JVM, from start of process until it is ready and exits
+ * by {@code startup.exit-after-start}<br>
+ * {@code default} is plain start, {@code fast-start} is start with profile {@code fast-start},
+ * {@code fast-start-cds} is the same with AppCDS archive, which is dumped by one training start before
+ * measurements. Needs local PostgreSQL of {@code application.properties} with applied change log
+ * and JDK 13 or newer for dynamic archive.
+ * Run: {@code mvn -P benchmark test-compile exec:exec -Dbenchmark.include=StartupBenchmark}
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    @Param({"default", "fast-start", "fast-start-cds"})
+    private String mode;
+
+    private Path archive;
+
+    @Setup
+    public void setUp() throws Exception {
+        if ("fast-start-cds".equals(mode)) {
+            archive = Files.createTempFile("school", ".jsa");
+            Files.delete(archive);
+            start("-XX:ArchiveClassesAtExit=" + archive);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (archive != null) {
+            Files.deleteIfExists(archive);
+        }
+    }
+
+    @Benchmark
+    public int startup() throws Exception {
+        return archive == null ? start() : start("-XX:SharedArchiveFile=" + archive);
+    }
+
+    private int start(String... jvmOptions) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(List.of(jvmOptions));
+        if (!"default".equals(mode)) {
+            command.add("-Dspring.profiles.active=fast-start");
+        }
+        command.add("-Dstartup.exit-after-start=true");
+        command.add("-classpath");
+        command.add(System.getProperty("java.class.path"));
+        command.add(SchoolHogwartsApplication.class.getName());
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(new File(System.getProperty("java.io.tmpdir"),
+                        "startup-benchmark.log")))
+                .start();
+        if (!process.waitFor(5, TimeUnit.MINUTES) || process.exitValue() != 0) {
+            process.destroyForcibly();
+            throw new IllegalStateException("Application is not started, see startup-benchmark.log in temp folder");
+        }
+        return process.exitValue();
+    }
+}
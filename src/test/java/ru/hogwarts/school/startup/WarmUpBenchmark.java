@@ -0,0 +1,98 @@
+package ru.hogwarts.school.startup;
+
+import org.openjdk.jmh.annotations.*;
+import ru.hogwarts.school.SchoolHogwartsApplication;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of first requests to freshly started application with and without {@link WarmUpRunner}<br>
+ * application is started in its own JVM before every iteration, measurement starts when readiness probe
+ * reports UP and is the time of {@value #REQUESTS} requests to hot read endpoints in a row, while code is still
+ * interpreted or compiled. Needs local PostgreSQL of {@code application.properties} with some students.
+ * Run: {@code mvn -P benchmark test-compile exec:exec -Dbenchmark.include=WarmUpBenchmark}
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WarmUpBenchmark {
+
+    private static final int REQUESTS = 2000;
+    private static final List<String> PATHS = List.of("/student/five-last-student", "/student/amount",
+            "/student/average-age", "/student/filter/20", "/student/filter?minAge=15&maxAge=25", "/faculty/longest-name");
+
+    @Param({"false", "true"})
+    private boolean warmUp;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private Process process;
+    private String baseUrl;
+
+    @Setup(Level.Iteration)
+    public void startApplication() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        baseUrl = "http://localhost:" + port;
+        process = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Dserver.port=" + port,
+                "-Dstartup.warm-up.enabled=" + warmUp,
+                "-Dlimiter.enabled=false",
+                "-classpath", System.getProperty("java.class.path"),
+                SchoolHogwartsApplication.class.getName())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(new File(System.getProperty("java.io.tmpdir"),
+                        "warm-up-benchmark.log")))
+                .start();
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(5);
+        while (!isReady()) {
+            if (!process.isAlive() || System.nanoTime() > deadline) {
+                throw new IllegalStateException("Application is not ready, see warm-up-benchmark.log in temp folder");
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void stopApplication() throws InterruptedException {
+        process.destroy();
+        process.waitFor(1, TimeUnit.MINUTES);
+    }
+
+    @Benchmark
+    public int firstRequests() throws Exception {
+        int ok = 0;
+        for (int i = 0; i < REQUESTS; i++) {
+            HttpResponse<byte[]> response = client.send(
+                    HttpRequest.newBuilder(URI.create(baseUrl + PATHS.get(i % PATHS.size()))).build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() == 200) {
+                ok++;
+            }
+        }
+        return ok;
+    }
+
+    private boolean isReady() throws InterruptedException {
+        try {
+            return client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/health/readiness")).build(),
+                    HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
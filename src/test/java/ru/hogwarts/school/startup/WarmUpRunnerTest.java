@@ -0,0 +1,81 @@
+package ru.hogwarts.school.startup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.impl.FacultyServiceImpl;
+import ru.hogwarts.school.service.impl.StudentServiceImpl;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class WarmUpRunnerTest {
+
+    private final StudentServiceImpl studentService = mock(StudentServiceImpl.class);
+    private final FacultyServiceImpl facultyService = mock(FacultyServiceImpl.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SimpleTransactionStatus status = new SimpleTransactionStatus();
+
+    @Test
+    public void hotMethodsAreCalledInRolledBackTransaction() {
+        Faculty faculty = new Faculty();
+        faculty.setId(1L);
+        faculty.setName("Gryffindor");
+        faculty.setColor("red");
+        Student student = new Student();
+        student.setId(2L);
+        student.setName("Garry");
+        student.setAge(17);
+        student.setFaculty(faculty);
+        when(transactionManager.getTransaction(any())).thenReturn(status);
+        when(studentService.getFiveLastStudents()).thenReturn(List.of(student));
+        when(studentService.findStudent(2L)).thenReturn(student);
+        when(facultyService.findFaculty(1L)).thenThrow(new IllegalArgumentException("Faculty is not found"));
+
+        new WarmUpRunner(studentService, facultyService, new ObjectMapper(), transactionManager, meterRegistry,
+                10, 60_000).run(null);
+
+        assertThat(status.isRollbackOnly()).isTrue();
+        // one transaction to find arguments and one for every round
+        verify(transactionManager, times(11)).getTransaction(any());
+        verify(studentService, times(10)).findStudent(2L);
+        verify(facultyService, times(10)).longestNameOfFaculty();
+        verify(facultyService, times(10)).findFaculty(1L);
+        verify(facultyService, times(10)).filterFacultiesByColor("red");
+        assertThat(meterRegistry.get("startup.warm-up").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void warmUpDoesNotReadWholeTableOfStudents() {
+        when(transactionManager.getTransaction(any())).thenReturn(status);
+
+        new WarmUpRunner(studentService, facultyService, new ObjectMapper(), transactionManager, meterRegistry,
+                10, 60_000).run(null);
+
+        verify(studentService, never()).filterAgeStudents(anyInt());
+        verify(studentService, never()).filterAgeStudents(anyInt(), anyInt());
+        verify(studentService, never()).getAmountOfStudents();
+        verify(studentService, never()).getAverageAge();
+        verify(facultyService, never()).findStudentsOfFaculty(anyLong());
+    }
+
+    @Test
+    public void warmUpStopsAfterMaxDuration() {
+        when(transactionManager.getTransaction(any())).thenReturn(status);
+
+        new WarmUpRunner(studentService, facultyService, new ObjectMapper(), transactionManager, meterRegistry,
+                1_000_000, 0).run(null);
+
+        verify(facultyService, never()).longestNameOfFaculty();
+    }
+}